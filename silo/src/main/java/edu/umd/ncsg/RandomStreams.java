@@ -0,0 +1,112 @@
+package edu.umd.ncsg;
+
+import java.util.Random;
+
+/**
+ * Counter-based random number streams keyed by (year, sub-model, agent id). Every key maps onto its own stream that
+ * does not depend on how many numbers have been drawn elsewhere, therefore draws are reproducible regardless of the
+ * order in which agents are processed or the number of threads used. Streams are not shared between threads and need
+ * no synchronization.
+ **/
+
+public class RandomStreams {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private static long baseSeed = 0;
+    private static int currentYear = 0;
+
+
+    public static void initialize (long seed) {
+        // set seed of all streams, called when SiloModel.rand is initialized
+        baseSeed = mix64(seed);
+    }
+
+
+    public static void setCurrentYear (int year) {
+        currentYear = year;
+    }
+
+
+    public static int getCurrentYear () {
+        return currentYear;
+    }
+
+
+    public static Stream getStream (String subModel, long agentId) {
+        // stream for agentId in sub-model subModel in the current year
+        return getStream(currentYear, subModel, agentId);
+    }
+
+
+    public static Stream getStream (int year, String subModel, long agentId) {
+        return new Stream(key(year, subModel, agentId));
+    }
+
+
+    public static double nextDouble (String subModel, long agentId) {
+        // single draw for agentId in sub-model subModel in the current year without creating a stream object
+        return toDouble(mix64(key(currentYear, subModel, agentId) + GOLDEN_GAMMA));
+    }
+
+
+    private static long key (int year, String subModel, long agentId) {
+        // String.hashCode() is specified by the language, therefore keys are stable between runs and platforms
+        long h = mix64(baseSeed + GOLDEN_GAMMA * year);
+        h = mix64(h + GOLDEN_GAMMA * subModel.hashCode());
+        return mix64(h + GOLDEN_GAMMA * agentId);
+    }
+
+
+    private static long mix64 (long z) {
+        // finalizer of SplitMix64
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+
+    private static double toDouble (long bits) {
+        return (bits >>> 11) * 0x1.0p-53;
+    }
+
+
+    /**
+     * Random stream of one key. Extends java.util.Random so that it can be passed to existing code, but replaces the
+     * atomic seed update of Random by a plain counter.
+     **/
+    public static class Stream extends Random {
+
+        private static final long serialVersionUID = 1L;
+        private long state;
+
+        private Stream (long state) {
+            super(0);
+            this.state = state;
+        }
+
+        @Override
+        public void setSeed (long seed) {
+            // called by the constructor of Random before state is assigned
+            state = seed;
+        }
+
+        @Override
+        protected int next (int bits) {
+            state += GOLDEN_GAMMA;
+            return (int) (mix64(state) >>> (64 - bits));
+        }
+
+        @Override
+        public double nextDouble () {
+            state += GOLDEN_GAMMA;
+            return toDouble(mix64(state));
+        }
+
+        public Stream split () {
+            // independent child stream, e.g. for a sub-task of the owner of this stream
+            state += GOLDEN_GAMMA;
+            return new Stream(mix64(state) ^ GOLDEN_GAMMA);
+        }
+    }
+}
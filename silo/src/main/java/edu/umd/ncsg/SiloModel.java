@@ -39,6 +39,7 @@ import com.pb.common.util.ResourceUtil;
 import com.pb.common.datafile.TableDataSet;
 import edu.umd.ncsg.demography.*;
 import edu.umd.ncsg.events.EventManager;
+import edu.umd.ncsg.events.EventQueue;
 import edu.umd.ncsg.events.EventTypes;
 
 /**
@@ -140,6 +141,7 @@ public class SiloModel {
         realEstateData.readLandUse();
         realEstateData.identifyVacantDwellings();
         householdData.setHighestHouseholdAndPersonId();
+        AggregateRegistry.initialize();
         householdData.calculateInitialSettings();
 
         logger.info("Creating UEC Models");
@@ -175,6 +177,7 @@ public class SiloModel {
                 summarizeData.scaleMicroDataToExogenousForecast(rb, year, householdData);
             logger.info("Simulating changes from year " + year + " to year " + (year + 1));
             IssueCounter.setUpCounter();    // setup issue counter for this simulation period
+            RandomStreams.setCurrentYear(year);
             SiloUtil.trackingFile("Simulating changes from year " + year + " to year " + (year + 1));
             EventManager em = new EventManager(rb, householdData, realEstateData);
 
@@ -205,13 +208,17 @@ public class SiloModel {
             em.createListOfEvents(numberOfPlannedCouples);
             if (trackTime) timeCounter[EventTypes.values().length + 4][year] += System.currentTimeMillis() - startTime;
 
-            if (SiloUtil.containsElement(skimYears, year)) {
-                if (year != SiloUtil.getStartYear() && !SiloUtil.containsElement(tdmYears, year)) {
-                    // skims are always read in start year and in every year the transportation model ran. Additional
-                    // years to read skims may be provided in skimYears
-                    acc.readSkim(year);
-                    acc.calculateAccessibilities(year);
-                }
+            boolean readNewSkims = SiloUtil.containsElement(skimYears, year) && year != SiloUtil.getStartYear() &&
+                    !SiloUtil.containsElement(tdmYears, year);
+            if (readNewSkims) {
+                // skims are always read in start year and in every year the transportation model ran. Additional
+                // years to read skims may be provided in skimYears
+                acc.readSkim(year);
+            }
+            if (readNewSkims || (year != SiloUtil.getStartYear() && acc.isUpdatedEveryYear())) {
+                // accessibilities are recalculated after skims were read, or in every year if accessibility.update.every.year
+                // is true (only zones whose population changed are updated if skims did not change)
+                acc.calculateAccessibilities(year);
             }
 
             if (trackTime) startTime = System.currentTimeMillis();
@@ -233,71 +240,72 @@ public class SiloModel {
 
             logger.info("  Simulating events");
             // walk through all events
-            for (int i = 1; i <= em.getNumberOfEvents(); i++) {
-                //	    if (i%500000==0) logger.info("Processing event " + i);
-                // event[] stores event id in position [0] and person id in position [1]
-                Integer[] event = em.selectNextEvent();
-                if (event[1] == SiloUtil.trackPp || event[1] == SiloUtil.trackHh || event[1] == SiloUtil.trackDd)
-                    SiloUtil.trackWriter.println ("Check event " + EventTypes.values()[event[0]] +  " for pp/hh/dd " +
-                            event[1]);
-                if (event[0] == EventTypes.birthday.ordinal()) {
+            while (em.hasNextEvent()) {
+                // event stores event type in the upper and person/household/dwelling id in the lower 32 bits
+                long event = em.selectNextEvent();
+                int eventType = EventQueue.getEventType(event);
+                int id = EventQueue.getId(event);
+                if (id == SiloUtil.trackPp || id == SiloUtil.trackHh || id == SiloUtil.trackDd)
+                    SiloUtil.trackWriter.println ("Check event " + EventTypes.values()[eventType] +  " for pp/hh/dd " +
+                            id);
+                if (eventType == EventTypes.birthday.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    birth.celebrateBirthday(event[1]);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.checkDeath.ordinal()) {
+                    birth.celebrateBirthday(id);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.checkDeath.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    death.chooseDeath(event[1]);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.checkBirth.ordinal()) {
+                    death.chooseDeath(id);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.checkBirth.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    birth.chooseBirth(event[1]);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.checkLeaveParentHh.ordinal()) {
+                    birth.chooseBirth(id);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.checkLeaveParentHh.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    lph.chooseLeaveParentHh(event[1], move, aoModel);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.checkMarriage.ordinal()) {
+                    lph.chooseLeaveParentHh(id, move, aoModel);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.checkMarriage.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    mardiv.choosePlannedMarriage(event[1], move, iomig, aoModel);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.checkDivorce.ordinal()) {
+                    mardiv.choosePlannedMarriage(id, move, iomig, aoModel);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.checkDivorce.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    mardiv.chooseDivorce(event[1], move, aoModel);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.findNewJob.ordinal()) {
+                    mardiv.chooseDivorce(id, move, aoModel);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.findNewJob.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    changeEmployment.findNewJob(event[1]);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.quitJob.ordinal()) {
+                    changeEmployment.findNewJob(id);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.quitJob.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    changeEmployment.quitJob(event[1]);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.householdMove.ordinal()) {
+                    changeEmployment.quitJob(id);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.householdMove.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    move.chooseMove(event[1]);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.inmigration.ordinal()) {
+                    move.chooseMove(id);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.inmigration.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    iomig.inmigrateHh(event[1], move, changeEmployment, aoModel);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.outMigration.ordinal()) {
+                    iomig.inmigrateHh(id, move, changeEmployment, aoModel);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.outMigration.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    iomig.outMigrateHh(event[1], false);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.ddChangeQual.ordinal()) {
+                    iomig.outMigrateHh(id, false);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.ddChangeQual.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    renov.checkRenovation(event[1]);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.ddDemolition.ordinal()) {
+                    renov.checkRenovation(id);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.ddDemolition.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    demol.checkDemolition(event[1], move, iomig);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
-                } else if (event[0] == EventTypes.ddConstruction.ordinal()) {
+                    demol.checkDemolition(id, move, iomig);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
+                } else if (eventType == EventTypes.ddConstruction.ordinal()) {
                     if (trackTime) startTime = System.currentTimeMillis();
-                    cons.buildDwelling(event[1], move, year);
-                    if (trackTime) timeCounter[event[0]][year] += System.currentTimeMillis() - startTime;
+                    cons.buildDwelling(id, move, year);
+                    if (trackTime) timeCounter[eventType][year] += System.currentTimeMillis() - startTime;
                 } else {
-                    logger.warn("Unknown event type: " + event[0]);
+                    logger.warn("Unknown event type: " + eventType);
                 }
             }
 
@@ -366,6 +374,7 @@ public class SiloModel {
         realEstateData.readLandUse();
         realEstateData.identifyVacantDwellings();
         householdData.setHighestHouseholdAndPersonId();
+        AggregateRegistry.initialize();
         householdData.calculateInitialSettings();
 
         logger.info("Creating UEC Models");
@@ -409,6 +418,7 @@ public class SiloModel {
             summarizeData.scaleMicroDataToExogenousForecast(rb, currentYear, householdData);
         logger.info("Simulating changes from year " + currentYear + " to year " + (currentYear + 1));
         IssueCounter.setUpCounter();    // setup issue counter for this simulation period
+        RandomStreams.setCurrentYear(currentYear);
         SiloUtil.trackingFile("Simulating changes from year " + currentYear + " to year " + (currentYear + 1));
         EventManager em = new EventManager(rb, householdData, realEstateData);
         long startTime = 0;
@@ -439,13 +449,17 @@ public class SiloModel {
         em.createListOfEvents(numberOfPlannedCouples);
         if (trackTime) timeCounter[EventTypes.values().length + 4][currentYear] += System.currentTimeMillis() - startTime;
 
-        if (SiloUtil.containsElement(skimYears, currentYear)) {
-            if (currentYear != SiloUtil.getStartYear() && !SiloUtil.containsElement(tdmYears, currentYear)) {
-                // skims are always read in start year and in every year the transportation model ran. Additional
-                // years to read skims may be provided in skimYears
-                acc.readSkim(currentYear);
-                acc.calculateAccessibilities(currentYear);
-            }
+        boolean readNewSkims = SiloUtil.containsElement(skimYears, currentYear) && currentYear != SiloUtil.getStartYear() &&
+                !SiloUtil.containsElement(tdmYears, currentYear);
+        if (readNewSkims) {
+            // skims are always read in start year and in every year the transportation model ran. Additional
+            // years to read skims may be provided in skimYears
+            acc.readSkim(currentYear);
+        }
+        if (readNewSkims || (currentYear != SiloUtil.getStartYear() && acc.isUpdatedEveryYear())) {
+            // accessibilities are recalculated after skims were read, or in every year if accessibility.update.every.year
+            // is true (only zones whose population changed are updated if skims did not change)
+            acc.calculateAccessibilities(currentYear);
         }
 
         if (trackTime) startTime = System.currentTimeMillis();
@@ -468,71 +482,72 @@ public class SiloModel {
 
         logger.info("  Simulating events");
         // walk through all events
-        for (int i = 1; i <= em.getNumberOfEvents(); i++) {
-            //	    if (i%500000==0) logger.info("Processing event " + i);
-            // event[] stores event id in position [0] and person id in position [1]
-            Integer[] event = em.selectNextEvent();
-            if (event[1] == SiloUtil.trackPp || event[1] == SiloUtil.trackHh || event[1] == SiloUtil.trackDd)
-                SiloUtil.trackWriter.println ("Check event " + EventTypes.values()[event[0]] +  " for pp/hh/dd " +
-                        event[1]);
-            if (event[0] == EventTypes.birthday.ordinal()) {
+        while (em.hasNextEvent()) {
+            // event stores event type in the upper and person/household/dwelling id in the lower 32 bits
+            long event = em.selectNextEvent();
+            int eventType = EventQueue.getEventType(event);
+            int id = EventQueue.getId(event);
+            if (id == SiloUtil.trackPp || id == SiloUtil.trackHh || id == SiloUtil.trackDd)
+                SiloUtil.trackWriter.println ("Check event " + EventTypes.values()[eventType] +  " for pp/hh/dd " +
+                        id);
+            if (eventType == EventTypes.birthday.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                birth.celebrateBirthday(event[1]);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.checkDeath.ordinal()) {
+                birth.celebrateBirthday(id);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.checkDeath.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                death.chooseDeath(event[1]);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.checkBirth.ordinal()) {
+                death.chooseDeath(id);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.checkBirth.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                birth.chooseBirth(event[1]);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.checkLeaveParentHh.ordinal()) {
+                birth.chooseBirth(id);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.checkLeaveParentHh.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                lph.chooseLeaveParentHh(event[1], move, aoModel);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.checkMarriage.ordinal()) {
+                lph.chooseLeaveParentHh(id, move, aoModel);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.checkMarriage.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                mardiv.choosePlannedMarriage(event[1], move, iomig, aoModel);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.checkDivorce.ordinal()) {
+                mardiv.choosePlannedMarriage(id, move, iomig, aoModel);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.checkDivorce.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                mardiv.chooseDivorce(event[1], move, aoModel);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.findNewJob.ordinal()) {
+                mardiv.chooseDivorce(id, move, aoModel);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.findNewJob.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                changeEmployment.findNewJob(event[1]);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.quitJob.ordinal()) {
+                changeEmployment.findNewJob(id);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.quitJob.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                changeEmployment.quitJob(event[1]);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.householdMove.ordinal()) {
+                changeEmployment.quitJob(id);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.householdMove.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                move.chooseMove(event[1]);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.inmigration.ordinal()) {
+                move.chooseMove(id);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.inmigration.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                iomig.inmigrateHh(event[1], move, changeEmployment, aoModel);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.outMigration.ordinal()) {
+                iomig.inmigrateHh(id, move, changeEmployment, aoModel);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.outMigration.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                iomig.outMigrateHh(event[1], false);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.ddChangeQual.ordinal()) {
+                iomig.outMigrateHh(id, false);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.ddChangeQual.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                renov.checkRenovation(event[1]);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.ddDemolition.ordinal()) {
+                renov.checkRenovation(id);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.ddDemolition.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                demol.checkDemolition(event[1], move, iomig);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
-            } else if (event[0] == EventTypes.ddConstruction.ordinal()) {
+                demol.checkDemolition(id, move, iomig);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
+            } else if (eventType == EventTypes.ddConstruction.ordinal()) {
                 if (trackTime) startTime = System.currentTimeMillis();
-                cons.buildDwelling(event[1], move, currentYear);
-                if (trackTime) timeCounter[event[0]][currentYear] += System.currentTimeMillis() - startTime;
+                cons.buildDwelling(id, move, currentYear);
+                if (trackTime) timeCounter[eventType][currentYear] += System.currentTimeMillis() - startTime;
             } else {
-                logger.warn("Unknown event type: " + event[0]);
+                logger.warn("Unknown event type: " + eventType);
             }
         }
 
@@ -1,5 +1,6 @@
 package edu.umd.ncsg;
 
+import com.pb.common.calculator.CompiledModelCache;
 import com.pb.common.datafile.CSVFileWriter;
 import com.pb.common.datafile.TableDataFileReader;
 import com.pb.common.datafile.TableDataSet;
@@ -37,6 +38,8 @@ public class SiloUtil {
     public static final String PROPERTIES_GREGORIAN_ITERATOR                = "this.gregorian.iterator";
     public static final String PROPERTIES_INCOME_BRACKETS                   = "income.brackets.hh.types";
     public static final String PROPERTIES_NUMBER_OF_DWELLING_QUALITY_LEVELS = "dwelling.quality.levels.distinguished";
+    protected static final String PROPERTIES_UEC_CACHE_DIRECTORY               = "uec.cache.directory";
+    public static final String PROPERTIES_COMPRESS_BINARY_FILES             = "compress.binary.files";
 
     public static String baseDirectory;
     public static String scenarioName;
@@ -79,6 +82,7 @@ public class SiloUtil {
         copyFile(baseDirectory + resourceBundleName, baseDirectory + "scenOutput/" + scenarioName + "/" + prop[prop.length-1]);
 
         initializeRandomNumber();
+        initializeUecCache();
         trackingFile("open");
         geoData.setInitialData(rb);
         return rb;
@@ -101,13 +105,24 @@ public class SiloUtil {
     }
 
 
+    private static void initializeUecCache() {
+        // store parsed UEC control files in cache directory, later runs read them from there instead of parsing Excel
+        String cacheDirectory = ResourceUtil.getProperty(rb, PROPERTIES_UEC_CACHE_DIRECTORY, "");
+        if (cacheDirectory.isEmpty()) return;
+        CompiledModelCache.setDirectory(new File(baseDirectory + cacheDirectory));
+    }
+
+
     private static void initializeRandomNumber() {
         // initialize random number generator
         int seed = ResourceUtil.getIntegerProperty(rb, PROPERTIES_RANDOM_SEED);
-        if (seed == -1)
+        if (seed == -1) {
             SiloModel.rand = new Random();
-        else
+            RandomStreams.initialize(SiloModel.rand.nextLong());
+        } else {
             SiloModel.rand = new Random(seed);
+            RandomStreams.initialize(seed);
+        }
     }
 
 
@@ -231,7 +246,13 @@ public class SiloUtil {
 
     public static int select (double[] probabilities) {
         // select item based on probabilities (for zero-based double array)
-        double selPos = getSum(probabilities) * SiloModel.rand.nextDouble();
+        return select(probabilities, SiloModel.rand);
+    }
+
+
+    public static int select (double[] probabilities, Random rand) {
+        // select item based on probabilities (for zero-based double array) drawing from random stream rand
+        double selPos = getSum(probabilities) * rand.nextDouble();
         double sum = 0;
         for (int i = 0; i < probabilities.length; i++) {
             sum += probabilities[i];
@@ -5,6 +5,7 @@ import edu.umd.ncsg.SiloModel;
 import edu.umd.ncsg.SiloUtil;
 import edu.umd.ncsg.autoOwnership.AutoOwnershipModel;
 import edu.umd.ncsg.data.*;
+import edu.umd.ncsg.utils.AliasSampler;
 import org.apache.log4j.Logger;
 
 import java.io.BufferedReader;
@@ -102,8 +103,8 @@ public class syntheticPop {
         ArrayList<Integer> alHomePuma = new ArrayList<>();
         ArrayList<Integer> alWorkPuma = new ArrayList<>();
         for (int taz: geoData.getZones()) {
-            int homePuma = (int) SiloUtil.zonalData.getIndexedValueAt(taz, "PUMA");
-            int workPuma = (int) SiloUtil.zonalData.getIndexedValueAt(taz, "simplifiedPuma");
+            int homePuma = geoData.getPUMAofZone(taz);
+            int workPuma = geoData.getSimplifiedPUMAofZone(taz);
             if (!alHomePuma.contains(homePuma)) alHomePuma.add(homePuma);
             if (!alWorkPuma.contains(workPuma)) alWorkPuma.add(workPuma);
             if (tazByPuma.containsKey(homePuma)) {
@@ -191,8 +192,7 @@ public class syntheticPop {
 
         logger.info("  Identifying vacant jobs by zone");
         vacantJobsByZone = new HashMap<>();
-        Job[] jobs = Job.getJobArray();
-        for (Job jj: jobs) {
+        for (Job jj: Job.getJobs()) {
             if (jj.getWorkerId() == -1) {
                 int id = jj.getId();
                 int zone = jj.getZone();
@@ -224,8 +224,8 @@ public class syntheticPop {
 
         String age90plusFile = SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_AGE_DISTRIBUTION_90PLUS);
         TableDataSet age90plus = SiloUtil.readCSVfile(age90plusFile);
-        float[] probAge90plusMale = age90plus.getColumnAsFloat("male");
-        float[] probAge90plusFemale = age90plus.getColumnAsFloat("female");
+        AliasSampler age90plusMale = new AliasSampler(age90plus.getColumnAsFloat("male"));
+        AliasSampler age90plusFemale = new AliasSampler(age90plus.getColumnAsFloat("female"));
 
         String[] states = {"MD","DC","DE","PA","VA","WV"};
         int[] stateNumber = {24,11,10,42,51,54};      // FIPS code of String states[]
@@ -302,8 +302,8 @@ public class syntheticPop {
                             gender[personCounter] = convertToInteger(recString.substring(22, 23));
                             age[personCounter] = convertToInteger(recString.substring(24, 26));
                             if (age[personCounter] >= 90) {
-                                if (gender[personCounter] == 1) age[personCounter] = 90 + SiloUtil.select(probAge90plusMale);
-                                else age[personCounter] = 90 + SiloUtil.select(probAge90plusFemale);
+                                if (gender[personCounter] == 1) age[personCounter] = 90 + age90plusMale.select(SiloModel.rand);
+                                else age[personCounter] = 90 + age90plusFemale.select(SiloModel.rand);
                             }
                             int hispanic = convertToInteger(recString.substring(27, 29));
                             int singleRace = convertToInteger(recString.substring(37, 38));
@@ -692,7 +692,7 @@ public class syntheticPop {
         JobDataManager jobData = new JobDataManager(rb);
         jobData.calculateJobDensityByZone();
         AutoOwnershipModel ao = new AutoOwnershipModel(rb);   // calculate auto-ownership probabilities
-        for (Household hh: Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             int autos = ao.simulateAutoOwnership(hh);
             hh.setAutos(autos);
         }
@@ -707,7 +707,7 @@ public class syntheticPop {
         HashMap<String, ArrayList<Integer>> ddPointer = new HashMap<>();
         // summarize vacancy
         int[][][] ddCount = new int [geoData.getHighestZonalId() + 1][DwellingType.values().length][2];
-        for (Dwelling dd: Dwelling.getDwellingArray()) {
+        for (Dwelling dd: Dwelling.getDwellings()) {
             int taz = dd.getZone();
             int occ = dd.getResidentId();
             ddCount[taz][dd.getType().ordinal()][0]++;
@@ -828,7 +828,7 @@ public class syntheticPop {
 
         int[] ddCount = new int[DwellingType.values().length];
         int[] occCount = new int[DwellingType.values().length];
-        for (Dwelling dd: Dwelling.getDwellingArray()) {
+        for (Dwelling dd: Dwelling.getDwellings()) {
             int id = dd.getResidentId();
             DwellingType tp = dd.getType();
             ddCount[tp.ordinal()]++;
@@ -868,7 +868,7 @@ public class syntheticPop {
         // summarize number of people by PersonRole (married, single, child)
 
         int[][] roleCounter = new int[101][3];
-        for (Person pp: Person.getPersonArray()) {
+        for (Person pp: Person.getPersons()) {
             if (pp.getGender() == 1) continue;
             int age = Math.min(100, pp.getAge());
             roleCounter[age][pp.getRole().ordinal()]++;
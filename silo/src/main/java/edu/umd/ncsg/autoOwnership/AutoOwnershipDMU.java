@@ -1,5 +1,6 @@
 package edu.umd.ncsg.autoOwnership;
 
+import com.pb.common.calculator.DmuBlock;
 import com.pb.common.calculator.IndexValues;
 import org.apache.log4j.Logger;
 
@@ -25,6 +26,10 @@ public class AutoOwnershipDMU {
     private int transitAccessibility;
     private int densityCategory;
 
+    // uec variables in the order of copyToBlock()
+    public static final String[] BLOCK_VARIABLES = {"hhSize", "workers", "incomeCategory", "transitAccessibility",
+            "densityCategory"};
+
 
     public AutoOwnershipDMU() {
 		dmuIndex = new IndexValues();
@@ -36,6 +41,16 @@ public class AutoOwnershipDMU {
     }
 
 
+    public void copyToBlock (DmuBlock block, int row) {
+        // copy current values of BLOCK_VARIABLES into row of block
+        block.setValue(0, row, hhSize);
+        block.setValue(1, row, workers);
+        block.setValue(2, row, incomeCategory);
+        block.setValue(3, row, transitAccessibility);
+        block.setValue(4, row, densityCategory);
+    }
+
+
     public void setHhSize (int hhSize) {
     	this.hhSize = hhSize;
     }
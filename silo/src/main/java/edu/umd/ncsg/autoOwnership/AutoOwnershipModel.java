@@ -1,5 +1,6 @@
 package edu.umd.ncsg.autoOwnership;
 
+import com.pb.common.calculator.DmuBlock;
 import com.pb.common.calculator.UtilityExpressionCalculator;
 import com.pb.common.util.ResourceUtil;
 import edu.umd.ncsg.SiloUtil;
@@ -48,7 +49,7 @@ public class AutoOwnershipModel {
 
         boolean logCalculation  = ResourceUtil.getBooleanProperty(rb, PROPERTIES_LOG_UTILITY_CALCULATION_CONSTRUCTION);
         int aoModelSheetNumber = ResourceUtil.getIntegerProperty(rb, PROPERTIES_AutoOwnership_UEC_OWNERSHIP_UTILITY);
-        UtilityExpressionCalculator aoModelUtility = new UtilityExpressionCalculator(new File(uecFileName),
+        UtilityExpressionCalculator aoModelUtility = UtilityExpressionCalculator.newInstance(new File(uecFileName),
                 aoModelSheetNumber,
                 dataSheetNumber,
                 SiloUtil.getRbHashMap(),
@@ -63,10 +64,14 @@ public class AutoOwnershipModel {
             aoAvail[i] = 1;
         }
 
+        // solve all combinations of transit accessibility and density of one household type at once
+        DmuBlock dmuBlock = new DmuBlock(AutoOwnershipDMU.BLOCK_VARIABLES, 101 * 10);
+        dmuBlock.setSize(101 * 10);
         autoOwnerShipUtil = new double[3][8][5][12][101][10];
         for (int hhSize = 0; hhSize < 8; hhSize++) {
             for (int wrk = 0; wrk < 5; wrk++) {
                 for (int inc = 0; inc < 12; inc++) {
+                    int row = 0;
                     for (int transitAcc = 0; transitAcc < 101; transitAcc++) {
                         for (int dens = 0; dens < 10; dens++) {
                             // set DMU attributes
@@ -75,8 +80,15 @@ public class AutoOwnershipModel {
                             autoOwnershipDMU.setIncomeCategory(inc + 1);
                             autoOwnershipDMU.setTransitAccessibility(transitAcc);
                             autoOwnershipDMU.setDensityCategory(dens + 1);
-                            double util[] = aoModelUtility.solve(autoOwnershipDMU.getDmuIndexValues(),
-                                    autoOwnershipDMU, aoAvail);
+                            autoOwnershipDMU.copyToBlock(dmuBlock, row++);
+                        }
+                    }
+                    double[][] utilities = aoModelUtility.solveBatch(autoOwnershipDMU.getDmuIndexValues(), dmuBlock,
+                            aoAvail);
+                    row = 0;
+                    for (int transitAcc = 0; transitAcc < 101; transitAcc++) {
+                        for (int dens = 0; dens < 10; dens++) {
+                            double util[] = utilities[row++];
                             for (int i = 1; i < aoAvail.length; i++) {
                                 util[i-1] = Math.exp(util[i-1]);
                             }
@@ -85,7 +97,13 @@ public class AutoOwnershipModel {
                                 autoOwnerShipUtil[i-1][hhSize][wrk][inc][transitAcc][dens] = util[i-1] * prob0cars;
                             }
                             if (logCalculation) {
-                                // log UEC values for each person type
+                                // log UEC values for each person type, which requires to solve this combination alone
+                                autoOwnershipDMU.setHhSize(hhSize + 1);
+                                autoOwnershipDMU.setWorkers(wrk);
+                                autoOwnershipDMU.setIncomeCategory(inc + 1);
+                                autoOwnershipDMU.setTransitAccessibility(transitAcc);
+                                autoOwnershipDMU.setDensityCategory(dens + 1);
+                                aoModelUtility.solve(autoOwnershipDMU.getDmuIndexValues(), autoOwnershipDMU, aoAvail);
                                 aoModelUtility.logAnswersArray(traceLogger, "Auto-ownership model. HH size: " + hhSize +
                                 ", wrk: " + wrk + ", inc: " + inc + ", transitAcc: " + transitAcc + ", density: " + dens);
                                 logger.info(hhSize + "," + wrk + "," + inc + "," + transitAcc + "," + dens + "," + prob0cars + "," +
@@ -3,12 +3,16 @@ package edu.umd.ncsg.data;
 import com.pb.common.datafile.TableDataSet;
 import com.pb.common.matrix.Matrix;
 import com.pb.common.util.ResourceUtil;
+import com.pb.sawdust.calculator.Function1;
+import com.pb.sawdust.util.concurrent.ForkJoinPoolFactory;
+import com.pb.sawdust.util.concurrent.IteratorAction;
 import edu.umd.ncsg.SiloUtil;
-import omx.OmxFile;
-import omx.OmxMatrix;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.ResourceBundle;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Calculates and stores accessibilities
@@ -26,17 +30,31 @@ public class Accessibility {
     protected static final String PROPERTIES_TRANSIT_ACCESSIBILITY_BETA      = "transit.accessibility.b";
     protected static final String PROPERTIES_HTS_WORK_TLFD                   = "hts.work.tlfd";
     protected static final String PROPERTIES_AUTO_OPERATING_COSTS            = "auto.operating.costs";
+    protected static final String PROPERTIES_ACCESSIBILITY_UPDATE_TOLERANCE  = "accessibility.update.tolerance";
+    protected static final String PROPERTIES_ACCESSIBILITY_EVERY_YEAR        = "accessibility.update.every.year";
+    protected static final String PROPERTIES_SKIM_CACHE_DIRECTORY            = "skim.cache.directory";
 
     static Logger logger = Logger.getLogger(Accessibility.class);
     private ResourceBundle rb;
-    private static Matrix hwySkim;
-    private static Matrix transitSkim;
+    private static SkimMatrix hwySkim;
+    private static SkimMatrix transitSkim;
     private static double[] autoAccessibility;
     private static double[] transitAccessibility;
     private static double[] regionalAccessibility;
     private static float[] workTLFD;
     private static float autoOperatingCosts;
     private static Matrix travelTimeToRegion;
+    // impedance kernels by origin and destination index (recalculated after reading new skims), population weights and
+    // unscaled accessibilities of the last calculation, used to update accessibilities incrementally
+    private float[][] autoKernel;
+    private float[][] transitKernel;
+    private boolean kernelsUpToDate = false;
+    private String kernelSource;
+    private static final int CHECK_EVERY_NTH_ORIGIN = 10;
+    private double[] autoWeight;
+    private double[] transitWeight;
+    private double[] autoSum;
+    private double[] transitSum;
 
     public Accessibility(ResourceBundle rb, int year) {
         this.rb = rb;
@@ -52,12 +70,10 @@ public class Accessibility {
         // Read hwySkim matrix for year
         logger.info("  Reading skims for " + year);
 
+        String cacheDirectory = SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_SKIM_CACHE_DIRECTORY, "skims/cache");
         String hwyFileName = SiloUtil.baseDirectory + "skims/" + rb.getString(PROPERTIES_AUTO_PEAK_SKIM + year);
-        // Read highway hwySkim
-        OmxFile hSkim = new OmxFile(hwyFileName);
-        hSkim.openReadOnly();
-        OmxMatrix timeOmxSkimAutos = hSkim.getMatrix("HOVTime");
-        hwySkim = SiloUtil.convertOmxToMatrix(timeOmxSkimAutos);
+        // Read highway hwySkim (decoded once into a memory-mapped cache file)
+        hwySkim = SkimMatrix.readOmxMatrix(hwyFileName, "HOVTime", cacheDirectory);
 //        TableDataSet hwySkimTbl = SiloUtil.readCSVfile(hwyFileName);
 //        hwySkim = new Matrix(SiloUtil.getZones().length, SiloUtil.getZones().length);
 //        hwySkim.setExternalNumbersZeroBased(SiloUtil.getZones());
@@ -69,10 +85,9 @@ public class Accessibility {
 //        }
         // Read transit hwySkim
         String transitFileName = SiloUtil.baseDirectory + "skims/" + rb.getString(PROPERTIES_TRANSIT_PEAK_SKIM + year);
-        OmxFile tSkim = new OmxFile(transitFileName);
-        tSkim.openReadOnly();
-        OmxMatrix timeOmxSkimTransit = tSkim.getMatrix("CheapJrnyTime");
-        transitSkim = SiloUtil.convertOmxToMatrix(timeOmxSkimTransit);
+        transitSkim = SkimMatrix.readOmxMatrix(transitFileName, "CheapJrnyTime", cacheDirectory);
+        // kernels are recalculated only if the skims differ from the skims the kernels were calculated from
+        if (!(hwySkim.getSource() + ";" + transitSkim.getSource()).equals(kernelSource)) kernelsUpToDate = false;
 //        TableDataSet transitSkimTbl = SiloUtil.readCSVfile(transitFileName);
 //        transitSkim = new Matrix(SiloUtil.getZones().length, SiloUtil.getZones().length);
 //        transitSkim.setExternalNumbersZeroBased(SiloUtil.getZones());
@@ -98,8 +113,16 @@ public class Accessibility {
         return (autoOperatingCosts / 100f) * hwySkim.getValueAt(i, j);
     }
 
+    public boolean isUpdatedEveryYear () {
+        // by default, accessibilities are recalculated only in years with new skims
+        return ResourceUtil.getBooleanProperty(rb, PROPERTIES_ACCESSIBILITY_EVERY_YEAR, false);
+    }
+
+
     public void calculateAccessibilities (int year) {
-        // Calculate Hansen TripGenAccessibility (recalculated every year)
+        // Calculate Hansen TripGenAccessibility (recalculated after skims were read, or every year if
+        // accessibility.update.every.year is true). If the skims differ from the skims of the last calculation, all
+        // origin sums are calculated from scratch; otherwise only destinations whose population changed are updated
 
         logger.info("  Calculating accessibilities for " + year);
         float alphaAuto = (float) ResourceUtil.getDoubleProperty(rb, PROPERTIES_AUTO_ACCESSIBILITY_ALPHA);
@@ -107,32 +130,68 @@ public class Accessibility {
         float alphaTransit = (float) ResourceUtil.getDoubleProperty(rb, PROPERTIES_TRANSIT_ACCESSIBILITY_ALPHA);
         float betaTransit = (float) ResourceUtil.getDoubleProperty(rb, PROPERTIES_TRANSIT_ACCESSIBILITY_BETA);
 
-        int[] zones = geoData.getZones();
+        double tolerance = ResourceUtil.getDoubleProperty(rb, PROPERTIES_ACCESSIBILITY_UPDATE_TOLERANCE, 0);
+
+        final int[] zones = geoData.getZones();
         int[] pop = summarizeData.getPopulationByZone();
-        autoAccessibility = new double[zones.length];
-        transitAccessibility = new double[zones.length];
-        for (int orig: zones) {
-            autoAccessibility[geoData.getZoneIndex(orig)] = 0;
-            transitAccessibility[geoData.getZoneIndex(orig)] = 0;
-            for (int dest: zones) {
-                double autoImpedance;
-                if (getAutoTravelTime(orig, dest) == 0) {      // should never happen for auto
-                    autoImpedance = 0;
-                } else {
-                    autoImpedance = Math.exp(betaAuto * getAutoTravelTime(orig, dest));
+        final double[] newAutoWeight = new double[zones.length];
+        final double[] newTransitWeight = new double[zones.length];
+        for (int i = 0; i < zones.length; i++) {
+            newAutoWeight[i] = Math.pow(pop[zones[i]], alphaAuto);
+            newTransitWeight[i] = Math.pow(pop[zones[i]], alphaTransit);
+        }
+
+        if (!kernelsUpToDate) {
+            // new skims: calculate impedance kernels and sum over all destinations
+            autoKernel = new float[zones.length][];
+            transitKernel = new float[zones.length][];
+            autoWeight = newAutoWeight;
+            transitWeight = newTransitWeight;
+            autoSum = new double[zones.length];
+            transitSum = new double[zones.length];
+            final float finalBetaAuto = betaAuto;
+            final float finalBetaTransit = betaTransit;
+            runForAllOrigins(zones.length, new Function1<Integer, Void>() {
+                public Void apply(Integer origIndex) {
+                    calculateKernelsAndSums(zones, origIndex, finalBetaAuto, finalBetaTransit);
+                    return null;
+                }
+            });
+            kernelsUpToDate = true;
+            kernelSource = hwySkim.getSource() + ";" + transitSkim.getSource();
+        } else {
+            // same skims: only add the change of destinations whose population weight changed beyond tolerance
+            int[] changed = new int[zones.length];
+            int numberOfChanged = 0;
+            for (int i = 0; i < zones.length; i++) {
+                if (changedBeyondTolerance(autoWeight[i], newAutoWeight[i], tolerance) ||
+                        changedBeyondTolerance(transitWeight[i], newTransitWeight[i], tolerance)) {
+                    changed[numberOfChanged++] = i;
                 }
-                double transitImpedance;
-                if (getTransitTravelTime(orig, dest) == 0) {   // zone is not connected by walk-to-transit
-                    transitImpedance = 0;
-                } else {
-                    transitImpedance = Math.exp(betaTransit * getTransitTravelTime(orig, dest));
+            }
+            logger.info("  Updating accessibilities for " + numberOfChanged + " of " + zones.length + " destinations");
+            if (numberOfChanged > 0) {
+                final int[] changedDestinations = Arrays.copyOf(changed, numberOfChanged);
+                final double[] autoDelta = new double[numberOfChanged];
+                final double[] transitDelta = new double[numberOfChanged];
+                for (int k = 0; k < numberOfChanged; k++) {
+                    int dest = changedDestinations[k];
+                    autoDelta[k] = newAutoWeight[dest] - autoWeight[dest];
+                    transitDelta[k] = newTransitWeight[dest] - transitWeight[dest];
+                    autoWeight[dest] = newAutoWeight[dest];
+                    transitWeight[dest] = newTransitWeight[dest];
                 }
-                autoAccessibility[geoData.getZoneIndex(orig)] += Math.pow(pop[dest], alphaAuto) * autoImpedance;
-                transitAccessibility[geoData.getZoneIndex(orig)] += Math.pow(pop[dest], alphaTransit) * transitImpedance;
+                runForAllOrigins(zones.length, new Function1<Integer, Void>() {
+                    public Void apply(Integer origIndex) {
+                        updateSums(origIndex, changedDestinations, autoDelta, transitDelta);
+                        return null;
+                    }
+                });
             }
+            checkIncrementalSums(zones.length, newAutoWeight, newTransitWeight, tolerance);
         }
-        autoAccessibility = SiloUtil.scaleArray(autoAccessibility, 100);
-        transitAccessibility = SiloUtil.scaleArray(transitAccessibility, 100);
+        autoAccessibility = SiloUtil.scaleArray(autoSum.clone(), 100);
+        transitAccessibility = SiloUtil.scaleArray(transitSum.clone(), 100);
 
         regionalAccessibility = new double[SiloUtil.getHighestVal(geoData.getRegionList()) + 1];
         for (int region: geoData.getRegionList()) {
@@ -144,6 +203,108 @@ public class Accessibility {
     }
 
 
+    private void runForAllOrigins (int numberOfZones, Function1<Integer, Void> originFunction) {
+        // evaluate originFunction for every origin zone index in parallel. Every origin writes into its own row and
+        // element only, therefore results do not depend on the number of threads
+        ArrayList<Integer> origins = new ArrayList<>(numberOfZones);
+        for (int i = 0; i < numberOfZones; i++) origins.add(i);
+        IteratorAction<Integer> itTask = new IteratorAction<>(origins.iterator(), originFunction);
+        ForkJoinPool pool = ForkJoinPoolFactory.getForkJoinPool();
+        pool.execute(itTask);
+        itTask.waitForCompletion();
+    }
+
+
+    private void calculateKernelsAndSums (int[] zones, int origIndex, float betaAuto, float betaTransit) {
+        // calculate impedances from origin to all destinations and sum up weighted impedances
+
+        int orig = zones[origIndex];
+        float[] autoRow = new float[zones.length];
+        float[] transitRow = new float[zones.length];
+        double autoSm = 0;
+        double transitSm = 0;
+        for (int destIndex = 0; destIndex < zones.length; destIndex++) {
+            int dest = zones[destIndex];
+            float autoTime = getAutoTravelTime(orig, dest);
+            float transitTime = getTransitTravelTime(orig, dest);
+            // auto travel time of 0 should never happen, transit travel time of 0 means zone is not connected by walk-to-transit
+            if (autoTime != 0) autoRow[destIndex] = (float) Math.exp(betaAuto * autoTime);
+            if (transitTime != 0) transitRow[destIndex] = (float) Math.exp(betaTransit * transitTime);
+            autoSm += autoWeight[destIndex] * autoRow[destIndex];
+            transitSm += transitWeight[destIndex] * transitRow[destIndex];
+        }
+        autoKernel[origIndex] = autoRow;
+        transitKernel[origIndex] = transitRow;
+        autoSum[origIndex] = autoSm;
+        transitSum[origIndex] = transitSm;
+    }
+
+
+    private void updateSums (int origIndex, int[] changedDestinations, double[] autoDelta, double[] transitDelta) {
+        float[] autoRow = autoKernel[origIndex];
+        float[] transitRow = transitKernel[origIndex];
+        for (int k = 0; k < changedDestinations.length; k++) {
+            autoSum[origIndex] += autoDelta[k] * autoRow[changedDestinations[k]];
+            transitSum[origIndex] += transitDelta[k] * transitRow[changedDestinations[k]];
+        }
+    }
+
+
+    private void checkIncrementalSums (int numberOfZones, double[] newAutoWeight, double[] newTransitWeight,
+                                       double tolerance) {
+        // compare updated sums of every CHECK_EVERY_NTH_ORIGIN-th origin with sums over the kernels and current weights.
+        // Skipped changes and rounding errors of updates over many years may add up; if any sum is off by more than
+        // tolerance, all sums are calculated again from the kernels
+
+        double allowed = tolerance + 1e-9;
+        boolean drifted = false;
+        for (int origIndex = 0; origIndex < numberOfZones && !drifted; origIndex += CHECK_EVERY_NTH_ORIGIN) {
+            double autoExact = 0;
+            double transitExact = 0;
+            for (int destIndex = 0; destIndex < numberOfZones; destIndex++) {
+                autoExact += newAutoWeight[destIndex] * autoKernel[origIndex][destIndex];
+                transitExact += newTransitWeight[destIndex] * transitKernel[origIndex][destIndex];
+            }
+            drifted = Math.abs(autoSum[origIndex] - autoExact) > allowed * Math.abs(autoExact) ||
+                    Math.abs(transitSum[origIndex] - transitExact) > allowed * Math.abs(transitExact);
+        }
+        if (!drifted) return;
+        logger.warn("  Updated accessibilities differ from full calculation by more than tolerance of " + tolerance +
+                ", summing up all destinations again");
+        autoWeight = newAutoWeight;
+        transitWeight = newTransitWeight;
+        runForAllOrigins(numberOfZones, new Function1<Integer, Void>() {
+            public Void apply(Integer origIndex) {
+                sumKernels(origIndex);
+                return null;
+            }
+        });
+    }
+
+
+    private void sumKernels (int origIndex) {
+        // sum up weighted kernels of origin over all destinations
+        float[] autoRow = autoKernel[origIndex];
+        float[] transitRow = transitKernel[origIndex];
+        double autoSm = 0;
+        double transitSm = 0;
+        for (int destIndex = 0; destIndex < autoRow.length; destIndex++) {
+            autoSm += autoWeight[destIndex] * autoRow[destIndex];
+            transitSm += transitWeight[destIndex] * transitRow[destIndex];
+        }
+        autoSum[origIndex] = autoSm;
+        transitSum[origIndex] = transitSm;
+    }
+
+
+    private static boolean changedBeyondTolerance (double oldValue, double newValue, double tolerance) {
+        // relative change, any change counts if tolerance is 0
+        if (oldValue == newValue) return false;
+        if (oldValue == 0) return true;
+        return Math.abs(newValue - oldValue) > tolerance * Math.abs(oldValue);
+    }
+
+
     private void readWorkTripLengthFrequencyDistribution () {
         // read HTS trip length frequency distribution for work trips
 
@@ -0,0 +1,242 @@
+package edu.umd.ncsg.data;
+
+import edu.umd.ncsg.SiloUtil;
+
+import java.util.Arrays;
+
+/**
+ * Counts and sums of dwellings and households by zone and by region. The tallies are updated by Dwelling and
+ * Household whenever a dwelling or household is added, removed or changes an attribute that is tallied, and can be
+ * read without scanning all dwellings or households. The contribution of every dwelling and household is remembered
+ * by id, so that an update subtracts exactly what was added before. Updates are ignored until initialize() was called
+ * once after the synthetic population was read.
+ **/
+
+public class AggregateRegistry {
+
+    private static boolean initialized = false;
+
+    private static int[] regionOfZone;
+
+    // dwellings by dwelling type and zone, and by dwelling type and region
+    private static int[][] dwellingsByTypeAndZone;
+    private static long[][] priceSumByTypeAndZone;
+    private static int[][] dwellingsByTypeAndRegion;
+    private static long[][] priceSumByTypeAndRegion;
+    private static long[][] bedroomSumByTypeAndRegion;
+    private static int[] vacantDwellingsByZone;
+    private static int[] vacantDwellingsByRegion;
+
+    // households by zone and race, and by region and race (households without race are counted in the totals only)
+    private static int[][] householdsByZoneAndRace;
+    private static int[][] householdsByRegionAndRace;
+    private static int[] householdsByZone;
+    private static int[] householdsByRegion;
+
+    // contribution of every dwelling: zone (0 if not tallied), type, price, bedrooms and vacancy
+    private static int[] dwellingZone = new int[0];
+    private static int[] dwellingType = new int[0];
+    private static int[] dwellingPrice = new int[0];
+    private static int[] dwellingBedrooms = new int[0];
+    private static boolean[] dwellingVacant = new boolean[0];
+
+    // contribution of every household: zone (0 if not tallied) and race (-1 if not defined yet)
+    private static int[] householdZone = new int[0];
+    private static int[] householdRace = new int[0];
+
+
+    public static synchronized void initialize () {
+        // set up tallies from scratch with all dwellings and households stored so far
+
+        int highestZone = geoData.getHighestZonalId();
+        int highestRegion = SiloUtil.getHighestVal(geoData.getRegionList());
+        int types = DwellingType.values().length;
+        int races = Race.values().length;
+        regionOfZone = new int[highestZone + 1];
+        for (int zone: geoData.getZones()) regionOfZone[zone] = geoData.getRegionOfZone(zone);
+
+        dwellingsByTypeAndZone = new int[types][highestZone + 1];
+        priceSumByTypeAndZone = new long[types][highestZone + 1];
+        dwellingsByTypeAndRegion = new int[types][highestRegion + 1];
+        priceSumByTypeAndRegion = new long[types][highestRegion + 1];
+        bedroomSumByTypeAndRegion = new long[types][highestRegion + 1];
+        vacantDwellingsByZone = new int[highestZone + 1];
+        vacantDwellingsByRegion = new int[highestRegion + 1];
+        householdsByZoneAndRace = new int[highestZone + 1][races];
+        householdsByRegionAndRace = new int[highestRegion + 1][races];
+        householdsByZone = new int[highestZone + 1];
+        householdsByRegion = new int[highestRegion + 1];
+
+        dwellingZone = new int[Dwelling.getHighestDwellingId() + 1];
+        dwellingType = new int[dwellingZone.length];
+        dwellingPrice = new int[dwellingZone.length];
+        dwellingBedrooms = new int[dwellingZone.length];
+        dwellingVacant = new boolean[dwellingZone.length];
+        householdZone = new int[Household.getHighestHouseholdId() + 1];
+        householdRace = new int[householdZone.length];
+
+        initialized = true;
+        for (Dwelling dd: Dwelling.getDwellings()) updateDwelling(dd);
+        for (Household hh: Household.getHouseholds()) updateHousehold(hh);
+    }
+
+
+    public static synchronized void updateDwelling (Dwelling dd) {
+        // replace tallied attributes of dwelling dd by its current attributes
+        if (!initialized) return;
+        int id = dd.getId();
+        removeDwelling(id);
+        int zone = dd.getZone();
+        if (zone <= 0 || zone >= regionOfZone.length) return;
+        if (id >= dwellingZone.length) {
+            int size = Math.max(id + 1, dwellingZone.length + (dwellingZone.length >> 1));
+            dwellingZone = Arrays.copyOf(dwellingZone, size);
+            dwellingType = Arrays.copyOf(dwellingType, size);
+            dwellingPrice = Arrays.copyOf(dwellingPrice, size);
+            dwellingBedrooms = Arrays.copyOf(dwellingBedrooms, size);
+            dwellingVacant = Arrays.copyOf(dwellingVacant, size);
+        }
+        dwellingZone[id] = zone;
+        dwellingType[id] = dd.getType().ordinal();
+        dwellingPrice[id] = dd.getPrice();
+        dwellingBedrooms[id] = dd.getBedrooms();
+        dwellingVacant[id] = dd.getResidentId() == -1;
+        addDwelling(id, 1);
+    }
+
+
+    public static synchronized void removeDwelling (int id) {
+        // remove tallied attributes of dwelling id
+        if (!initialized || id < 0 || id >= dwellingZone.length || dwellingZone[id] == 0) return;
+        addDwelling(id, -1);
+        dwellingZone[id] = 0;
+    }
+
+
+    private static void addDwelling (int id, int sign) {
+        // add (sign = 1) or subtract (sign = -1) the remembered attributes of dwelling id
+        int zone = dwellingZone[id];
+        int region = regionOfZone[zone];
+        int type = dwellingType[id];
+        dwellingsByTypeAndZone[type][zone] += sign;
+        priceSumByTypeAndZone[type][zone] += sign * dwellingPrice[id];
+        dwellingsByTypeAndRegion[type][region] += sign;
+        priceSumByTypeAndRegion[type][region] += sign * dwellingPrice[id];
+        bedroomSumByTypeAndRegion[type][region] += sign * dwellingBedrooms[id];
+        if (dwellingVacant[id]) {
+            vacantDwellingsByZone[zone] += sign;
+            vacantDwellingsByRegion[region] += sign;
+        }
+    }
+
+
+    public static synchronized void updateHousehold (Household hh) {
+        // replace tallied attributes of household hh by its current attributes
+        if (!initialized) return;
+        int id = hh.getId();
+        removeHousehold(id);
+        int zone = hh.getHomeZone();
+        if (zone <= 0 || zone >= regionOfZone.length) return;
+        if (id >= householdZone.length) {
+            int size = Math.max(id + 1, householdZone.length + (householdZone.length >> 1));
+            householdZone = Arrays.copyOf(householdZone, size);
+            householdRace = Arrays.copyOf(householdRace, size);
+        }
+        householdZone[id] = zone;
+        householdRace[id] = hh.getRace() == null ? -1 : hh.getRace().ordinal();
+        addHousehold(id, 1);
+    }
+
+
+    public static synchronized void removeHousehold (int id) {
+        // remove tallied attributes of household id
+        if (!initialized || id < 0 || id >= householdZone.length || householdZone[id] == 0) return;
+        addHousehold(id, -1);
+        householdZone[id] = 0;
+    }
+
+
+    private static void addHousehold (int id, int sign) {
+        // add (sign = 1) or subtract (sign = -1) the remembered attributes of household id
+        int zone = householdZone[id];
+        int region = regionOfZone[zone];
+        householdsByZone[zone] += sign;
+        householdsByRegion[region] += sign;
+        int race = householdRace[id];
+        if (race >= 0) {
+            householdsByZoneAndRace[zone][race] += sign;
+            householdsByRegionAndRace[region][race] += sign;
+        }
+    }
+
+
+    public static int getNumberOfDwellings (DwellingType type, int zone) {
+        return dwellingsByTypeAndZone[type.ordinal()][zone];
+    }
+
+
+    public static long getPriceSum (DwellingType type, int zone) {
+        return priceSumByTypeAndZone[type.ordinal()][zone];
+    }
+
+
+    public static int getNumberOfDwellingsInRegion (DwellingType type, int region) {
+        return dwellingsByTypeAndRegion[type.ordinal()][region];
+    }
+
+
+    public static long getPriceSumInRegion (DwellingType type, int region) {
+        return priceSumByTypeAndRegion[type.ordinal()][region];
+    }
+
+
+    public static long getBedroomSumInRegion (DwellingType type, int region) {
+        return bedroomSumByTypeAndRegion[type.ordinal()][region];
+    }
+
+
+    public static synchronized int getNumberOfDwellingsInRegion (int region) {
+        // number of dwellings of all types in region
+        int count = 0;
+        for (int[] byRegion: dwellingsByTypeAndRegion) count += byRegion[region];
+        return count;
+    }
+
+
+    public static synchronized long getPriceSumInRegion (int region) {
+        // sum of prices of all dwellings in region
+        long sum = 0;
+        for (long[] byRegion: priceSumByTypeAndRegion) sum += byRegion[region];
+        return sum;
+    }
+
+
+    public static int getNumberOfVacantDwellings (int zone) {
+        return vacantDwellingsByZone[zone];
+    }
+
+
+    public static int getNumberOfVacantDwellingsInRegion (int region) {
+        return vacantDwellingsByRegion[region];
+    }
+
+
+    public static int getNumberOfHouseholds (int zone) {
+        return householdsByZone[zone];
+    }
+
+
+    public static int getNumberOfHouseholds (int zone, Race race) {
+        return householdsByZoneAndRace[zone][race.ordinal()];
+    }
+
+
+    public static int getNumberOfHouseholdsInRegion (int region) {
+        return householdsByRegion[region];
+    }
+
+
+    public static int getNumberOfHouseholdsInRegion (int region, Race race) {
+        return householdsByRegionAndRace[region][race.ordinal()];
+    }
+}
@@ -19,8 +19,6 @@ package edu.umd.ncsg.data;
 import org.apache.log4j.Logger;
 
 import java.io.PrintWriter;
-import java.util.Map;
-import java.util.HashMap;
 import java.util.Collection;
 
 /**
@@ -31,7 +29,7 @@ import java.util.Collection;
 public class Dwelling {
 
     static Logger logger = Logger.getLogger(Dwelling.class);
-    private static final Map<Integer, Dwelling> dwellingMap = new HashMap<>();
+    private static final EntityStore<Dwelling> dwellingMap = new EntityStore<>();
 	int id;
     int zone;
     int hhId;
@@ -60,11 +58,17 @@ public class Dwelling {
         this.utilOfResident = 0.;
         this.utilByHhType = new double[HouseholdType.values().length];
         dwellingMap.put(id, this);
+        ZoneMembership.updateDwelling(this);
+        AggregateRegistry.updateDwelling(this);
     }
 
 
     public static void saveDwellings (Dwelling[] dds) {
-        for (Dwelling dd: dds) dwellingMap.put(dd.getId(), dd);
+        for (Dwelling dd: dds) {
+            dwellingMap.put(dd.getId(), dd);
+            AggregateRegistry.updateDwelling(dd);
+            ZoneMembership.updateDwelling(dd);
+        }
     }
 
 
@@ -77,18 +81,25 @@ public class Dwelling {
         return dwellingMap.size();
     }
 
+    public static int getHighestDwellingId() {
+        // highest id stored so far, dwellings may be looked up by id from 0 to this value
+        return dwellingMap.getHighestId();
+    }
+
     public static Collection<Dwelling> getDwellings() {
-        // return collection of dwellings
-            return dwellingMap.values();
+        // view on all dwellings without copying, use getDwellingArray() if dwellings are added or removed in the loop
+        return dwellingMap.values();
     }
 
     public static Dwelling[] getDwellingArray() {
-        return dwellingMap.values().toArray(new Dwelling[dwellingMap.size()]);
+        return dwellingMap.toArray(Dwelling.class);
     }
 
 
     public static void removeDwelling(int id) {
         dwellingMap.remove(id);
+        AggregateRegistry.removeDwelling(id);
+        ZoneMembership.removeDwelling(id);
     }
 
 
@@ -164,6 +175,7 @@ public class Dwelling {
 
     public void setResidentID(int residentID) {
         this.hhId = residentID;
+        AggregateRegistry.updateDwelling(this);
     }
     
     public void setQuality (int quality) {
@@ -172,6 +184,7 @@ public class Dwelling {
 
     public void setPrice (int price) {
         this.price = price;
+        AggregateRegistry.updateDwelling(this);
     }
 
     public void setRestriction (float restriction) {
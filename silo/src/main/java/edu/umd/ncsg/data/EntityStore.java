@@ -0,0 +1,185 @@
+package edu.umd.ncsg.data;
+
+import java.lang.reflect.Array;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Dense storage of micro data objects (persons, households, dwellings and jobs) indexed by their id. Ids are handed
+ * out consecutively by the data managers, therefore a plain array replaces the boxed Integer keys and map entries of
+ * a HashMap. values() is a view on the array and does not copy the objects.
+ * The array holds one reference for every id up to the highest id stored, not one per object: ids of removed objects
+ * are not reused, and a store with few objects at high ids costs as much as a full one. The objects themselves are
+ * kept as they are, attributes are not stored in primitive columns. This fits the data managers, which hand out ids
+ * from 1 upward and remove a small share of objects per year; it is not meant for sparse ids.
+ **/
+
+public class EntityStore<T> {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private Object[] slots;
+    private int size;
+    private int highestId;
+    private int modCount;
+    private final Collection<T> values;
+
+
+    public EntityStore() {
+        slots = new Object[INITIAL_CAPACITY];
+        size = 0;
+        highestId = -1;
+        values = new ValueView();
+    }
+
+
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        if (id < 0 || id > highestId) return null;
+        return (T) slots[id];
+    }
+
+
+    public boolean contains(int id) {
+        return get(id) != null;
+    }
+
+
+    public void put(int id, T entity) {
+        if (id < 0) throw new IllegalArgumentException("Negative id " + id + " cannot be stored.");
+        if (entity == null) {
+            remove(id);
+            return;
+        }
+        if (id >= slots.length) {
+            int newCapacity = Math.max(id + 1, slots.length + (slots.length >> 1));
+            slots = Arrays.copyOf(slots, newCapacity);
+        }
+        if (slots[id] == null) {
+            size++;
+            modCount++;
+        }
+        slots[id] = entity;
+        highestId = Math.max(highestId, id);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    public T remove(int id) {
+        if (id < 0 || id > highestId) return null;
+        T removed = (T) slots[id];
+        if (removed != null) {
+            slots[id] = null;
+            size--;
+            modCount++;
+        }
+        return removed;
+    }
+
+
+    public void clear() {
+        Arrays.fill(slots, null);
+        size = 0;
+        highestId = -1;
+        modCount++;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public int getHighestId() {
+        // highest id that has been stored, returns -1 if store was empty since last clear()
+        return highestId;
+    }
+
+
+    public Collection<T> values() {
+        // view on stored objects in ascending order of their ids. The store must not be modified while iterating over
+        // the view, use toArray() if objects are added or removed in the loop.
+        return values;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    public T[] toArray(Class<T> type) {
+        T[] array = (T[]) Array.newInstance(type, size);
+        int pos = 0;
+        for (int id = 0; id <= highestId; id++) {
+            if (slots[id] != null) array[pos++] = (T) slots[id];
+        }
+        return array;
+    }
+
+
+    public int[] getIds() {
+        int[] ids = new int[size];
+        int pos = 0;
+        for (int id = 0; id <= highestId; id++) {
+            if (slots[id] != null) ids[pos++] = id;
+        }
+        return ids;
+    }
+
+
+    private class ValueView extends AbstractCollection<T> {
+
+        @Override
+        public Iterator<T> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+
+    private class ValueIterator implements Iterator<T> {
+
+        private int nextId;
+        private int lastId = -1;
+        private int expectedModCount = modCount;
+
+        ValueIterator() {
+            nextId = advance(0);
+        }
+
+        private int advance(int from) {
+            int id = from;
+            while (id <= highestId && slots[id] == null) id++;
+            return id;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextId <= highestId;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (nextId > highestId) throw new NoSuchElementException();
+            lastId = nextId;
+            nextId = advance(nextId + 1);
+            return (T) slots[lastId];
+        }
+
+        @Override
+        public void remove() {
+            if (lastId < 0) throw new IllegalStateException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            EntityStore.this.remove(lastId);
+            expectedModCount = modCount;
+            lastId = -1;
+        }
+    }
+}
@@ -20,12 +20,10 @@ import edu.umd.ncsg.SiloUtil;
 import org.apache.log4j.Logger;
 
 import java.io.PrintWriter;
-import java.util.Map;
-import java.util.HashMap;
 import java.util.Collection;
 import java.io.Serializable;
 
-import edu.umd.ncsg.SiloModel;
+import edu.umd.ncsg.RandomStreams;
 import edu.umd.ncsg.demography.BirthModel;
 
 /**
@@ -37,7 +35,7 @@ public class Household implements Serializable {
 
     static Logger logger = Logger.getLogger(Household.class);
 
-    private static final Map<Integer, Household> householdMap = new HashMap<>();
+    private static final EntityStore<Household> householdMap = new EntityStore<>();
     // Note: if attributes are edited, remember to edit attributes for inmigrants in \relocation\ImOutMigration\setupInOutMigration.java and \relocation\ImOutMigration\inmigrateHh.java as well
     private int hhId;
     private int dwellingId;
@@ -57,11 +55,13 @@ public class Household implements Serializable {
         this.autos = autos;
         persons = new Person[hhSize];
         householdMap.put(id,this);
+        AggregateRegistry.updateHousehold(this);
+        ZoneMembership.updateHousehold(this);
     }
 
 
     public static Household[] getHouseholdArray() {
-        return householdMap.values().toArray(new Household[householdMap.size()]);
+        return householdMap.toArray(Household.class);
     }
 
 
@@ -75,21 +75,31 @@ public class Household implements Serializable {
     }
 
 
+    public static int getHighestHouseholdId() {
+        // highest id stored so far, households may be looked up by id from 0 to this value
+        return householdMap.getHighestId();
+    }
+
+
     public static Collection<Household> getHouseholds() {
-//        Collection<Household> households = null;
-//        for (Household household: households) {
-//        }
+        // view on all households without copying, use getHouseholdArray() if households are added or removed in the loop
         return householdMap.values();
     }
 
 
     public static void saveHouseholds (Household[] hhs) {
-        for (Household hh: hhs) householdMap.put(hh.getId(), hh);
+        for (Household hh: hhs) {
+            householdMap.put(hh.getId(), hh);
+            AggregateRegistry.updateHousehold(hh);
+            ZoneMembership.updateHousehold(hh);
+        }
     }
 
 
     public static void remove (int hhID) {
         householdMap.remove(hhID);
+        AggregateRegistry.removeHousehold(hhID);
+        ZoneMembership.removeHousehold(hhID);
     }
 
 
@@ -167,6 +177,8 @@ public class Household implements Serializable {
 
     public void setHomeZone (int zone) {
         this.homeZone = zone;
+        AggregateRegistry.updateHousehold(this);
+        ZoneMembership.updateHousehold(this);
     }
 
 
@@ -184,6 +196,7 @@ public class Household implements Serializable {
             for (Person pp: pps) if (pp.getRace() != householdRace) householdRace = Race.other;
         }
         this.race = householdRace;
+        AggregateRegistry.updateHousehold(this);
     }
 
 
@@ -249,7 +262,7 @@ public class Household implements Serializable {
         // create new Person for this household
         int id = HouseholdDataManager.getNextPersonId();
         int gender = 1;
-        if (SiloModel.rand.nextDouble() <= BirthModel.getProbabilityForGirl()) gender = 2;
+        if (RandomStreams.nextDouble("genderOfNewborn", id) <= BirthModel.getProbabilityForGirl()) gender = 2;
         Person per = new Person (id, hhId, 0, gender, race, 0, 0, 0);
         per.setRole(PersonRole.child);
         Person previousPers[] = getPersons();
@@ -267,7 +280,7 @@ public class Household implements Serializable {
 
     public static int getTotalPopulation () {
         int tp = 0;
-        for (Household hh: getHouseholdArray()) tp += hh.getHhSize();
+        for (Household hh: getHouseholds()) tp += hh.getHhSize();
         return tp;
     }
 
@@ -275,7 +288,7 @@ public class Household implements Serializable {
     public static float getAverageHouseholdSize () {
         float ahs = 0;
         int cnt = 0;
-        for (Household hh: getHouseholdArray()) {
+        for (Household hh: getHouseholds()) {
             ahs += hh.getHhSize();
             cnt++;
         }
@@ -21,11 +21,12 @@ import java.util.*;
 import java.util.concurrent.ForkJoinPool;
 
 import com.pb.common.datafile.TableDataSet;
+import edu.umd.ncsg.RandomStreams;
 import edu.umd.ncsg.SiloModel;
 import edu.umd.ncsg.SiloUtil;
 import edu.umd.ncsg.events.EventRules;
+import edu.umd.ncsg.utils.CdfSampler;
 import com.pb.sawdust.calculator.Function1;
-import com.pb.sawdust.util.array.ArrayUtil;
 import com.pb.sawdust.util.concurrent.ForkJoinPoolFactory;
 import com.pb.sawdust.util.concurrent.IteratorAction;
 import org.apache.log4j.Logger;
@@ -56,6 +57,8 @@ public class HouseholdDataManager {
     private float[][] laborParticipationShares;
     private static float[][][] initialIncomeDistribution;              // income by age, gender and occupation
     private static float meanIncomeChange;
+    private static int[] incomeChangeOfNewJob;
+    private static CdfSampler incomeChangeOfNewJobSampler;
     public static int[] startNewJobPersonIds;
     public static int[] quitJobPersonIds;
     private float[][][] currentIncomeDistribution;
@@ -66,12 +69,33 @@ public class HouseholdDataManager {
         // constructor
         this.rb = rb;
         meanIncomeChange = (float) ResourceUtil.getDoubleProperty(rb, PROPERTIES_INCOME_CHANGE);
+        setUpIncomeChangeOfNewJob();
+    }
+
+
+    private static void setUpIncomeChangeOfNewJob () {
+        // distribution of income changes for persons starting a new job does not change, build sampler once
+
+        double[] prob = new double[21];
+        incomeChangeOfNewJob = new int[21];
+        for (int i = 0; i < prob.length; i++) {
+            // normal distribution to calculate change of income
+            incomeChangeOfNewJob[i] = (int) (-5000f + 10000f * (float) i / (prob.length - 1f));
+            prob[i] = (1 / (meanIncomeChange * Math.sqrt(2 * 3.1416))) *
+                    Math.exp(-(Math.pow(incomeChangeOfNewJob[i], 2) / (2 * Math.pow(meanIncomeChange, 2))));
+        }
+        incomeChangeOfNewJobSampler = new CdfSampler(prob);
     }
 
 
     public void readPopulation () {
         // read population
         boolean readBin = ResourceUtil.getBooleanProperty(rb, PROPERTIES_READ_BIN_FILE, false);
+        if (readBin && !SnapshotReader.isSnapshot(SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_POP_FILE_BIN))) {
+            logger.warn("Binary population file is not a snapshot file (it may have been written by an older model version). " +
+                    "Reading ascii file instead.");
+            readBin = false;
+        }
         if (readBin) {
             readBinaryPopulationDataObjects();
         } else {
@@ -87,29 +111,33 @@ public class HouseholdDataManager {
         int year = SiloUtil.getStartYear();
         String fileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_HH_FILE_ASCII) + "_" + year + ".csv";
 
-        String recString = "";
         int recCount = 0;
         try {
-            BufferedReader in = new BufferedReader(new FileReader(fileName));
-            recString = in.readLine();
+            MicroDataReader reader = new MicroDataReader(fileName);
 
             // read header
-            String[] header = recString.split(",");
-            int posId    = SiloUtil.findPositionInArray("id", header);
-            int posDwell = SiloUtil.findPositionInArray("dwelling",header);
-            int posTaz   = SiloUtil.findPositionInArray("zone",header);
-            int posSize  = SiloUtil.findPositionInArray("hhSize",header);
-            int posAutos = SiloUtil.findPositionInArray("autos",header);
-
-            // read line
-            while ((recString = in.readLine()) != null) {
+            final int posId    = reader.getColumn("id");
+            final int posDwell = reader.getColumn("dwelling");
+            final int posTaz   = reader.getColumn("zone");
+            final int posSize  = reader.getColumn("hhSize");
+            final int posAutos = reader.getColumn("autos");
+
+            // parse lines in parallel
+            ArrayList<int[]> records = reader.read(new MicroDataReader.RowParser<int[]>() {
+                public int[] parse (MicroDataReader.Row row) {
+                    return new int[]{row.getInt(posId), row.getInt(posDwell), row.getInt(posTaz), row.getInt(posSize),
+                            row.getInt(posAutos)};
+                }
+            });
+
+            // create households in the order of the file
+            for (int[] record: records) {
                 recCount++;
-                String[] lineElements = recString.split(",");
-                int id         = Integer.parseInt(lineElements[posId]);
-                int dwellingID = Integer.parseInt(lineElements[posDwell]);
-                int taz        = Integer.parseInt(lineElements[posTaz]);
-                int hhSize     = Integer.parseInt(lineElements[posSize]);
-                int autos      = Integer.parseInt(lineElements[posAutos]);
+                int id         = record[0];
+                int dwellingID = record[1];
+                int taz        = record[2];
+                int hhSize     = record[3];
+                int autos      = record[4];
 
                 new Household(id, dwellingID, taz, hhSize, autos);  // this automatically puts it in id->household map in Household class
                 if (id == SiloUtil.trackHh) {
@@ -119,23 +147,70 @@ public class HouseholdDataManager {
             }
         } catch (IOException e) {
             logger.fatal("IO Exception caught reading synpop household file: " + fileName);
-            logger.fatal("recCount = " + recCount + ", recString = <" + recString + ">");
+            logger.fatal("recCount = " + recCount + ", " + e.getMessage());
         }
         logger.info("Finished reading " + recCount + " households.");
     }
 
 
     public static void writeBinaryPopulationDataObjects(ResourceBundle appRb) {
-        // Store population object data in binary file
+        // Store households and persons in binary snapshot file
         String fileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(appRb, PROPERTIES_POP_FILE_BIN);
         logger.info("  Writing population data to binary file.");
-        Object[] data = {Household.getHouseholds().toArray(new Household[Household.getHouseholdCount()]),
-                Person.getPersons().toArray(new Person[Person.getPersonCount()])};
-        try {
-            File fl = new File(fileName);
-            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(fl));
-            out.writeObject(data);
-            out.close();
+        Household[] hhs = Household.getHouseholdArray();
+        Person[] pps = Person.getPersonArray();
+        boolean compress = ResourceUtil.getBooleanProperty(appRb, SiloUtil.PROPERTIES_COMPRESS_BINARY_FILES, false);
+        try (SnapshotWriter out = new SnapshotWriter(fileName, compress)) {
+            int[] id = new int[hhs.length];
+            int[] dwelling = new int[hhs.length];
+            int[] zone = new int[hhs.length];
+            int[] hhSize = new int[hhs.length];
+            int[] autos = new int[hhs.length];
+            for (int i = 0; i < hhs.length; i++) {
+                id[i] = hhs[i].getId();
+                dwelling[i] = hhs[i].getDwellingId();
+                zone[i] = hhs[i].getHomeZone();
+                hhSize[i] = hhs[i].getHhSize();
+                autos[i] = hhs[i].getAutos();
+            }
+            out.startTable("households", hhs.length);
+            out.addIntColumn("id", id);
+            out.addIntColumn("dwelling", dwelling);
+            out.addIntColumn("zone", zone);
+            out.addIntColumn("hhSize", hhSize);
+            out.addIntColumn("autos", autos);
+
+            id = new int[pps.length];
+            int[] hhid = new int[pps.length];
+            int[] age = new int[pps.length];
+            int[] gender = new int[pps.length];
+            String[] role = new String[pps.length];
+            String[] race = new String[pps.length];
+            int[] occupation = new int[pps.length];
+            int[] workplace = new int[pps.length];
+            int[] income = new int[pps.length];
+            for (int i = 0; i < pps.length; i++) {
+                id[i] = pps[i].getId();
+                hhid[i] = pps[i].getHhId();
+                age[i] = pps[i].getAge();
+                gender[i] = pps[i].getGender();
+                role[i] = pps[i].getRole() == null ? null : pps[i].getRole().name();
+                race[i] = pps[i].getRace() == null ? null : pps[i].getRace().name();
+                occupation[i] = pps[i].getOccupation();
+                workplace[i] = pps[i].getWorkplace();
+                income[i] = pps[i].getIncome();
+            }
+            out.startTable("persons", pps.length);
+            out.addIntColumn("id", id);
+            out.addIntColumn("hhid", hhid);
+            out.addIntColumn("age", age);
+            out.addIntColumn("gender", gender);
+            out.addStringColumn("relationShip", role);
+            out.addStringColumn("race", race);
+            out.addIntColumn("occupation", occupation);
+            out.addIntColumn("workplace", workplace);
+            out.addIntColumn("income", income);
+            out.finish();
         } catch (Exception e) {
             logger.error("Error saving to binary file " + fileName + ". Object not saved.\n" + e);
         }
@@ -143,14 +218,33 @@ public class HouseholdDataManager {
 
 
     private void readBinaryPopulationDataObjects() {
-        // read households and persons from binary file
+        // read households and persons from binary snapshot file, persons are connected to households afterwards
         String fileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_POP_FILE_BIN);
         logger.info("Reading population data from binary file.");
-        try {
-            ObjectInputStream in = new ObjectInputStream(new FileInputStream(new File(fileName)));
-            Object[] data = (Object[]) in.readObject();
-            Household.saveHouseholds((Household[]) data[0]);
-            Person.savePersons((Person[]) data[1]);
+        try (SnapshotReader in = new SnapshotReader(fileName)) {
+            if (!in.hasTable("households") || !in.hasTable("persons"))
+                throw new IOException(fileName + " has no table of households or persons.");
+            int[] id = in.getIntColumn("households", "id", -1);
+            int[] dwelling = in.getIntColumn("households", "dwelling", -1);
+            int[] zone = in.getIntColumn("households", "zone", -1);
+            int[] hhSize = in.getIntColumn("households", "hhSize", 0);
+            int[] autos = in.getIntColumn("households", "autos", 0);
+            for (int i = 0; i < id.length; i++) new Household(id[i], dwelling[i], zone[i], hhSize[i], autos[i]);
+
+            id = in.getIntColumn("persons", "id", -1);
+            int[] hhid = in.getIntColumn("persons", "hhid", -1);
+            int[] age = in.getIntColumn("persons", "age", 0);
+            int[] gender = in.getIntColumn("persons", "gender", 0);
+            String[] role = in.getStringColumn("persons", "relationShip", null);
+            String[] race = in.getStringColumn("persons", "race", null);
+            int[] occupation = in.getIntColumn("persons", "occupation", 0);
+            int[] workplace = in.getIntColumn("persons", "workplace", -1);
+            int[] income = in.getIntColumn("persons", "income", 0);
+            for (int i = 0; i < id.length; i++) {
+                Person pp = new Person(id[i], hhid[i], age[i], gender[i], race[i] == null ? null : Race.valueOf(race[i]),
+                        occupation[i], workplace[i], income[i]);
+                if (role[i] != null) pp.setRole(PersonRole.valueOf(role[i]));
+            }
         } catch (Exception e) {
             logger.error ("Error reading from binary file " + fileName + ". Object not read.\n" + e);
         }
@@ -166,39 +260,43 @@ public class HouseholdDataManager {
         int year = SiloUtil.getStartYear();
         String fileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_PP_FILE_ASCII) + "_" + year + ".csv";
 
-        String recString = "";
         int recCount = 0;
         try {
-            BufferedReader in = new BufferedReader(new FileReader(fileName));
-            recString = in.readLine();
+            MicroDataReader reader = new MicroDataReader(fileName);
 
             // read header
-            String[] header = recString.split(",");
-            int posId = SiloUtil.findPositionInArray("id", header);
-            int posHhId = SiloUtil.findPositionInArray("hhid",header);
-            int posAge = SiloUtil.findPositionInArray("age",header);
-            int posGender = SiloUtil.findPositionInArray("gender",header);
-            int posRelShp = SiloUtil.findPositionInArray("relationShip",header);
-            int posRace = SiloUtil.findPositionInArray("race",header);
-            int posOccupation = SiloUtil.findPositionInArray("occupation",header);
-            int posWorkplace = SiloUtil.findPositionInArray("workplace",header);
-            int posIncome = SiloUtil.findPositionInArray("income",header);
-
-            // read line
-            while ((recString = in.readLine()) != null) {
+            final int posId = reader.getColumn("id");
+            final int posHhId = reader.getColumn("hhid");
+            final int posAge = reader.getColumn("age");
+            final int posGender = reader.getColumn("gender");
+            final int posRelShp = reader.getColumn("relationShip");
+            final int posRace = reader.getColumn("race");
+            final int posOccupation = reader.getColumn("occupation");
+            final int posWorkplace = reader.getColumn("workplace");
+            final int posIncome = reader.getColumn("income");
+
+            // parse lines in parallel, person role and race are stored by their ordinal
+            ArrayList<int[]> records = reader.read(new MicroDataReader.RowParser<int[]>() {
+                public int[] parse (MicroDataReader.Row row) {
+                    return new int[]{row.getInt(posId), row.getInt(posHhId), row.getInt(posAge), row.getInt(posGender),
+                            PersonRole.valueOf(row.getString(posRelShp)).ordinal(),
+                            Race.valueOf(row.getString(posRace)).ordinal(), row.getInt(posOccupation),
+                            row.getInt(posWorkplace), row.getInt(posIncome)};
+                }
+            });
+
+            // create persons in the order of the file
+            for (int[] record: records) {
                 recCount++;
-                String[] lineElements = recString.split(",");
-                int id         = Integer.parseInt(lineElements[posId]);
-                int hhid       = Integer.parseInt(lineElements[posHhId]);
-                int age        = Integer.parseInt(lineElements[posAge]);
-                int gender     = Integer.parseInt(lineElements[posGender]);
-                String relShp  = lineElements[posRelShp].replace("\"", "");
-                PersonRole pr  = PersonRole.valueOf(relShp);
-                String strRace = lineElements[posRace].replace("\"", "");
-                Race race = Race.valueOf(strRace);
-                int occupation = Integer.parseInt(lineElements[posOccupation]);
-                int workplace  = Integer.parseInt(lineElements[posWorkplace]);
-                int income     = Integer.parseInt(lineElements[posIncome]);
+                int id         = record[0];
+                int hhid       = record[1];
+                int age        = record[2];
+                int gender     = record[3];
+                PersonRole pr  = PersonRole.values()[record[4]];
+                Race race      = Race.values()[record[5]];
+                int occupation = record[6];
+                int workplace  = record[7];
+                int income     = record[8];
                 Person pp = new Person(id, hhid, age, gender, race, occupation, workplace, income); //this automatically puts it in id->person map in Person class
                 pp.setRole(pr);
                 if (id == SiloUtil.trackPp) {
@@ -208,7 +306,7 @@ public class HouseholdDataManager {
             }
         } catch (IOException e) {
             logger.fatal("IO Exception caught reading synpop household file: " + fileName);
-            logger.fatal("recCount = " + recCount + ", recString = <" + recString + ">");
+            logger.fatal("recCount = " + recCount + ", " + e.getMessage());
         }
         logger.info("Finished reading " + recCount + " persons.");
     }
@@ -216,7 +314,7 @@ public class HouseholdDataManager {
 
     public void connectPersonsToHouseholds () {
         // connect person objects to household objects
-        for (Person per: Person.getPersonArray()) {
+        for (Person per: Person.getPersons()) {
             Household hhOfThisPerson = Household.getHouseholdFromId(per.getHhId());
             hhOfThisPerson.addPersonForInitialSetup(per);
             if (per.getHhId() == SiloUtil.trackHh || per.getId() == SiloUtil.trackPp) {
@@ -228,7 +326,7 @@ public class HouseholdDataManager {
 
     public void setTypeOfAllHouseholds () {
         // define household types
-        for (Household hh: Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             hh.setType();
             hh.setHouseholdRace();
         }
@@ -383,7 +481,7 @@ public class HouseholdDataManager {
 
         int pers[][] = new int[2][101];
         int ppRace[] = new int[4];
-        for (Person per: Person.getPersonArray()) {
+        for (Person per: Person.getPersons()) {
             int gender = per.getGender();
             int age = Math.min(per.getAge(), 100);
             pers[gender-1][age] += 1;
@@ -405,7 +503,7 @@ public class HouseholdDataManager {
         summarizeData.resultFile("black," + ppRace[1]);
         summarizeData.resultFile("hispanic," + ppRace[2]);
         summarizeData.resultFile("other," + ppRace[3]);
-        for (Household hh: Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             int hhSize = Math.min(hh.getHhSize(), 10);
             hhs[hhSize - 1]++;
             hht[hh.getHouseholdType().ordinal()]++;
@@ -436,7 +534,7 @@ public class HouseholdDataManager {
         // labor participation and commuting distance
         float[][][] labP = new float[2][2][5];
         float[][] commDist = new float[2][SiloUtil.getHighestVal(geoData.getRegionList()) + 1];
-        for (Person per: Person.getPersonArray()) {
+        for (Person per: Person.getPersons()) {
             int age = per.getAge();
             int gender = per.getGender() - 1;
             boolean employed = per.getWorkplace() > 0;
@@ -468,9 +566,9 @@ public class HouseholdDataManager {
     public void setHighestHouseholdAndPersonId () {
         // identify highest household ID and highest person ID in use
         highestHouseholdIdInUse = 0;
-        for (Household hh: Household.getHouseholdArray()) highestHouseholdIdInUse = Math.max(highestHouseholdIdInUse, hh.getId());
+        for (Household hh: Household.getHouseholds()) highestHouseholdIdInUse = Math.max(highestHouseholdIdInUse, hh.getId());
         highestPersonIdInUse = 0;
-        for (Person pp: Person.getPersonArray()) highestPersonIdInUse = Math.max(highestPersonIdInUse, pp.getId());
+        for (Person pp: Person.getPersons()) highestPersonIdInUse = Math.max(highestPersonIdInUse, pp.getId());
     }
 
 
@@ -553,7 +651,7 @@ public class HouseholdDataManager {
 
         laborParticipationShares = new float[2][100];
         int[][] count = new int[2][100];
-        for (Person pp: Person.getPersonArray()) {
+        for (Person pp: Person.getPersons()) {
             int age = pp.getAge();
             if (age > 99) continue;  // people older than 99 will always be unemployed/retired
             int gender = pp.getGender();
@@ -582,7 +680,7 @@ public class HouseholdDataManager {
 
         float[][][] averageIncome = new float[2][100][2];              // income by gender, age and unemployed/employed
         int[][][] count = new int[2][100][2];
-        for (Person pp: Person.getPersonArray()) {
+        for (Person pp: Person.getPersons()) {
             int age = Math.min(99, pp.getAge());
             int occupation = 0;
             if (pp.getOccupation() == 1) occupation = 1;
@@ -613,41 +711,37 @@ public class HouseholdDataManager {
         // select who will get a raise or drop in salary
 
         currentIncomeDistribution = calculateIncomeDistribution();   // income by gender, age and unemployed/employed
-        Integer[] personArray = new Integer[Person.getPersonCount()];
-        Person[] pps = Person.getPersonArray();
-        for (int per = 0; per < pps.length; per++) personArray[per] = pps[per].getId();
 
         // Multi-threading code
-        Function1<Integer, Void> incomeChangeFunction = new Function1<Integer, Void>() {
-            public Void apply(Integer per) {
-                adjustIncomeForPerson(per);
+        Function1<Person, Void> incomeChangeFunction = new Function1<Person, Void>() {
+            public Void apply(Person pp) {
+                adjustIncomeForPerson(pp);
                 return null;
             }
         };
 //
-        Iterator<Integer> incomeChangeIterator = ArrayUtil.getIterator(personArray);
-        IteratorAction<Integer> itTask = new IteratorAction<>(incomeChangeIterator, incomeChangeFunction);
+        Iterator<Person> incomeChangeIterator = Person.getPersons().iterator();
+        IteratorAction<Person> itTask = new IteratorAction<>(incomeChangeIterator, incomeChangeFunction);
         ForkJoinPool pool = ForkJoinPoolFactory.getForkJoinPool();
         pool.execute(itTask);
         itTask.waitForCompletion();
     }
 
 
-    private void adjustIncomeForPerson (int per) {
-        // adjust income of person with ID per
+    private void adjustIncomeForPerson (Person pp) {
+        // adjust income of person pp
 
-        Person pp = Person.getPersonFromId(per);
         int gender = pp.gender - 1;
         int age = Math.min(99, pp.age);
         int occ = 0;
         if (pp.occupation == 1) occ = 1;
         float desiredShift = initialIncomeDistribution[gender][age][occ] - currentIncomeDistribution[gender][age][occ];
-        int newIncome = selectNewIncome(pp.getIncome(), desiredShift);
+        int newIncome = selectNewIncome(pp.getIncome(), desiredShift, RandomStreams.getStream("adjustIncome", pp.getId()));
         pp.setIncome(newIncome);
     }
 
 
-    private int selectNewIncome (int currentIncome, float desiredShift) {
+    private int selectNewIncome (int currentIncome, float desiredShift, Random rand) {
         // calculate new income using a normal distribution
 
         double[] prob = new double[21];
@@ -676,7 +770,7 @@ public class HouseholdDataManager {
                     (2 * Math.pow(meanIncomeChange, 2))));
         }
         prob[smallestAbsValuePos] = prob[smallestAbsValuePos] * 10;   // make no change most likely
-        int sel = SiloUtil.select(prob);
+        int sel = SiloUtil.select(prob, rand);
         return Math.max((currentIncome + lowerBound + (upperBound - lowerBound) / prob.length * sel), 0);
     }
 
@@ -684,16 +778,8 @@ public class HouseholdDataManager {
     public static int selectIncomeForPerson (int gender, int age, int occupation) {
         // select income for household based on gender, age and occupation
 
-        double[] prob = new double[21];
-        int[] change = new int[21];
-        for (int i = 0; i < prob.length; i++) {
-            // normal distribution to calculate change of income
-            change[i] = (int) (-5000f + 10000f * (float) i / (prob.length - 1f));
-            prob[i] = (1 / (meanIncomeChange * Math.sqrt(2 * 3.1416))) *
-                    Math.exp(-(Math.pow(change[i], 2) / (2 * Math.pow(meanIncomeChange, 2))));
-        }
-        int sel = SiloUtil.select(prob);
-        return Math.max((int) initialIncomeDistribution[gender][age][occupation] + change[sel], 0);
+        int sel = incomeChangeOfNewJobSampler.select(SiloModel.rand);
+        return Math.max((int) initialIncomeDistribution[gender][age][occupation] + incomeChangeOfNewJob[sel], 0);
     }
 
 
@@ -706,7 +792,7 @@ public class HouseholdDataManager {
         // count currently employed people
         final float[][] currentlyEmployed = new float[2][100];
         final float[][] currentlyUnemployed = new float[2][100];
-        for (Person pp : Person.getPersonArray()) {
+        for (Person pp: Person.getPersons()) {
             int age = pp.getAge();
             if (age > 99) continue;  // people older than 99 will always be unemployed/retired
             int gender = pp.getGender();
@@ -738,7 +824,7 @@ public class HouseholdDataManager {
         // plan employment changes
         ArrayList<Integer> alFindJob = new ArrayList<>();
         ArrayList<Integer> alQuitJob = new ArrayList<>();
-        for (Person pp : Person.getPersonArray()) {
+        for (Person pp: Person.getPersons()) {
             int age = pp.getAge();
             if (age > 99) continue;  // people older than 99 will always be unemployed/retired
             int gen = pp.getGender() - 1;
@@ -779,16 +865,8 @@ public class HouseholdDataManager {
         // return HashMap<Zone, ArrayOfHouseholdIds>
 
         HashMap<Integer, int[]> hhByZone = new HashMap<>();
-        for (Household hh: Household.getHouseholdArray()) {
-            int zone = hh.getHomeZone();
-            if (hhByZone.containsKey(zone)) {
-                int[] oldList = hhByZone.get(zone);
-                int[] newList = SiloUtil.expandArrayByOneElement(oldList, hh.getId());
-                hhByZone.put(zone, newList);
-            } else {
-                hhByZone.put(zone, new int[]{hh.getId()});
-            }
-
+        for (int zone: geoData.getZones()) {
+            if (ZoneMembership.getNumberOfHouseholds(zone) > 0) hhByZone.put(zone, ZoneMembership.getHouseholdsInZone(zone));
         }
         return hhByZone;
     }
@@ -797,11 +875,8 @@ public class HouseholdDataManager {
     public static int[] getNumberOfHouseholdsByRegion() {
         // return number of households by region
         int[] hhByRegion = new int[geoData.getRegionList().length];
-        for (Household hh: Household.getHouseholdArray()) {
-            if (hh.getHomeZone() == -1) continue;  // unclear why this is needed
-            int region = geoData.getRegionOfZone(hh.getHomeZone());
-            hhByRegion[geoData.getRegionIndex(region)]++;
-        }
+        for (int region: geoData.getRegionList())
+            hhByRegion[geoData.getRegionIndex(region)] = AggregateRegistry.getNumberOfHouseholdsInRegion(region);
         return hhByRegion;
     }
 
@@ -810,7 +885,7 @@ public class HouseholdDataManager {
         // calculate median income for each MSA
 
         HashMap<Integer, ArrayList<Integer>> incomeHashMap = new HashMap<>();
-        for (Household hh: Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             int homeMSA = geoData.getMSAOfZone(hh.getHomeZone());
             if (incomeHashMap.containsKey(homeMSA)) {
                 ArrayList<Integer> inc = incomeHashMap.get(homeMSA);
@@ -854,7 +929,7 @@ public class HouseholdDataManager {
         HashMap<Integer, ArrayList> hhByDistToMetro = new HashMap<>();
         for (Integer dist = 0; dist <= 20; dist++) hhByDistToMetro.put(dist, new ArrayList<Integer>());
 
-        for (Household hh: Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             int incCat = getIncomeCategoryForIncome(hh.getHhIncome());
             Integer smallestDist = 21;
             for (int row = 1; row <= selectedMetro.getRowCount(); row++) {
@@ -17,10 +17,7 @@
 package edu.umd.ncsg.data;
 
 import java.io.PrintWriter;
-import java.util.Map;
-import java.util.HashMap;
 import java.util.Collection;
-import java.util.Set;
 
 /**
  * Class to hold job data
@@ -30,7 +27,7 @@ import java.util.Set;
 
 public class Job {
 
-    private static final Map<Integer, Job> jobMap = new HashMap<>();
+    private static final EntityStore<Job> jobMap = new EntityStore<>();
 	private int id;
     private int zone;
     private int workerId;
@@ -43,16 +40,32 @@ public class Job {
         this.zone = zone;
         this.workerId = workerId;
         this.type = type;
-        jobMap.put(id, this);
+        storeJob(this);
     }
 
 
-    public static void saveJobs (Job[] jjs) {
-        for (Job jj: jjs) jobMap.put(jj.getId(), jj);
+    private static synchronized void storeJob (Job jj) {
+        jobMap.put(jj.getId(), jj);
+        ZoneMembership.updateJob(jj);
+    }
+
+
+    public static synchronized void saveJobs (Job[] jjs) {
+        for (Job jj: jjs) {
+            jobMap.put(jj.getId(), jj);
+            ZoneMembership.updateJob(jj);
+        }
+    }
+
+
+    public static synchronized void createVacantJobs (int firstId, int count, int zone, String type) {
+        // create <count> vacant jobs of <type> in <zone> with the ids firstId to firstId + count - 1 (thread-safe)
+        for (int id = firstId; id < firstId + count; id++) new Job(id, zone, -1, type);
     }
 
 
     public static Job getJobFromId(int jobId) {
+        // not synchronized, must not be called by tasks of updateJobs while other tasks add or remove jobs
         return jobMap.get(jobId);
     }
 
@@ -62,21 +75,31 @@ public class Job {
     }
 
     public static Collection<Job> getJobs() {
-        // return collection of jobs
-            return jobMap.values();
+        // view on all jobs without copying, use getJobArray() if jobs are added or removed in the loop
+        return jobMap.values();
     }
 
     public static Job[] getJobArray() {
-        return jobMap.values().toArray(new Job[jobMap.size()]);
+        return jobMap.toArray(Job.class);
     }
 
 
-    public static Set<Integer> getJobMapIDs () {
-        return jobMap.keySet();
+    public static int[] getJobMapIDs () {
+        return jobMap.getIds();
     }
 
-    public static void removeJob(int id) {
+    public static synchronized void removeJob(int id) {
         jobMap.remove(id);
+        ZoneMembership.removeJob(id);
+    }
+
+
+    public static synchronized void removeJobs (Job[] jjs, int count) {
+        // remove the first <count> jobs of jjs (thread-safe)
+        for (int i = 0; i < count; i++) {
+            jobMap.remove(jjs[i].getId());
+            ZoneMembership.removeJob(jjs[i].getId());
+        }
     }
 
 
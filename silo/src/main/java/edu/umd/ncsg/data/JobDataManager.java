@@ -21,8 +21,8 @@ import java.util.*;
 
 import com.pb.common.datafile.TableDataSet;
 import com.pb.common.util.ResourceUtil;
+import edu.umd.ncsg.SiloModel;
 import edu.umd.ncsg.SiloUtil;
-import edu.umd.ncsg.events.IssueCounter;
 import org.apache.log4j.Logger;
 
 
@@ -44,16 +44,18 @@ public class JobDataManager {
     private ResourceBundle rb;
 
     private static int highestJobIdInUse;
-    private static int[][] vacantJobsByRegion;
-    private static int[] vacantJobsByRegionPos;
-    private static int numberOfStoredVacantJobs;
+    private static VacancyPool vacantJobsByRegion;
+    private static VacancyPool vacantJobsByZone;
+    private static int initialCapacityVacantJobs;
+    private static double[][] regionWeightByHomeZone;
     private static float[] zonalJobDensity;
 
 
     public JobDataManager(ResourceBundle rb) {
         // constructor
         this.rb = rb;
-        numberOfStoredVacantJobs = ResourceUtil.getIntegerProperty(rb, PROPERTIES_MAX_NUM_VAC_JOB);
+        // pools grow as needed, vacant.job.by.reg.array only sets the initial capacity by region
+        initialCapacityVacantJobs = ResourceUtil.getIntegerProperty(rb, PROPERTIES_MAX_NUM_VAC_JOB, 1000);
     }
 
 
@@ -61,6 +63,11 @@ public class JobDataManager {
         // read population
         new JobType(rb);
         boolean readBin = ResourceUtil.getBooleanProperty(rb, PROPERTIES_READ_BIN_FILE, false);
+        if (readBin && !SnapshotReader.isSnapshot(SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_JJ_FILE_BIN))) {
+            logger.warn("Binary job file is not a snapshot file (it may have been written by an older model version). " +
+                    "Reading ascii file instead.");
+            readBin = false;
+        }
         if (readBin) {
             readBinaryJobDataObjects();
         } else {
@@ -76,27 +83,31 @@ public class JobDataManager {
         int year = SiloUtil.getStartYear();
         String fileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_JJ_FILE_ASCII) + "_" + year + ".csv";
 
-        String recString = "";
         int recCount = 0;
         try {
-            BufferedReader in = new BufferedReader(new FileReader(fileName));
-            recString = in.readLine();
+            MicroDataReader reader = new MicroDataReader(fileName);
 
             // read header
-            String[] header = recString.split(",");
-            int posId = SiloUtil.findPositionInArray("id", header);
-            int posZone = SiloUtil.findPositionInArray("zone",header);
-            int posWorker = SiloUtil.findPositionInArray("personId",header);
-            int posType = SiloUtil.findPositionInArray("type",header);
-
-            // read line
-            while ((recString = in.readLine()) != null) {
+            final int posId = reader.getColumn("id");
+            final int posZone = reader.getColumn("zone");
+            final int posWorker = reader.getColumn("personId");
+            final int posType = reader.getColumn("type");
+
+            // parse lines in parallel, the job type is stored by its ordinal
+            ArrayList<int[]> records = reader.read(new MicroDataReader.RowParser<int[]>() {
+                public int[] parse (MicroDataReader.Row row) {
+                    return new int[]{row.getInt(posId), row.getInt(posZone), row.getInt(posWorker),
+                            JobType.getOrdinal(row.getString(posType))};
+                }
+            });
+
+            // create jobs in the order of the file
+            for (int[] record: records) {
                 recCount++;
-                String[] lineElements = recString.split(",");
-                int id      = Integer.parseInt(lineElements[posId]);
-                int zone    = Integer.parseInt(lineElements[posZone]);
-                int worker  = Integer.parseInt(lineElements[posWorker]);
-                String type = lineElements[posType].replace("\"", "");
+                int id      = record[0];
+                int zone    = record[1];
+                int worker  = record[2];
+                String type = JobType.getJobType(record[3]);
                 new Job(id, zone, worker, type);
                 if (id == SiloUtil.trackJj) {
                     SiloUtil.trackWriter.println("Read job with following attributes from " + fileName);
@@ -105,23 +116,36 @@ public class JobDataManager {
             }
         } catch (IOException e) {
             logger.fatal("IO Exception caught reading synpop job file: " + fileName);
-            logger.fatal("recCount = " + recCount + ", recString = <" + recString + ">");
+            logger.fatal("recCount = " + recCount + ", " + e.getMessage());
         }
         logger.info("Finished reading " + recCount + " jobs.");
     }
 
 
     public static void writeBinaryJobDataObjects(ResourceBundle appRb) {
-        // Store job object data in binary file
+        // Store jobs in binary snapshot file
 
         String fileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(appRb, PROPERTIES_JJ_FILE_BIN);
         logger.info("  Writing job data to binary file.");
-        Object[] data = Job.getJobs().toArray(new Job[Job.getJobCount()]);
-        try {
-            File fl = new File(fileName);
-            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(fl));
-            out.writeObject(data);
-            out.close();
+        Job[] jjs = Job.getJobArray();
+        boolean compress = ResourceUtil.getBooleanProperty(appRb, SiloUtil.PROPERTIES_COMPRESS_BINARY_FILES, false);
+        try (SnapshotWriter out = new SnapshotWriter(fileName, compress)) {
+            int[] id = new int[jjs.length];
+            int[] zone = new int[jjs.length];
+            int[] worker = new int[jjs.length];
+            String[] type = new String[jjs.length];
+            for (int i = 0; i < jjs.length; i++) {
+                id[i] = jjs[i].getId();
+                zone[i] = jjs[i].getZone();
+                worker[i] = jjs[i].getWorkerId();
+                type[i] = jjs[i].getType();
+            }
+            out.startTable("jobs", jjs.length);
+            out.addIntColumn("id", id);
+            out.addIntColumn("zone", zone);
+            out.addIntColumn("personId", worker);
+            out.addStringColumn("type", type);
+            out.finish();
         } catch (Exception e) {
             logger.error("Error saving to binary file " + fileName + ". Object not saved.\n" + e);
         }
@@ -129,13 +153,16 @@ public class JobDataManager {
 
 
     private void readBinaryJobDataObjects() {
-        // read jobs from binary file
+        // read jobs from binary snapshot file
         String fileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_JJ_FILE_BIN);
         logger.info("Reading job data from binary file.");
-        try {
-            ObjectInputStream in = new ObjectInputStream(new FileInputStream(new File(fileName)));
-            Object[] data = (Object[]) in.readObject();
-            Job.saveJobs((Job[]) data[0]);
+        try (SnapshotReader in = new SnapshotReader(fileName)) {
+            if (!in.hasTable("jobs")) throw new IOException(fileName + " has no table of jobs.");
+            int[] id = in.getIntColumn("jobs", "id", -1);
+            int[] zone = in.getIntColumn("jobs", "zone", -1);
+            int[] worker = in.getIntColumn("jobs", "personId", -1);
+            String[] type = in.getStringColumn("jobs", "type", null);
+            for (int i = 0; i < id.length; i++) new Job(id[i], zone[i], worker[i], type[i]);
         } catch (Exception e) {
             logger.error ("Error reading from binary file " + fileName + ". Object not read.\n" + e);
         }
@@ -146,7 +173,7 @@ public class JobDataManager {
     public void setHighestJobId () {
         // identify highest job ID in use
         highestJobIdInUse = 0;
-        for (Job jj: Job.getJobArray()) highestJobIdInUse = Math.max(highestJobIdInUse, jj.getId());
+        for (Job jj: Job.getJobs()) highestJobIdInUse = Math.max(highestJobIdInUse, jj.getId());
     }
 
 
@@ -157,6 +184,13 @@ public class JobDataManager {
     }
 
 
+    public static int getNextJobIds (int count) {
+        // increase highestJobIdInUse by count and return the first of the count new ids
+        highestJobIdInUse += count;
+        return highestJobIdInUse - count + 1;
+    }
+
+
     public void updateEmploymentForecast() {
         // create yearly employment forecast files
 
@@ -232,32 +266,36 @@ public class JobDataManager {
         // identify vacant jobs by region (one-time task at beginning of model run only)
 
         int highestRegionID = SiloUtil.getHighestVal(geoData.getRegionList());
-        vacantJobsByRegion = new int[highestRegionID + 1][numberOfStoredVacantJobs + 1];
-        vacantJobsByRegion = SiloUtil.setArrayToValue(vacantJobsByRegion, 0);
-        vacantJobsByRegionPos = new int[highestRegionID + 1];
-        vacantJobsByRegionPos = SiloUtil.setArrayToValue(vacantJobsByRegionPos, 0);
+        int highestZone = geoData.getHighestZonalId();
+        vacantJobsByRegion = new VacancyPool(highestRegionID, initialCapacityVacantJobs);
+        vacantJobsByZone = new VacancyPool(highestZone, 16);
+        regionWeightByHomeZone = new double[highestZone + 1][];
 
         logger.info("  Identifying vacant jobs");
-        for (Job jj : Job.getJobArray()) {
+        for (Job jj: Job.getJobs()) {
             if (jj == null) continue;   // should not happen, but model crashes without this statement.
             if (jj.getWorkerId() == -1) {
                 int jobId = jj.getId();
                 int region = geoData.getRegionOfZone(jj.getZone());
-                vacantJobsByRegion[region][vacantJobsByRegionPos[region]] = jobId;
-                if (vacantJobsByRegionPos[region] < numberOfStoredVacantJobs) vacantJobsByRegionPos[region]++;
-                if (vacantJobsByRegionPos[region] >= numberOfStoredVacantJobs) IssueCounter.countExcessOfVacantJobs(region);
+                vacantJobsByRegion.add(region, jobId);
+                vacantJobsByZone.add(jj.getZone(), jobId);
                 if (jobId == SiloUtil.trackJj)
                     SiloUtil.trackWriter.println("Added job " + jobId + " to list of vacant jobs.");
             }
         }
 //        for (int region: SiloUtil.getRegionList()) logger.info ("Region " + region + " has vacant jobs: " +
-//                (vacantJobsByRegionPos[region]));
+//                (vacantJobsByRegion.size(region)));
 //        System.exit(1);
     }
 
 
     public static int getNumberOfVacantJobsByRegion (int region) {
-        return vacantJobsByRegionPos[region];
+        return vacantJobsByRegion.size(region);
+    }
+
+
+    public static int getNumberOfVacantJobsByZone (int zone) {
+        return vacantJobsByZone.size(zone);
     }
 
 
@@ -290,33 +328,15 @@ public class JobDataManager {
     public static int findVacantJob (int homeZone) {
         // select vacant job for person living in homeZone
 
-        int[] regions = geoData.getRegionList();
-        double[] regionProbability = new double[SiloUtil.getHighestVal(regions) + 1];
-
+        double[] regionProbability;
         if (homeZone > 0) {
             // person has home location (i.e., is not inmigrating right now)
-            for (int reg: regions) {
-                if (vacantJobsByRegionPos[reg] > 0) {
-                    int distance = (int) (Accessibility.getMinDistanceFromZoneToRegion(homeZone, reg) + 0.5);
-                    regionProbability[reg] = Accessibility.getWorkTLFD(distance) * (double) getNumberOfVacantJobsByRegion(reg);
-                }
-            }
-            if (SiloUtil.getSum(regionProbability) == 0) {
-                // could not find job in reasonable distance. Person will have to commute far and is likely to relocate in the future
-                for (int reg: regions) {
-                    if (vacantJobsByRegionPos[reg] > 0) {
-                        int distance = (int) (Accessibility.getMinDistanceFromZoneToRegion(homeZone, reg) + 0.5);
-                        regionProbability[reg] = 1f / distance;
-                    }
-                }
-            }
+            regionProbability = getRegionProbabilityForHomeZone(homeZone);
         } else {
             // person has no home location because (s)he is inmigrating right now and a dwelling has not been chosen yet
-            for (int reg: regions) {
-                if (vacantJobsByRegionPos[reg] > 0) {
-                    regionProbability[reg] = getNumberOfVacantJobsByRegion(reg);
-                }
-            }
+            int[] regions = geoData.getRegionList();
+            regionProbability = new double[SiloUtil.getHighestVal(regions) + 1];
+            for (int reg: regions) regionProbability[reg] = vacantJobsByRegion.size(reg);
         }
 
         if (SiloUtil.getSum(regionProbability) == 0) {
@@ -324,26 +344,67 @@ public class JobDataManager {
             return -1;
         }
         int selectedRegion = SiloUtil.select(regionProbability);
-        float[] jobProbability = new float[getNumberOfVacantJobsByRegion(selectedRegion)];
-        jobProbability = SiloUtil.setArrayToValue(jobProbability, 1);
-        int selectedJob = SiloUtil.select(jobProbability);
-
-        int jobId = vacantJobsByRegion[selectedRegion][selectedJob];
-        vacantJobsByRegion[selectedRegion][selectedJob] = vacantJobsByRegion[selectedRegion][vacantJobsByRegionPos[selectedRegion] - 1];
-        vacantJobsByRegion[selectedRegion][vacantJobsByRegionPos[selectedRegion] - 1] = 0;
-        vacantJobsByRegionPos[selectedRegion] -= 1;
-        if (jobId == SiloUtil.trackJj) SiloUtil.trackWriter.println("Removed job " + jobId + " from list of vacant jobs.");
+        int jobId = vacantJobsByRegion.sample(selectedRegion, SiloModel.rand);
+        removeJobFromVacancyList(jobId);
         return jobId;
     }
 
 
+    private static double[] getRegionProbabilityForHomeZone (int homeZone) {
+        // probability to find a job in each region for workers living in homeZone, combining the cached weight of every
+        // region with the current number of vacant jobs in that region
+
+        int[] regions = geoData.getRegionList();
+        double[] weight = getRegionWeightForHomeZone(homeZone);
+        double[] regionProbability = new double[SiloUtil.getHighestVal(regions) + 1];
+        double sum = 0;
+        for (int reg: regions) {
+            regionProbability[reg] = weight[reg] * vacantJobsByRegion.size(reg);
+            sum += regionProbability[reg];
+        }
+        if (sum == 0) {
+            // could not find job in reasonable distance. Person will have to commute far and is likely to relocate in the future
+            for (int reg: regions) {
+                if (vacantJobsByRegion.size(reg) > 0) {
+                    int distance = (int) (Accessibility.getMinDistanceFromZoneToRegion(homeZone, reg) + 0.5);
+                    regionProbability[reg] = 1f / distance;
+                }
+            }
+        }
+        return regionProbability;
+    }
+
+
+    private static double[] getRegionWeightForHomeZone (int homeZone) {
+        // trip length frequency weight of every region for workers living in homeZone, travel times to regions do not
+        // change during a model run
+
+        double[] weight = regionWeightByHomeZone[homeZone];
+        if (weight != null) return weight;
+        int[] regions = geoData.getRegionList();
+        weight = new double[SiloUtil.getHighestVal(regions) + 1];
+        for (int reg: regions) {
+            int distance = (int) (Accessibility.getMinDistanceFromZoneToRegion(homeZone, reg) + 0.5);
+            weight[reg] = Accessibility.getWorkTLFD(distance);
+        }
+        regionWeightByHomeZone[homeZone] = weight;
+        return weight;
+    }
+
+
+    private static void removeJobFromVacancyList (int jobId) {
+        vacantJobsByRegion.remove(jobId);
+        vacantJobsByZone.remove(jobId);
+        if (jobId == SiloUtil.trackJj) SiloUtil.trackWriter.println("Removed job " + jobId + " from list of vacant jobs.");
+    }
+
+
     public static void addJobToVacancyList(int zone, int jobId) {
         // add job jobId to vacancy list
 
         int region = geoData.getRegionOfZone(zone);
-        vacantJobsByRegion[region][vacantJobsByRegionPos[region]] = jobId;
-        if (vacantJobsByRegionPos[region] < numberOfStoredVacantJobs) vacantJobsByRegionPos[region]++;
-        if (vacantJobsByRegionPos[region] >= numberOfStoredVacantJobs) IssueCounter.countExcessOfVacantJobs(region);
+        vacantJobsByRegion.add(region, jobId);
+        vacantJobsByZone.add(zone, jobId);
         if (jobId == SiloUtil.trackJj) SiloUtil.trackWriter.println("Added job " + jobId + " to list of vacant jobs.");
     }
 
@@ -356,7 +417,7 @@ public class JobDataManager {
         summarizeData.resultFile(txt + ",total");
 
         int[][] jobsByTypeAndRegion = new int[JobType.getNumberOfJobTypes()][SiloUtil.getHighestVal(geoData.getRegionList()) + 1];
-        for (Job job: Job.getJobArray()) {
+        for (Job job: Job.getJobs()) {
             jobsByTypeAndRegion[JobType.getOrdinal(job.getType())][geoData.getRegionOfZone(job.getZone())]++;
         }
 
@@ -374,7 +435,7 @@ public class JobDataManager {
 
     public void calculateJobDensityByZone() {
         zonalJobDensity = new float[geoData.getZones().length];
-        for (Job jj: Job.getJobArray()) zonalJobDensity[geoData.getZoneIndex(jj.getZone())]++;
+        for (Job jj: Job.getJobs()) zonalJobDensity[geoData.getZoneIndex(jj.getZone())]++;
         for (int zone: geoData.getZones())
             zonalJobDensity[geoData.getZoneIndex(zone)] /= geoData.getSizeOfZoneInAcres(zone);
     }
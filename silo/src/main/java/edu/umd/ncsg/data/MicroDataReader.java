@@ -0,0 +1,220 @@
+package edu.umd.ncsg.data;
+
+import com.pb.sawdust.calculator.Function1;
+import com.pb.sawdust.util.concurrent.ForkJoinPoolFactory;
+import com.pb.sawdust.util.concurrent.IteratorAction;
+import edu.umd.ncsg.SiloUtil;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads micro data (households, persons, dwellings and jobs) from comma-separated files. The file is memory-mapped
+ * and split at line boundaries into chunks of about CHUNK_SIZE bytes, which are parsed in parallel. Numbers are parsed
+ * directly from the bytes of a field without creating Strings. A RowParser turns every line into a record; the
+ * records are returned in the order of the file, so that objects can be created from them in a single thread.
+ **/
+
+public class MicroDataReader {
+
+    private static final int CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+    private final String fileName;
+    private final String[] header;
+    private final long dataStart;
+    private final long fileSize;
+
+
+    public MicroDataReader (String fileName) throws IOException {
+        // read header of fileName
+        this.fileName = fileName;
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            fileSize = file.length();
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(fileSize, MAX_LINE_LENGTH));
+            int end = 0;
+            while (end < buffer.limit() && buffer.get(end) != '\n') end++;
+            if (end == buffer.limit() && end == MAX_LINE_LENGTH) throw new IOException("Header of " + fileName + " is too long.");
+            dataStart = Math.min(fileSize, end + 1);
+            if (end > 0 && buffer.get(end - 1) == '\r') end--;
+            byte[] bytes = new byte[end];
+            buffer.get(bytes);
+            header = new String(bytes, StandardCharsets.ISO_8859_1).replace("\"", "").split(",");
+        }
+    }
+
+
+    public int getColumn (String name) {
+        // return position of column name in header
+        return SiloUtil.findPositionInArray(name, header);
+    }
+
+
+    public interface RowParser<T> {
+        // turn a line of the file into a record, called by several threads at the same time
+        T parse (Row row);
+    }
+
+
+    public <T> ArrayList<T> read (final RowParser<T> parser) throws IOException {
+        // parse all lines after the header, records are returned in the order of the file. The first failure of any
+        // chunk is thrown after all chunks are done
+
+        final int chunks = (int) Math.max(1, (fileSize - dataStart + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        final ArrayList<ArrayList<T>> recordsByChunk = new ArrayList<>();
+        ArrayList<Integer> chunkList = new ArrayList<>();
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            recordsByChunk.add(null);
+            chunkList.add(chunk);
+        }
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            Function1<Integer, Void> readChunk = new Function1<Integer, Void>() {
+                public Void apply(Integer chunk) {
+                    if (failure.get() != null) return null;
+                    try {
+                        ArrayList<T> records = readChunk(channel, chunk, parser);
+                        synchronized (recordsByChunk) {
+                            recordsByChunk.set(chunk, records);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                    return null;
+                }
+            };
+            IteratorAction<Integer> itTask = new IteratorAction<>(chunkList.iterator(), readChunk);
+            ForkJoinPool pool = ForkJoinPoolFactory.getForkJoinPool();
+            pool.execute(itTask);
+            itTask.waitForCompletion();
+        } finally {
+            file.close();
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof Error) throw (Error) t;
+        if (t != null) throw new IOException("Could not read " + fileName, t);
+        int count = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            if (recordsByChunk.get(chunk) == null)
+                throw new IOException("Could not read " + fileName + ", chunk " + chunk + " was not parsed.");
+            count += recordsByChunk.get(chunk).size();
+        }
+        ArrayList<T> allRecords = new ArrayList<>(count);
+        for (ArrayList<T> records: recordsByChunk) allRecords.addAll(records);
+        return allRecords;
+    }
+
+
+    private <T> ArrayList<T> readChunk (FileChannel channel, int chunk, RowParser<T> parser) throws IOException {
+        // parse lines that start in this chunk; the last line may reach into the next chunk
+
+        long chunkStart = dataStart + (long) chunk * CHUNK_SIZE;
+        long chunkEnd = Math.min(fileSize, chunkStart + CHUNK_SIZE);
+        if (chunkStart >= chunkEnd) return new ArrayList<>();
+        long mapStart = chunk == 0 ? chunkStart : chunkStart - 1;
+        long mapEnd = Math.min(fileSize, chunkEnd + MAX_LINE_LENGTH);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+        int end = (int) (chunkEnd - mapStart);
+        int pos = 0;
+        if (chunk > 0) {
+            // skip the rest of a line that started in the previous chunk
+            while (pos < buffer.limit() && buffer.get(pos) != '\n') pos++;
+            pos++;
+        }
+
+        ArrayList<T> records = new ArrayList<>();
+        Row row = new Row(buffer, header.length);
+        while (pos < end) {
+            int lineEnd = pos;
+            while (lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n') lineEnd++;
+            if (lineEnd == buffer.limit() && mapEnd < fileSize)
+                throw new IOException("Line at byte " + (mapStart + pos) + " of " + fileName + " is too long.");
+            int contentEnd = lineEnd > pos && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > pos) {
+                row.setLine(pos, contentEnd);
+                records.add(parser.parse(row));
+            }
+            pos = lineEnd + 1;
+        }
+        return records;
+    }
+
+
+    public static final class Row {
+        // fields of the current line, used by one thread only
+
+        private final MappedByteBuffer buffer;
+        private int[] fieldStart;
+        private int[] fieldEnd;
+        private int fields;
+
+        private Row (MappedByteBuffer buffer, int columns) {
+            this.buffer = buffer;
+            this.fieldStart = new int[columns];
+            this.fieldEnd = new int[columns];
+        }
+
+        private void setLine (int start, int end) {
+            // find start and end of every field of the line from start to end
+            fields = 0;
+            int fieldBegin = start;
+            for (int pos = start; pos <= end; pos++) {
+                if (pos == end || buffer.get(pos) == ',') {
+                    if (fields == fieldStart.length) {
+                        fieldStart = Arrays.copyOf(fieldStart, fields * 2);
+                        fieldEnd = Arrays.copyOf(fieldEnd, fields * 2);
+                    }
+                    fieldStart[fields] = fieldBegin;
+                    fieldEnd[fields] = pos;
+                    fields++;
+                    fieldBegin = pos + 1;
+                }
+            }
+        }
+
+        public int getInt (int column) {
+            // parse integer field without creating a String, fields in other formats are parsed by Integer.parseInt
+            int pos = fieldStart(column);
+            int end = fieldEnd[column];
+            boolean negative = pos < end && buffer.get(pos) == '-';
+            if (negative) pos++;
+            if (pos == end || end - pos > 9) return Integer.parseInt(getString(column));
+            int value = 0;
+            for (; pos < end; pos++) {
+                int digit = buffer.get(pos) - '0';
+                if (digit < 0 || digit > 9) return Integer.parseInt(getString(column));
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        public float getFloat (int column) {
+            return Float.parseFloat(getString(column));
+        }
+
+        public String getString (int column) {
+            // return field without quotes
+            int start = fieldStart(column);
+            byte[] bytes = new byte[fieldEnd[column] - start];
+            for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(start + i);
+            return new String(bytes, StandardCharsets.ISO_8859_1).replace("\"", "");
+        }
+
+        private int fieldStart (int column) {
+            if (column < 0 || column >= fields) throw new ArrayIndexOutOfBoundsException("No field " + column +
+                    " in line with " + fields + " fields.");
+            return fieldStart[column];
+        }
+    }
+}
@@ -31,7 +31,7 @@ public class Person implements Serializable {
 
     static Logger logger = Logger.getLogger(Person.class);
 
-    private static final Map<Integer,Person> personMap = new HashMap<>();
+    private static final EntityStore<Person> personMap = new EntityStore<>();
     // Note: if attributes are edited, remember to edit attributes for inmigrants in \relocation\InOutMigration\setupInOutMigration.java and \relocation\InOutMigration\inmigrateHh.java as well
     int id;
 	int hhid;
@@ -74,12 +74,14 @@ public class Person implements Serializable {
         return personMap.size();
     }
 
+    public static int getHighestPersonId() {
+        // highest id stored so far, persons may be looked up by id from 0 to this value
+        return personMap.getHighestId();
+    }
+
 
     public static Collection<Person> getPersons() {
-//        Collection<Person> persons = null;
-//        for (Person person : persons) {
-//        }
-//
+        // view on all persons without copying, use getPersonArray() if persons are added or removed in the loop
         return personMap.values();
     }
 
@@ -90,7 +92,7 @@ public class Person implements Serializable {
 
 
     public static Person[] getPersonArray() {
-        return personMap.values().toArray(new Person[personMap.size()]);
+        return personMap.toArray(Person.class);
     }
 
 
@@ -253,7 +255,13 @@ public class Person implements Serializable {
     public void quitJob (boolean makeJobAvailableToOthers) {
         // Person quits job and the job is added to the vacantJobList
         // <makeJobAvailableToOthers> is false if this job disappears from the job market
-        Job jb = Job.getJobFromId(workplace);
+        quitJob(Job.getJobFromId(workplace), makeJobAvailableToOthers);
+    }
+
+
+    public void quitJob (Job jb, boolean makeJobAvailableToOthers) {
+        // Person quits job jb, for callers that hold the job object already and must not look it up in the job store
+        // (e.g., tasks of updateJobs that run while other tasks add jobs)
         if (makeJobAvailableToOthers) JobDataManager.addJobToVacancyList(jb.getZone(), workplace);
         jb.setWorkerID(-1);
         workplace = -1;
@@ -1,7 +1,6 @@
 package edu.umd.ncsg.data;
 
 import edu.umd.ncsg.SiloUtil;
-import edu.umd.ncsg.events.IssueCounter;
 import org.apache.log4j.Logger;
 import com.pb.common.util.ResourceUtil;
 import com.pb.common.datafile.TableDataSet;
@@ -43,9 +42,9 @@ public class RealEstateDataManager {
     public static int rentCategories;
     private static HashMap<Integer, float[]> ddPriceByHhType;
     private static int[] dwellingsByRegion;
-    private static int[][] vacDwellingsByRegion;
-    private static int[] vacDwellingsByRegionPos;
-    private static int numberOfStoredVacantDD;
+    private static VacancyPool vacDwellingsByRegion;
+    private static VacancyPool vacDwellingsByZone;
+    private static VacancyPool vacDwellingsByRegionAndType;
     private double[] avePrice;
     private double[] aveVac;
     private static float[] medianRent;
@@ -59,6 +58,11 @@ public class RealEstateDataManager {
     public void readDwellings () {
         // read population
         boolean readBin = ResourceUtil.getBooleanProperty(rb, PROPERTIES_READ_BIN_FILE, false);
+        if (readBin && !SnapshotReader.isSnapshot(SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_DD_FILE_BIN))) {
+            logger.warn("Binary dwelling file is not a snapshot file (it may have been written by an older model version). " +
+                    "Reading ascii file instead.");
+            readBin = false;
+        }
         if (readBin) {
             readBinaryDwellingDataObjects();
         } else {
@@ -74,38 +78,43 @@ public class RealEstateDataManager {
         int year = SiloUtil.getStartYear();
         String fileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_DD_FILE_ASCII) + "_" + year + ".csv";
 
-        String recString = "";
         int recCount = 0;
         try {
-            BufferedReader in = new BufferedReader(new FileReader(fileName));
-            recString = in.readLine();
+            MicroDataReader reader = new MicroDataReader(fileName);
 
             // read header
-            String[] header = recString.split(",");
-            int posId      = SiloUtil.findPositionInArray("id", header);
-            int posZone    = SiloUtil.findPositionInArray("zone",header);
-            int posHh      = SiloUtil.findPositionInArray("hhId",header);
-            int posType    = SiloUtil.findPositionInArray("type",header);
-            int posRooms   = SiloUtil.findPositionInArray("bedrooms",header);
-            int posQuality = SiloUtil.findPositionInArray("quality",header);
-            int posCosts   = SiloUtil.findPositionInArray("monthlyCost",header);
-            int posRestr   = SiloUtil.findPositionInArray("restriction",header);
-            int posYear    = SiloUtil.findPositionInArray("yearBuilt",header);
-
-            // read line
-            while ((recString = in.readLine()) != null) {
+            final int posId      = reader.getColumn("id");
+            final int posZone    = reader.getColumn("zone");
+            final int posHh      = reader.getColumn("hhId");
+            final int posType    = reader.getColumn("type");
+            final int posRooms   = reader.getColumn("bedrooms");
+            final int posQuality = reader.getColumn("quality");
+            final int posCosts   = reader.getColumn("monthlyCost");
+            final int posRestr   = reader.getColumn("restriction");
+            final int posYear    = reader.getColumn("yearBuilt");
+
+            // parse lines in parallel, the dwelling type is stored by its ordinal and the restriction by its float bits
+            ArrayList<int[]> records = reader.read(new MicroDataReader.RowParser<int[]>() {
+                public int[] parse (MicroDataReader.Row row) {
+                    return new int[]{row.getInt(posId), row.getInt(posZone), row.getInt(posHh),
+                            DwellingType.valueOf(row.getString(posType)).ordinal(), row.getInt(posCosts),
+                            row.getInt(posRooms), row.getInt(posQuality), Float.floatToIntBits(row.getFloat(posRestr)),
+                            row.getInt(posYear)};
+                }
+            });
+
+            // create dwellings in the order of the file
+            for (int[] record: records) {
                 recCount++;
-                String[] lineElements = recString.split(",");
-                int id        = Integer.parseInt(lineElements[posId]);
-                int zone      = Integer.parseInt(lineElements[posZone]);
-                int hhId      = Integer.parseInt(lineElements[posHh]);
-                String tp     = lineElements[posType].replace("\"", "");
-                DwellingType type = DwellingType.valueOf(tp);
-                int price     = Integer.parseInt(lineElements[posCosts]);
-                int area      = Integer.parseInt(lineElements[posRooms]);
-                int quality   = Integer.parseInt(lineElements[posQuality]);
-                float restrict  = Float.parseFloat(lineElements[posRestr]);
-                int yearBuilt = Integer.parseInt(lineElements[posYear]);
+                int id        = record[0];
+                int zone      = record[1];
+                int hhId      = record[2];
+                DwellingType type = DwellingType.values()[record[3]];
+                int price     = record[4];
+                int area      = record[5];
+                int quality   = record[6];
+                float restrict  = Float.intBitsToFloat(record[7]);
+                int yearBuilt = record[8];
                 new Dwelling(id, zone, hhId, type, area, quality, price, restrict, yearBuilt);   // this automatically puts it in id->dwelling map in Dwelling class
                 if (id == SiloUtil.trackDd) {
                     SiloUtil.trackWriter.println("Read dwelling with following attributes from " + fileName);
@@ -114,7 +123,7 @@ public class RealEstateDataManager {
             }
         } catch (IOException e) {
             logger.fatal("IO Exception caught reading synpop dwelling file: " + fileName);
-            logger.fatal("recCount = " + recCount + ", recString = <" + recString + ">");
+            logger.fatal("recCount = " + recCount + ", " + e.getMessage());
         }
         logger.info("Finished reading " + recCount + " dwellings.");
     }
@@ -124,43 +133,71 @@ public class RealEstateDataManager {
         // walk through all dwellings and identify vacant dwellings (one-time task at beginning of model run only)
 
         int highestRegion = SiloUtil.getHighestVal(geoData.getRegionList());
-        numberOfStoredVacantDD = ResourceUtil.getIntegerProperty(rb, PROPERTIES_MAX_NUM_VAC_DD);
+        // pools grow as needed, vacant.dd.by.reg.array only sets the initial capacity by region
+        int initialCapacity = ResourceUtil.getIntegerProperty(rb, PROPERTIES_MAX_NUM_VAC_DD, 1000);
         dwellingsByRegion = new int[highestRegion + 1];
-        vacDwellingsByRegion = new int[highestRegion + 1][numberOfStoredVacantDD + 1];
-        vacDwellingsByRegion = SiloUtil.setArrayToValue(vacDwellingsByRegion, 0);
-        vacDwellingsByRegionPos = new int[highestRegion + 1];
-        vacDwellingsByRegionPos = SiloUtil.setArrayToValue(vacDwellingsByRegionPos, 0);
+        vacDwellingsByRegion = new VacancyPool(highestRegion, initialCapacity);
+        vacDwellingsByZone = new VacancyPool(geoData.getHighestZonalId(), 16);
+        vacDwellingsByRegionAndType = new VacancyPool((highestRegion + 1) * DwellingType.values().length - 1, 16);
 
         logger.info("  Identifying vacant dwellings");
-        for (Dwelling dd : Dwelling.getDwellingArray()) {
+        for (Dwelling dd: Dwelling.getDwellings()) {
             if (dd.getResidentId() == -1) {
                 int dwellingId = dd.getId();
                 int region = geoData.getRegionOfZone(dd.getZone());
                 dwellingsByRegion[region]++;
-                vacDwellingsByRegion[region][vacDwellingsByRegionPos[region]] = dwellingId;
-                if (vacDwellingsByRegionPos[region] < numberOfStoredVacantDD) vacDwellingsByRegionPos[region]++;
-                if (vacDwellingsByRegionPos[region] >= numberOfStoredVacantDD) IssueCounter.countExcessOfVacantDwellings(region);
+                vacDwellingsByRegion.add(region, dwellingId);
+                vacDwellingsByZone.add(dd.getZone(), dwellingId);
+                vacDwellingsByRegionAndType.add(getRegionAndTypeGroup(region, dd.getType()), dwellingId);
                 if (dwellingId == SiloUtil.trackDd)
                     SiloUtil.trackWriter.println("Added dwelling " + dwellingId + " to list of vacant dwelling.");
             }
         }
 //        for (int region: SiloUtil.getRegionList()) System.out.println ("Region " + region + " has vacant dwellings: " +
-//                (vacDwellingsByRegionPos[region]));
+//                (vacDwellingsByRegion.size(region)));
 //        System.exit(1);
     }
 
 
     public static void writeBinaryDwellingDataObjects(ResourceBundle appRb) {
-        // Store dwelling object data in binary file
+        // Store dwellings in binary snapshot file
 
         String fileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(appRb, PROPERTIES_DD_FILE_BIN);
         logger.info("  Writing dwelling data to binary file.");
-        Object[] data = Dwelling.getDwellings().toArray(new Dwelling[Dwelling.getDwellingCount()]);
-        try {
-            File fl = new File(fileName);
-            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(fl));
-            out.writeObject(data);
-            out.close();
+        Dwelling[] dds = Dwelling.getDwellingArray();
+        boolean compress = ResourceUtil.getBooleanProperty(appRb, SiloUtil.PROPERTIES_COMPRESS_BINARY_FILES, false);
+        try (SnapshotWriter out = new SnapshotWriter(fileName, compress)) {
+            int[] id = new int[dds.length];
+            int[] zone = new int[dds.length];
+            int[] hhId = new int[dds.length];
+            String[] type = new String[dds.length];
+            int[] bedrooms = new int[dds.length];
+            int[] quality = new int[dds.length];
+            int[] price = new int[dds.length];
+            float[] restriction = new float[dds.length];
+            int[] yearBuilt = new int[dds.length];
+            for (int i = 0; i < dds.length; i++) {
+                id[i] = dds[i].getId();
+                zone[i] = dds[i].getZone();
+                hhId[i] = dds[i].getResidentId();
+                type[i] = dds[i].getType().name();
+                bedrooms[i] = dds[i].getBedrooms();
+                quality[i] = dds[i].getQuality();
+                price[i] = dds[i].getPrice();
+                restriction[i] = dds[i].getRestriction();
+                yearBuilt[i] = dds[i].getYearBuilt();
+            }
+            out.startTable("dwellings", dds.length);
+            out.addIntColumn("id", id);
+            out.addIntColumn("zone", zone);
+            out.addIntColumn("hhId", hhId);
+            out.addStringColumn("type", type);
+            out.addIntColumn("bedrooms", bedrooms);
+            out.addIntColumn("quality", quality);
+            out.addIntColumn("monthlyCost", price);
+            out.addFloatColumn("restriction", restriction);
+            out.addIntColumn("yearBuilt", yearBuilt);
+            out.finish();
         } catch (Exception e) {
             logger.error ("Error saving to binary file " + fileName + ". Object not saved.\n" + e);
         }
@@ -168,14 +205,23 @@ public class RealEstateDataManager {
 
 
     private void readBinaryDwellingDataObjects() {
-        // read dwellings from binary file
+        // read dwellings from binary snapshot file
 
         String fileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_DD_FILE_BIN);
         logger.info("  Reading dwelling data from binary file.");
-        try {
-            ObjectInputStream in = new ObjectInputStream(new FileInputStream(new File(fileName)));
-            Object data = in.readObject();
-            Dwelling.saveDwellings((Dwelling[]) data);
+        try (SnapshotReader in = new SnapshotReader(fileName)) {
+            if (!in.hasTable("dwellings")) throw new IOException(fileName + " has no table of dwellings.");
+            int[] id = in.getIntColumn("dwellings", "id", -1);
+            int[] zone = in.getIntColumn("dwellings", "zone", -1);
+            int[] hhId = in.getIntColumn("dwellings", "hhId", -1);
+            String[] type = in.getStringColumn("dwellings", "type", null);
+            int[] bedrooms = in.getIntColumn("dwellings", "bedrooms", 0);
+            int[] quality = in.getIntColumn("dwellings", "quality", 0);
+            int[] price = in.getIntColumn("dwellings", "monthlyCost", 0);
+            float[] restriction = in.getFloatColumn("dwellings", "restriction", 0f);
+            int[] yearBuilt = in.getIntColumn("dwellings", "yearBuilt", 0);
+            for (int i = 0; i < id.length; i++) new Dwelling(id[i], zone[i], hhId[i], DwellingType.valueOf(type[i]),
+                    bedrooms[i], quality[i], price[i], restriction[i], yearBuilt[i]);
         } catch (Exception e) {
             logger.error ("Error reading from binary file " + fileName + ". Object not read.\n" + e);
         }
@@ -260,7 +306,7 @@ public class RealEstateDataManager {
         // identify how much rent (specified by 25 rent categories) is paid by households of each income category
         rentCategories = 25;
         float[][] priceByIncome = new float[SiloUtil.incBrackets.length + 1][rentCategories + 1];
-        for (Dwelling dd: Dwelling.getDwellingArray()) {
+        for (Dwelling dd: Dwelling.getDwellings()) {
             highestDwellingIdInUse = Math.max(highestDwellingIdInUse, dd.getId());
             largestNoBedrooms = Math.max(largestNoBedrooms, dd.getBedrooms());
             int hhId = dd.getResidentId();
@@ -319,7 +365,7 @@ public class RealEstateDataManager {
         // calculate median rent by MSA
 
         HashMap<Integer, ArrayList<Integer>> rentHashMap = new HashMap<>();
-        for (Dwelling dd: Dwelling.getDwellingArray()) {
+        for (Dwelling dd: Dwelling.getDwellings()) {
             int dwellingMSA = geoData.getMSAOfZone(dd.getZone());
             if (rentHashMap.containsKey(dwellingMSA)) {
                 ArrayList<Integer> rents = rentHashMap.get(dwellingMSA);
@@ -351,7 +397,7 @@ public class RealEstateDataManager {
             summarizeData.resultFile(row);
         }
         int[] ddByType = new int[DwellingType.values().length];
-        for (Dwelling dd: Dwelling.getDwellingArray()) ddByType[dd.getType().ordinal()]++;
+        for (Dwelling dd: Dwelling.getDwellings()) ddByType[dd.getType().ordinal()]++;
         for (DwellingType dt: DwellingType.values()) {
             summarizeData.resultFile("CountOfDD,"+dt.toString()+","+ddByType[dt.ordinal()]);
         }
@@ -384,7 +430,7 @@ public class RealEstateDataManager {
         summarizeData.resultFile(header);
         int[][] rentByIncome = new int[10][10];
         int[] rents = new int[10];
-        for (Household hh: Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             int hhInc = hh.getHhIncome();
             int rent = Dwelling.getDwellingFromId(hh.getDwellingId()).getPrice();
             int incCat = Math.min((hhInc / 10000), 9);
@@ -424,35 +470,82 @@ public class RealEstateDataManager {
     public static int[] getListOfVacantDwellingsInRegion (int region) {
         // return array with IDs of vacant dwellings in region
 
-        int[] vacancies = new int[vacDwellingsByRegionPos[region]];
-        System.arraycopy(vacDwellingsByRegion[region], 0, vacancies, 0, vacDwellingsByRegionPos[region]);
-        return vacancies;
+        return vacDwellingsByRegion.toArray(region);
+    }
+
+
+    public static int[] getListOfVacantDwellingsInZone (int zone) {
+        // return array with IDs of vacant dwellings in zone
+        return vacDwellingsByZone.toArray(zone);
     }
 
 
     public static int getNumberOfVacantDDinRegion (int region) {
-        return Math.max(vacDwellingsByRegionPos[region] - 1, 0);
+        return Math.max(vacDwellingsByRegion.size(region) - 1, 0);
+    }
+
+
+    public static int getNumberOfVacantDDinZone (int zone) {
+        return vacDwellingsByZone.size(zone);
+    }
+
+
+    public static int sampleVacantDwellingInRegion (int region, Random rand) {
+        // draw vacant dwelling in region with equal probabilities, returns -1 if no dwelling is vacant
+        return vacDwellingsByRegion.sample(region, rand);
+    }
+
+
+    public static int[] sampleVacantDwellingsInRegion (int region, int k, Random rand) {
+        // draw up to k distinct vacant dwellings in region with equal probabilities, takes O(k) time
+        return vacDwellingsByRegion.sample(region, k, rand);
+    }
+
+
+    public static int[] sampleVacantDwellingsInRegionByType (int region, int k, Random rand) {
+        // draw about k distinct vacant dwellings in region, stratified by dwelling type: every type gets a share of k
+        // proportional to its vacant dwellings in this region, but at least one dwelling if any of this type is vacant
+
+        int vacant = vacDwellingsByRegion.size(region);
+        if (vacant == 0) return new int[0];
+        int[][] sampleByType = new int[DwellingType.values().length][];
+        int total = 0;
+        for (DwellingType type: DwellingType.values()) {
+            int group = getRegionAndTypeGroup(region, type);
+            int vacantOfType = vacDwellingsByRegionAndType.size(group);
+            int kOfType = vacantOfType == 0 ? 0 : Math.max(1, Math.round((float) k * vacantOfType / vacant));
+            sampleByType[type.ordinal()] = vacDwellingsByRegionAndType.sample(group, kOfType, rand);
+            total += sampleByType[type.ordinal()].length;
+        }
+        int[] sample = new int[total];
+        int pos = 0;
+        for (int[] ids: sampleByType) {
+            System.arraycopy(ids, 0, sample, pos, ids.length);
+            pos += ids.length;
+        }
+        return sample;
+    }
+
+
+    private static int getRegionAndTypeGroup (int region, DwellingType type) {
+        return region * DwellingType.values().length + type.ordinal();
+    }
+
+
+    public static int sampleVacantDwellingInZone (int zone, Random rand) {
+        // draw vacant dwelling in zone with equal probabilities, returns -1 if no dwelling is vacant
+        return vacDwellingsByZone.sample(zone, rand);
     }
 
 
     public static void removeDwellingFromVacancyList (int ddId) {
         // remove dwelling with ID ddId from list of vacant dwellings
 
-        boolean found = false;
-
-        // todo: when selecting a vacant dwelling, I should be able to store the index of this dwelling in the vacDwellingByRegion array, which should make it faster to remove the vacant dwelling from this array.
-        int region = geoData.getRegionOfZone(Dwelling.getDwellingFromId(ddId).getZone());
-        for (int i = 0; i < vacDwellingsByRegionPos[region]; i++) {
-            if (vacDwellingsByRegion[region][i] == ddId) {
-                vacDwellingsByRegion[region][i] = vacDwellingsByRegion[region][vacDwellingsByRegionPos[region] - 1];
-                vacDwellingsByRegion[region][vacDwellingsByRegionPos[region] - 1] = 0;
-                vacDwellingsByRegionPos[region] -= 1;
-                if (ddId == SiloUtil.trackDd) SiloUtil.trackWriter.println("Removed dwelling " + ddId +
-                        " from list of vacant dwellings.");
-                found = true;
-                break;
-            }
-        }
+        boolean found = vacDwellingsByRegion.remove(ddId);
+        vacDwellingsByZone.remove(ddId);
+        vacDwellingsByRegionAndType.remove(ddId);
+        if (found && ddId == SiloUtil.trackDd) SiloUtil.trackWriter.println("Removed dwelling " + ddId +
+                " from list of vacant dwellings.");
         if (!found) logger.warn("Consistency error: Could not find vacant dwelling " + ddId + " in vacDwellingsByRegion.");
     }
 
@@ -461,9 +554,9 @@ public class RealEstateDataManager {
         // add dwelling to vacancy list
 
         int region = geoData.getRegionOfZone(dd.getZone());
-        vacDwellingsByRegion[region][vacDwellingsByRegionPos[region]] = dd.getId();
-        if (vacDwellingsByRegionPos[region] < numberOfStoredVacantDD) vacDwellingsByRegionPos[region]++;
-        if (vacDwellingsByRegionPos[region] >= numberOfStoredVacantDD) IssueCounter.countExcessOfVacantDwellings(region);
+        vacDwellingsByRegion.add(region, dd.getId());
+        vacDwellingsByZone.add(dd.getZone(), dd.getId());
+        vacDwellingsByRegionAndType.add(getRegionAndTypeGroup(region, dd.getType()), dd.getId());
         if (dd.getId() == SiloUtil.trackDd) SiloUtil.trackWriter.println("Added dwelling " + dd.getId() +
                 " to list of vacant dwellings.");
     }
@@ -0,0 +1,208 @@
+package edu.umd.ncsg.data;
+
+import edu.umd.ncsg.SiloUtil;
+import omx.OmxFile;
+import omx.OmxMatrix;
+import omx.hdf5.OmxHdf5Datatype;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Skim matrix backed by a memory-mapped binary cache file. An OMX table is decoded once into the cache file, which is
+ * named after the source file, its modification time and the table name. Later reads (also by later model runs) map
+ * the cache file without copying the data onto the heap. Zones are numbered 1 to n, as in the matrices converted by
+ * SiloUtil.convertOmxToMatrix(). When a new cache file is written, cache files of earlier versions of the same source
+ * file and table are deleted. Large matrices are mapped in segments of whole rows.
+ **/
+
+public class SkimMatrix {
+
+    static Logger logger = Logger.getLogger(SkimMatrix.class);
+
+    private static final int MAGIC_NUMBER = 0x534b494d;   // "SKIM"
+    private static final int HEADER_BYTES = 12;           // magic number, rows, columns
+
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;   // rows are mapped in segments of up to 1 GB
+
+    private final String name;
+    private final String source;
+    private final int rows;
+    private final int columns;
+    private final int rowsPerSegment;
+    private final FloatBuffer[] segments;
+
+
+    private SkimMatrix (String name, String source, int rows, int columns, int rowsPerSegment, FloatBuffer[] segments) {
+        this.name = name;
+        this.source = source;
+        this.rows = rows;
+        this.columns = columns;
+        this.rowsPerSegment = rowsPerSegment;
+        this.segments = segments;
+    }
+
+
+    public static SkimMatrix readOmxMatrix (String omxFileName, String tableName, String cacheDirectory) {
+        // read table tableName of OMX file, using the cache file if it exists already
+
+        File omxFile = new File(omxFileName);
+        SiloUtil.createDirectoryIfNotExistingYet(cacheDirectory);
+        String prefix = omxFile.getName() + "_" + Integer.toHexString(omxFile.getAbsolutePath().hashCode()) + "_";
+        String suffix = "_" + tableName + ".skim";
+        String cacheName = prefix + omxFile.lastModified() + suffix;
+        File cacheFile = new File(cacheDirectory, cacheName);
+        try {
+            if (!cacheFile.exists()) {
+                writeCacheFile(omxFile, tableName, cacheFile);
+                deleteStaleCacheFiles(new File(cacheDirectory), prefix, suffix, cacheName);
+            }
+            return mapCacheFile(cacheFile, tableName);
+        } catch (IOException e) {
+            logger.error("Could not read skim " + tableName + " of " + omxFileName + " through cache file " +
+                    cacheFile.getPath() + ": " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    private static void deleteStaleCacheFiles (File cacheDirectory, String prefix, String suffix, String cacheName) {
+        // delete cache files (and temporary files of interrupted runs) of the same table of earlier versions of the
+        // source file, which differ from cacheName in the modification time only
+        File[] files = cacheDirectory.listFiles();
+        if (files == null) return;
+        for (File file: files) {
+            String fileName = file.getName();
+            if (!fileName.startsWith(prefix) || fileName.equals(cacheName) || fileName.equals(cacheName + ".tmp")) continue;
+            if (!fileName.endsWith(suffix) && !fileName.endsWith(suffix + ".tmp")) continue;
+            try {
+                Files.deleteIfExists(file.toPath());
+                logger.info("  Deleted stale skim cache file " + fileName);
+            } catch (IOException e) {
+                logger.warn("Could not delete stale skim cache file " + file.getPath() + ": " + e.getMessage());
+            }
+        }
+    }
+
+
+    private static int getRowsPerSegment (int rows, int columns) throws IOException {
+        long bytesPerRow = 4L * columns;
+        if (bytesPerRow > MAX_SEGMENT_BYTES) throw new IOException("Skim with " + columns + " columns has rows of more " +
+                "than " + MAX_SEGMENT_BYTES + " bytes, which cannot be mapped into memory.");
+        return (int) Math.max(1, Math.min(rows, MAX_SEGMENT_BYTES / bytesPerRow));
+    }
+
+
+    private static void writeCacheFile (File omxFile, String tableName, File cacheFile) throws IOException {
+        // decode OMX table and write it row by row into a temporary file that is renamed to the cache file when complete
+
+        logger.info("  Writing skim cache file " + cacheFile.getName());
+        OmxFile skim = new OmxFile(omxFile.getPath());
+        skim.openReadOnly();
+        OmxMatrix<?, ?> omxMatrix = skim.getMatrix(tableName);
+        int[] dimensions = omxMatrix.getShape();
+        OmxHdf5Datatype.OmxJavaType type = omxMatrix.getOmxJavaType();
+        Object data = omxMatrix.getData();
+        skim.close();
+        getRowsPerSegment(dimensions[0], dimensions[1]);   // fail before writing if rows cannot be mapped
+
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw"); FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC_NUMBER).putInt(dimensions[0]).putInt(dimensions[1]);
+            header.flip();
+            writeFully(channel, header);
+            ByteBuffer row = ByteBuffer.allocate(4 * dimensions[1]).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < dimensions[0]; i++) {
+                row.clear();
+                if (type.equals(OmxHdf5Datatype.OmxJavaType.FLOAT)) {
+                    float[] fRow = ((float[][]) data)[i];
+                    for (int j = 0; j < dimensions[1]; j++) row.putFloat(fRow[j]);
+                } else if (type.equals(OmxHdf5Datatype.OmxJavaType.DOUBLE)) {
+                    double[] dRow = ((double[][]) data)[i];
+                    for (int j = 0; j < dimensions[1]; j++) row.putFloat((float) dRow[j]);
+                } else {
+                    throw new IOException("OMX Matrix type " + type.toString() + " not yet implemented.");
+                }
+                row.flip();
+                writeFully(channel, row);
+            }
+            channel.force(true);
+        }
+        Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    private static void writeFully (FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+
+    private static SkimMatrix mapCacheFile (File cacheFile, String name) throws IOException {
+        // map cache file in segments of whole rows, as a single mapping is limited to 2 GB
+        try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "r"); FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_BYTES) throw new IOException("Not a skim cache file: " + cacheFile.getPath());
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC_NUMBER) throw new IOException("Not a skim cache file: " + cacheFile.getPath());
+            int rows = header.getInt(4);
+            int columns = header.getInt(8);
+            if (channel.size() != HEADER_BYTES + 4L * rows * columns)
+                throw new IOException("Incomplete skim cache file: " + cacheFile.getPath());
+            int rowsPerSegment = getRowsPerSegment(rows, columns);
+            FloatBuffer[] segments = new FloatBuffer[Math.max(1, (rows + rowsPerSegment - 1) / rowsPerSegment)];
+            for (int s = 0; s < segments.length; s++) {
+                long firstRow = (long) s * rowsPerSegment;
+                long segmentRows = Math.min(rowsPerSegment, rows - firstRow);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + 4L * firstRow * columns, 4L * segmentRows * columns);
+                // the mapping remains valid after the channel is closed
+                segments[s] = buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            }
+            return new SkimMatrix(name, cacheFile.getPath(), rows, columns, rowsPerSegment, segments);
+        }
+    }
+
+
+    public float getValueAt (int i, int j) {
+        // value from zone i to zone j, absolute get() is safe to call from several threads. Zone j is checked
+        // explicitly, as a zone beyond the last column would otherwise read a value of the next row
+        if (i < 1 || i > rows || j < 1 || j > columns) throw new IndexOutOfBoundsException("Zone pair " + i + "/" + j +
+                " is outside of skim " + name + " with " + rows + " rows and " + columns + " columns.");
+        int row = i - 1;
+        if (row < rowsPerSegment) return segments[0].get(row * columns + (j - 1));
+        return segments[row / rowsPerSegment].get((row % rowsPerSegment) * columns + (j - 1));
+    }
+
+
+    public String getName () {
+        return name;
+    }
+
+
+    public String getSource () {
+        // path of the cache file, which identifies source file, its modification time and table
+        return source;
+    }
+
+
+    public int getRowCount () {
+        return rows;
+    }
+
+
+    public int getColumnCount () {
+        return columns;
+    }
+}
@@ -0,0 +1,200 @@
+package edu.umd.ncsg.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads tables of micro data from a binary snapshot file written by SnapshotWriter. The schema in the footer is read
+ * when the file is opened; column blocks are memory-mapped and only read when a column is requested. Columns that
+ * are not in the file, for example because the file was written by an older model version, are filled with a default
+ * value.
+ **/
+
+public class SnapshotReader implements AutoCloseable {
+
+    private final String fileName;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final HashMap<String, Integer> rowsByTable = new HashMap<>();
+    private final HashMap<String, SnapshotWriter.Column> columns = new HashMap<>();   // by table + "." + column
+
+
+    public SnapshotReader (String fileName) throws IOException {
+        this.fileName = fileName;
+        this.file = new RandomAccessFile(fileName, "r");
+        this.channel = file.getChannel();
+        try {
+            readFooter();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+
+    public static boolean isSnapshot (String fileName) {
+        // check if fileName ends with the trailer of a snapshot file
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            if (file.length() < SnapshotWriter.TRAILER_LENGTH) return false;
+            ByteBuffer trailer = map(file.getChannel(), file.length() - SnapshotWriter.TRAILER_LENGTH,
+                    SnapshotWriter.TRAILER_LENGTH);
+            return trailer.getInt(12) == SnapshotWriter.MAGIC_NUMBER;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+
+    private void readFooter () throws IOException {
+        long fileLength = channel.size();
+        if (fileLength < SnapshotWriter.TRAILER_LENGTH) throw new IOException(fileName + " is not a snapshot file.");
+        ByteBuffer trailer = map(channel, fileLength - SnapshotWriter.TRAILER_LENGTH, SnapshotWriter.TRAILER_LENGTH);
+        long footerPosition = trailer.getLong(0);
+        int version = trailer.getInt(8);
+        if (trailer.getInt(12) != SnapshotWriter.MAGIC_NUMBER) throw new IOException(fileName + " is not a snapshot file.");
+        if (version > SnapshotWriter.FORMAT_VERSION) throw new IOException(fileName + " was written in snapshot format " +
+                version + ", but this model version reads format " + SnapshotWriter.FORMAT_VERSION + " and older only.");
+
+        int footerLength = (int) (fileLength - SnapshotWriter.TRAILER_LENGTH - footerPosition);
+        byte[] footerBytes = new byte[footerLength];
+        map(channel, footerPosition, footerLength).get(footerBytes);
+        DataInputStream footer = new DataInputStream(new ByteArrayInputStream(footerBytes));
+        int tables = footer.readInt();
+        for (int t = 0; t < tables; t++) {
+            String table = footer.readUTF();
+            rowsByTable.put(table, footer.readInt());
+            int columnCount = footer.readInt();
+            for (int c = 0; c < columnCount; c++) {
+                String name = footer.readUTF();
+                byte type = footer.readByte();
+                byte compression = footer.readByte();
+                long offset = footer.readLong();
+                long length = footer.readLong();
+                String[] dictionary = null;
+                if (type == SnapshotWriter.TYPE_STRING) {
+                    dictionary = new String[footer.readInt()];
+                    for (int i = 0; i < dictionary.length; i++) dictionary[i] = footer.readUTF();
+                }
+                SnapshotWriter.Column column = new SnapshotWriter.Column(name, type, dictionary);
+                column.compression = compression;
+                column.offset = offset;
+                column.length = length;
+                columns.put(table + "." + name, column);
+            }
+        }
+    }
+
+
+    private static ByteBuffer map (FileChannel channel, long position, long length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+
+    public boolean hasTable (String table) {
+        return rowsByTable.containsKey(table);
+    }
+
+
+    public int getRowCount (String table) {
+        // return number of rows of table, or 0 if the file has no such table
+        Integer rows = rowsByTable.get(table);
+        return rows == null ? 0 : rows;
+    }
+
+
+    public int[] getIntColumn (String table, String column, int defaultValue) throws IOException {
+        int[] values = new int[getRowCount(table)];
+        ByteBuffer block = getBlock(table, column, SnapshotWriter.TYPE_INT);
+        if (block == null) {
+            Arrays.fill(values, defaultValue);
+        } else {
+            block.asIntBuffer().get(values);
+        }
+        return values;
+    }
+
+
+    public float[] getFloatColumn (String table, String column, float defaultValue) throws IOException {
+        float[] values = new float[getRowCount(table)];
+        ByteBuffer block = getBlock(table, column, SnapshotWriter.TYPE_FLOAT);
+        if (block == null) {
+            Arrays.fill(values, defaultValue);
+        } else {
+            block.asFloatBuffer().get(values);
+        }
+        return values;
+    }
+
+
+    public String[] getStringColumn (String table, String column, String defaultValue) throws IOException {
+        // return values of a String column, equal values share the same String object
+        String[] values = new String[getRowCount(table)];
+        ByteBuffer block = getBlock(table, column, SnapshotWriter.TYPE_STRING);
+        if (block == null) {
+            Arrays.fill(values, defaultValue);
+        } else {
+            String[] dictionary = columns.get(table + "." + column).dictionary;
+            for (int i = 0; i < values.length; i++) {
+                int code = block.getInt(i * 4);
+                values[i] = code == -1 ? null : dictionary[code];
+            }
+        }
+        return values;
+    }
+
+
+    private ByteBuffer getBlock (String table, String name, byte type) throws IOException {
+        // return block of column, or null if the column is not in the file
+        SnapshotWriter.Column column = columns.get(table + "." + name);
+        if (column == null) return null;
+        if (column.type != type) throw new IOException("Column " + table + "." + name + " in " + fileName +
+                " has another type than requested.");
+        int rows = getRowCount(table);
+        if (column.compression == SnapshotWriter.COMPRESSION_NONE) {
+            if (column.length != rows * 4L) throw new IOException("Column " + table + "." + name + " in " + fileName +
+                    " is damaged.");
+            return map(channel, column.offset, column.length);
+        }
+        if (column.compression != SnapshotWriter.COMPRESSION_DEFLATE) throw new IOException("Column " + table + "." +
+                name + " in " + fileName + " uses an unknown compression.");
+        ByteBuffer compressed = map(channel, column.offset, column.length);
+        byte[] input = new byte[(int) column.length];
+        compressed.get(input);
+        byte[] data = new byte[rows * 4];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            int length = 0;
+            while (length < data.length && !inflater.finished()) {
+                int n = inflater.inflate(data, length, data.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += n;
+            }
+            if (length != data.length) throw new IOException("Column " + table + "." + name + " in " + fileName +
+                    " is damaged.");
+        } catch (DataFormatException e) {
+            throw new IOException("Column " + table + "." + name + " in " + fileName + " is damaged.", e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    @Override
+    public void close () throws IOException {
+        file.close();
+    }
+}
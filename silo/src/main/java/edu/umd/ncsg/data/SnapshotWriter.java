@@ -0,0 +1,223 @@
+package edu.umd.ncsg.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.Deflater;
+
+/**
+ * Writes tables of micro data column by column into a binary snapshot file. Every column is stored as one block of
+ * little-endian ints or floats, String columns as int codes into a dictionary of their distinct values. Blocks are
+ * optionally deflated. A footer at the end of the file holds the schema: tables with their number of rows, and columns
+ * with their name, type, compression, dictionary and position of the block. The file ends with the position of the
+ * footer, the format version and a magic number. Because columns are found by name, files stay readable when columns
+ * are added or dropped. Read with SnapshotReader.
+ * Data are written into a temporary file that replaces fileName when finish() is called. If writing fails, close()
+ * deletes the temporary file, so that no snapshot without footer is left behind.
+ **/
+
+public class SnapshotWriter implements AutoCloseable {
+
+    static final int MAGIC_NUMBER = 0x534e4150;   // "SNAP"
+    static final int FORMAT_VERSION = 1;
+    static final int TRAILER_LENGTH = 16;         // footer position (long), format version (int), magic number (int)
+
+    static final byte TYPE_INT = 1;
+    static final byte TYPE_FLOAT = 2;
+    static final byte TYPE_STRING = 3;
+
+    static final byte COMPRESSION_NONE = 0;
+    static final byte COMPRESSION_DEFLATE = 1;
+
+    private final String fileName;
+    private final File tempFile;
+    private final FileOutputStream out;
+    private final FileChannel channel;
+    private final boolean compress;
+    private final ArrayList<Table> tables = new ArrayList<>();
+    private Table currentTable;
+    private boolean finished = false;
+
+
+    public SnapshotWriter (String fileName, boolean compress) throws IOException {
+        this.fileName = fileName;
+        this.tempFile = new File(fileName + ".tmp");
+        this.out = new FileOutputStream(tempFile);
+        this.channel = out.getChannel();
+        this.compress = compress;
+    }
+
+
+    public void startTable (String name, int rows) {
+        // columns added after this call belong to table name with rows rows
+        currentTable = new Table(name, rows);
+        tables.add(currentTable);
+    }
+
+
+    public void addIntColumn (String name, int[] values) throws IOException {
+        ByteBuffer block = allocate(values.length);
+        block.asIntBuffer().put(values);
+        writeColumn(name, TYPE_INT, values.length, block, null);
+    }
+
+
+    public void addFloatColumn (String name, float[] values) throws IOException {
+        ByteBuffer block = allocate(values.length);
+        block.asFloatBuffer().put(values);
+        writeColumn(name, TYPE_FLOAT, values.length, block, null);
+    }
+
+
+    public void addStringColumn (String name, String[] values) throws IOException {
+        // store values as codes into a dictionary of distinct values, null is stored as code -1
+        HashMap<String, Integer> codes = new HashMap<>();
+        ArrayList<String> dictionary = new ArrayList<>();
+        ByteBuffer block = allocate(values.length);
+        for (int i = 0; i < values.length; i++) {
+            int code = -1;
+            if (values[i] != null) {
+                Integer known = codes.get(values[i]);
+                if (known == null) {
+                    known = dictionary.size();
+                    codes.put(values[i], known);
+                    dictionary.add(values[i]);
+                }
+                code = known;
+            }
+            block.putInt(i * 4, code);
+        }
+        writeColumn(name, TYPE_STRING, values.length, block, dictionary.toArray(new String[dictionary.size()]));
+    }
+
+
+    private ByteBuffer allocate (int values) {
+        return ByteBuffer.allocate(values * 4).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    private void writeColumn (String name, byte type, int rows, ByteBuffer block, String[] dictionary) throws IOException {
+        if (currentTable == null) throw new IllegalStateException("Call startTable() before adding columns to " + fileName);
+        if (rows != currentTable.rows) throw new IllegalArgumentException("Column " + name + " has " + rows +
+                " values, but table " + currentTable.name + " has " + currentTable.rows + " rows.");
+        Column column = new Column(name, type, dictionary);
+        column.offset = channel.position();
+        if (compress) {
+            column.compression = COMPRESSION_DEFLATE;
+            writeFully(ByteBuffer.wrap(deflate(block.array())));
+        } else {
+            column.compression = COMPRESSION_NONE;
+            writeFully(block);
+        }
+        column.length = channel.position() - column.offset;
+        currentTable.columns.add(column);
+    }
+
+
+    private static byte[] deflate (byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        byte[] buffer = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            compressed.write(buffer, 0, n);
+        }
+        deflater.end();
+        return compressed.toByteArray();
+    }
+
+
+    private void writeFully (ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+
+    public void finish () throws IOException {
+        // write footer with schema and trailer, and replace fileName by the complete file
+        if (finished) throw new IllegalStateException("Snapshot " + fileName + " was finished already.");
+        try {
+            long footerPosition = channel.position();
+            ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+            DataOutputStream footer = new DataOutputStream(footerBytes);
+            footer.writeInt(tables.size());
+            for (Table table: tables) {
+                footer.writeUTF(table.name);
+                footer.writeInt(table.rows);
+                footer.writeInt(table.columns.size());
+                for (Column column: table.columns) {
+                    footer.writeUTF(column.name);
+                    footer.writeByte(column.type);
+                    footer.writeByte(column.compression);
+                    footer.writeLong(column.offset);
+                    footer.writeLong(column.length);
+                    if (column.type == TYPE_STRING) {
+                        footer.writeInt(column.dictionary.length);
+                        for (String value: column.dictionary) footer.writeUTF(value);
+                    }
+                }
+            }
+            footer.flush();
+            writeFully(ByteBuffer.wrap(footerBytes.toByteArray()));
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putLong(footerPosition).putInt(FORMAT_VERSION).putInt(MAGIC_NUMBER);
+            trailer.flip();
+            writeFully(trailer);
+        } finally {
+            out.close();
+        }
+        Files.move(tempFile.toPath(), new File(fileName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        finished = true;
+    }
+
+
+    @Override
+    public void close () throws IOException {
+        // delete temporary file if finish() was not called or failed
+        if (finished) return;
+        try {
+            out.close();
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+
+    private static final class Table {
+        final String name;
+        final int rows;
+        final ArrayList<Column> columns = new ArrayList<>();
+
+        Table (String name, int rows) {
+            this.name = name;
+            this.rows = rows;
+        }
+    }
+
+
+    static final class Column {
+        final String name;
+        final byte type;
+        final String[] dictionary;
+        byte compression;
+        long offset;
+        long length;
+
+        Column (String name, byte type, String[] dictionary) {
+            this.name = name;
+            this.type = type;
+            this.dictionary = dictionary == null ? null : Arrays.copyOf(dictionary, dictionary.length);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package edu.umd.ncsg.data;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Pools of vacant ids (dwellings or jobs) grouped by region or zone. Every pool is a dense array that grows as needed,
+ * and the position of every id in its pool is stored by id. Therefore, add, remove and random sampling take constant
+ * time. Removal moves the last element of the pool into the gap, which is the same order the former fixed-size arrays
+ * used.
+ **/
+
+public class VacancyPool {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[][] members;
+    private int[] count;
+    private int[] positionById;
+    private int[] groupById;
+
+
+    public VacancyPool (int highestGroup, int initialCapacityPerGroup) {
+        int capacity = Math.max(initialCapacityPerGroup, MIN_CAPACITY);
+        members = new int[highestGroup + 1][];
+        for (int group = 0; group <= highestGroup; group++) members[group] = new int[capacity];
+        count = new int[highestGroup + 1];
+        positionById = new int[0];
+        groupById = new int[0];
+    }
+
+
+    public void add (int group, int id) {
+        // add id to pool of group, ids that are in a pool already are ignored
+        if (contains(id)) return;
+        if (id >= positionById.length) {
+            int newLength = Math.max(id + 1, positionById.length + (positionById.length >> 1));
+            int oldLength = positionById.length;
+            positionById = Arrays.copyOf(positionById, newLength);
+            groupById = Arrays.copyOf(groupById, newLength);
+            Arrays.fill(positionById, oldLength, newLength, -1);
+        }
+        if (count[group] == members[group].length)
+            members[group] = Arrays.copyOf(members[group], members[group].length + (members[group].length >> 1));
+        members[group][count[group]] = id;
+        positionById[id] = count[group];
+        groupById[id] = group;
+        count[group]++;
+    }
+
+
+    public boolean remove (int id) {
+        // remove id from its pool, returns false if id was not in any pool
+        if (!contains(id)) return false;
+        int group = groupById[id];
+        int pos = positionById[id];
+        int last = count[group] - 1;
+        int movedId = members[group][last];
+        members[group][pos] = movedId;
+        positionById[movedId] = pos;
+        members[group][last] = 0;
+        positionById[id] = -1;
+        count[group] = last;
+        return true;
+    }
+
+
+    public boolean contains (int id) {
+        return id >= 0 && id < positionById.length && positionById[id] >= 0;
+    }
+
+
+    public int size (int group) {
+        return count[group];
+    }
+
+
+    public int get (int group, int pos) {
+        return members[group][pos];
+    }
+
+
+    public int sample (int group, Random rand) {
+        // draw id from pool of group with equal probabilities, returns -1 if pool is empty
+        if (count[group] == 0) return -1;
+        return members[group][rand.nextInt(count[group])];
+    }
+
+
+    public int[] sample (int group, int k, Random rand) {
+        // draw min(k, size) distinct ids from pool of group with equal probabilities, using Floyd's algorithm. Takes O(k)
+        // time, independent of the size of the pool
+        int n = count[group];
+        int m = Math.min(k, n);
+        int[] ids = new int[m];
+        HashSet<Integer> chosen = new HashSet<>(2 * m);
+        for (int j = n - m, i = 0; j < n; j++, i++) {
+            int pos = rand.nextInt(j + 1);
+            if (!chosen.add(pos)) {
+                // position was drawn before, take position j instead, which cannot have been drawn yet
+                pos = j;
+                chosen.add(pos);
+            }
+            ids[i] = members[group][pos];
+        }
+        return ids;
+    }
+
+
+    public int[] toArray (int group) {
+        return Arrays.copyOf(members[group], count[group]);
+    }
+}
@@ -0,0 +1,148 @@
+package edu.umd.ncsg.data;
+
+import java.util.Arrays;
+
+/**
+ * Ids of the households, dwellings and jobs located in every zone. The lists are updated by Household, Dwelling and
+ * Job when an object is created, moves or is removed, so that the members of a zone can be read without scanning all
+ * objects. Members are removed in constant time by moving the last member of the zone into the gap. Ids of a zone
+ * are returned sorted, so that results drawn from them do not depend on the order of earlier updates. The sorted ids
+ * are kept until the zone changes, and the returned arrays are shared and must not be modified by the caller.
+ **/
+
+public class ZoneMembership {
+
+    private static final ZoneList households = new ZoneList();
+    private static final ZoneList dwellings = new ZoneList();
+    private static final ZoneList jobs = new ZoneList();
+
+
+    public static void updateHousehold (Household hh) {
+        households.put(hh.getId(), hh.getHomeZone());
+    }
+
+
+    public static void removeHousehold (int id) {
+        households.remove(id);
+    }
+
+
+    public static void updateDwelling (Dwelling dd) {
+        dwellings.put(dd.getId(), dd.getZone());
+    }
+
+
+    public static void removeDwelling (int id) {
+        dwellings.remove(id);
+    }
+
+
+    public static void updateJob (Job jj) {
+        jobs.put(jj.getId(), jj.getZone());
+    }
+
+
+    public static void removeJob (int id) {
+        jobs.remove(id);
+    }
+
+
+    public static int getNumberOfHouseholds (int zone) {
+        return households.size(zone);
+    }
+
+
+    public static int[] getHouseholdsInZone (int zone) {
+        // return sorted ids of households living in zone, the array is shared and must not be modified
+        return households.getMembers(zone);
+    }
+
+
+    public static int getNumberOfDwellings (int zone) {
+        return dwellings.size(zone);
+    }
+
+
+    public static int[] getDwellingsInZone (int zone) {
+        // return sorted ids of dwellings located in zone, the array is shared and must not be modified
+        return dwellings.getMembers(zone);
+    }
+
+
+    public static int getNumberOfJobs (int zone) {
+        return jobs.size(zone);
+    }
+
+
+    public static int[] getJobsInZone (int zone) {
+        // return sorted ids of jobs located in zone, the array is shared and must not be modified
+        return jobs.getMembers(zone);
+    }
+
+
+    private static final class ZoneList {
+        // ids by zone, objects in zone 0 or in a negative zone are not stored
+
+        private static final int[] NO_MEMBERS = new int[0];
+
+        private int[][] members = new int[0][];
+        private int[][] sortedMembers = new int[0][];   // null until requested and after every change of the zone
+        private int[] size = new int[0];
+        private int[] zoneOfId = new int[0];       // 0 if id is not stored
+        private int[] positionOfId = new int[0];
+
+        synchronized void put (int id, int zone) {
+            // store id in zone, or move it to zone if it is stored in another zone already
+            if (id < zoneOfId.length && zoneOfId[id] == zone) return;
+            remove(id);
+            if (zone <= 0) return;
+            if (zone >= size.length) {
+                int zones = Math.max(zone + 1, size.length * 2);
+                members = Arrays.copyOf(members, zones);
+                sortedMembers = Arrays.copyOf(sortedMembers, zones);
+                size = Arrays.copyOf(size, zones);
+            }
+            if (id >= zoneOfId.length) {
+                int ids = Math.max(id + 1, zoneOfId.length + (zoneOfId.length >> 1));
+                zoneOfId = Arrays.copyOf(zoneOfId, ids);
+                positionOfId = Arrays.copyOf(positionOfId, ids);
+            }
+            if (members[zone] == null) {
+                members[zone] = new int[8];
+            } else if (size[zone] == members[zone].length) {
+                members[zone] = Arrays.copyOf(members[zone], size[zone] * 2);
+            }
+            members[zone][size[zone]] = id;
+            positionOfId[id] = size[zone];
+            zoneOfId[id] = zone;
+            size[zone]++;
+            sortedMembers[zone] = null;
+        }
+
+        synchronized void remove (int id) {
+            if (id < 0 || id >= zoneOfId.length || zoneOfId[id] == 0) return;
+            int zone = zoneOfId[id];
+            int last = members[zone][size[zone] - 1];
+            members[zone][positionOfId[id]] = last;
+            positionOfId[last] = positionOfId[id];
+            size[zone]--;
+            zoneOfId[id] = 0;
+            sortedMembers[zone] = null;
+        }
+
+        synchronized int size (int zone) {
+            return zone > 0 && zone < size.length ? size[zone] : 0;
+        }
+
+        synchronized int[] getMembers (int zone) {
+            // sort ids of zone only if the zone changed since the last call
+            if (zone <= 0 || zone >= size.length || size[zone] == 0) return NO_MEMBERS;
+            if (sortedMembers[zone] == null) {
+                int[] ids = Arrays.copyOf(members[zone], size[zone]);
+                Arrays.sort(ids);
+                sortedMembers[zone] = ids;
+            }
+            return sortedMembers[zone];
+        }
+    }
+}
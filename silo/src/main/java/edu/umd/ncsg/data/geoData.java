@@ -4,7 +4,6 @@ import com.pb.common.datafile.TableDataSet;
 import com.pb.common.util.ResourceUtil;
 import edu.umd.ncsg.SiloUtil;
 
-import java.util.HashMap;
 import java.util.ResourceBundle;
 
 /**
@@ -20,12 +19,19 @@ public class geoData {
     protected static final String PROPERTIES_COUNTY_CRIME_INDEX                = "crime.index";
     protected static final String PROPERTIES_REGION_DEF_FILE                   = "region.definition.file";
 
+    private static int[] zones;
     private static int[] zoneIndex;
     private static int highestZonalId;
-    private static HashMap<Integer, int[]> regionDefinition;
+    private static int[][] zonesByRegion;
     private static int[] regionList;
     private static int[] regionIndex;
-    private static TableDataSet regDef;
+    // zonal attributes indexed by zone ID, read once from zonalData and regDef to avoid lookups by column name
+    private static int[] regionOfZone;
+    private static int[] countyOfZone;
+    private static int[] pumaOfZone;
+    private static int[] simplifiedPumaOfZone;
+    private static int[] msaOfZone;
+    private static float[] acresOfZone;
     private static int[] counties;
     private static int[] countyIndex;
     private static float[] zonalSchoolQuality;
@@ -49,30 +55,35 @@ public class geoData {
         // read zonal data
         String fileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_ZONAL_DATA_FILE);
         SiloUtil.zonalData = SiloUtil.readCSVfile(fileName);
-        highestZonalId = SiloUtil.getHighestVal(SiloUtil.zonalData.getColumnAsInt("ZoneId"));
+        zones = SiloUtil.zonalData.getColumnAsInt("ZoneId");
+        highestZonalId = SiloUtil.getHighestVal(zones);
         SiloUtil.zonalData.buildIndex(SiloUtil.zonalData.getColumnPosition("ZoneId"));
-
-        int[] zones = getZones();
         zoneIndex = SiloUtil.createIndexArray(zones);
+        countyOfZone = readZonalAttribute("COUNTYFIPS", fileName);
+        pumaOfZone = readZonalAttribute("PUMA", fileName);
+        simplifiedPumaOfZone = readZonalAttribute("simplifiedPUMA", fileName);
+        msaOfZone = readZonalAttribute("msa", fileName);
+        acresOfZone = new float[highestZonalId + 1];
+        float[] acres = SiloUtil.zonalData.getColumnAsFloat("ACRES");
+        for (int i = 0; i < zones.length; i++) acresOfZone[zones[i]] = acres[i];
 
         // read region definition
         String regFileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_REGION_DEF_FILE);
-        regDef = SiloUtil.readCSVfile(regFileName);
-        regionDefinition = new HashMap<>();
-        for (int row = 1; row <= regDef.getRowCount(); row++) {
-            int taz = (int) regDef.getValueAt(row, "ZoneId");
-            int reg = (int) regDef.getValueAt(row, "Region");
-            if (regionDefinition.containsKey(reg)) {
-                int[] zoneInThisRegion = regionDefinition.get(reg);
-                int[] newZones = SiloUtil.expandArrayByOneElement(zoneInThisRegion, taz);
-                regionDefinition.put(reg, newZones);
-            } else {
-                regionDefinition.put(reg, new int[]{taz});
-            }
-        }
-        regionList = SiloUtil.idendifyUniqueValues(regDef.getColumnAsInt("Region"));
+        TableDataSet regDef = SiloUtil.readCSVfile(regFileName);
+        int[] regZones = regDef.getColumnAsInt("ZoneId");
+        int[] regRegions = regDef.getColumnAsInt("Region");
+        regionList = SiloUtil.idendifyUniqueValues(regRegions);
         regionIndex = SiloUtil.createIndexArray(regionList);
-        regDef.buildIndex(regDef.getColumnPosition("ZoneId"));
+        regionOfZone = new int[Math.max(highestZonalId, SiloUtil.getHighestVal(regZones)) + 1];
+        int[] zoneCountByRegion = new int[SiloUtil.getHighestVal(regionList) + 1];
+        for (int i = 0; i < regZones.length; i++) {
+            regionOfZone[regZones[i]] = regRegions[i];
+            zoneCountByRegion[regRegions[i]]++;
+        }
+        zonesByRegion = new int[zoneCountByRegion.length][];
+        for (int region: regionList) zonesByRegion[region] = new int[zoneCountByRegion[region]];
+        int[] pos = new int[zoneCountByRegion.length];
+        for (int i = 0; i < regZones.length; i++) zonesByRegion[regRegions[i]][pos[regRegions[i]]++] = regZones[i];
 
         // read school quality
         String sqFileName = SiloUtil.baseDirectory + ResourceUtil.getProperty(rb, PROPERTIES_ZONAL_SCHOOL_QUALITY_INDEX);
@@ -88,10 +99,10 @@ public class geoData {
             regionalSchoolQuality[reg] += getZonalSchoolQuality(zone);
         }
         for (int region: regionList)
-            regionalSchoolQuality[region] = regionalSchoolQuality[region] / regionDefinition.get(region).length;
+            regionalSchoolQuality[region] = regionalSchoolQuality[region] / zonesByRegion[region].length;
 
         // create list of county FIPS codes
-        counties = SiloUtil.idendifyUniqueValues(SiloUtil.zonalData.getColumnAsInt("COUNTYFIPS"));
+        counties = SiloUtil.idendifyUniqueValues(countyOfZone);
         countyIndex = SiloUtil.createIndexArray(counties);
 
         // read county-level crime data
@@ -114,22 +125,32 @@ public class geoData {
             regionalCrimeRate[region] = regionalCrimeRate[region] / regionalArea[region];
     }
 
+    private static int[] readZonalAttribute (String column, String fileName) {
+        // return attribute column of zonalData indexed by zone ID
+        if (SiloUtil.zonalData.getColumnPosition(column) < 0)
+            throw new RuntimeException("Column " + column + " not found in zonal data file " + fileName + ".");
+        int[] values = SiloUtil.zonalData.getColumnAsInt(column);
+        int[] valueOfZone = new int[highestZonalId + 1];
+        for (int i = 0; i < zones.length; i++) valueOfZone[zones[i]] = values[i];
+        return valueOfZone;
+    }
+
     public static int getHighestZonalId () {
         // return highest zone ID
         return highestZonalId;
     }
 
     public static int[] getZones () {
-        // return array with zone IDs
-        return SiloUtil.zonalData.getColumnAsInt("ZoneId");
+        // return array with zone IDs (array is shared and must not be modified)
+        return zones;
     }
 
     public static float getSizeOfZoneInAcres(int zone) {
-        return SiloUtil.zonalData.getIndexedValueAt(zone, "ACRES");
+        return acresOfZone[zone];
     }
 
     public static int getCountyOfZone(int zone) {
-        return (int) SiloUtil.zonalData.getIndexedValueAt(zone, "COUNTYFIPS");
+        return countyOfZone[zone];
     }
 
     public static int getZoneIndex(int zone) {
@@ -145,25 +166,26 @@ public class geoData {
     }
 
     public static int[] getZonesInRegion (int region) {
-        return regionDefinition.get(region);
+        if (region < 0 || region >= zonesByRegion.length) return null;
+        return zonesByRegion[region];
     }
 
     public static int getRegionOfZone (int zone) {
-        return (int) regDef.getIndexedValueAt(zone, "Region");
+        return regionOfZone[zone];
     }
 
     public static int getPUMAofZone (int taz) {
         // return PUMA in which taz is located
-        return (int) SiloUtil.zonalData.getIndexedValueAt(taz, "PUMA");
+        return pumaOfZone[taz];
     }
 
     public static int getMSAOfZone (int zone) {
-        return (int) SiloUtil.zonalData.getIndexedValueAt(zone, "msa");
+        return msaOfZone[zone];
     }
 
     public static int getSimplifiedPUMAofZone (int taz) {
         // return PUMA in which taz is located (less geographic detail, last digit is rounded to 1)
-        return (int) SiloUtil.zonalData.getIndexedValueAt(taz, "simplifiedPUMA");
+        return simplifiedPumaOfZone[taz];
     }
 
     public static float getZonalSchoolQuality (int zone) {
@@ -7,7 +7,6 @@ import edu.umd.ncsg.SiloUtil;
 import edu.umd.ncsg.relocation.MovesModel;
 import org.apache.log4j.Logger;
 import java.io.PrintWriter;
-import java.util.HashMap;
 import java.util.ResourceBundle;
 
 import static edu.umd.ncsg.data.RealEstateDataManager.PROPERTIES_CAPACITY_FILE;
@@ -133,19 +132,17 @@ public class summarizeData {
         int[] hhs = new int[geoData.getHighestZonalId() + 1];
         int[][] hhInc = new int[SiloUtil.incBrackets.length + 1][geoData.getHighestZonalId() + 1];
         int[] pop = getPopulationByZone();
-        for (Household hh: Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             int zone = Dwelling.getDwellingFromId(hh.getDwellingId()).getZone();
             int incGroup = HouseholdDataManager.getIncomeCategoryForIncome(hh.getHhIncome());
             hhInc[incGroup - 1][zone]++;
             hhs[zone] ++;
         }
-        for (Dwelling dd: Dwelling.getDwellingArray()) {
+        for (Dwelling dd: Dwelling.getDwellings()) {
             dds[dd.getType().ordinal()][dd.getZone()]++;
             prices[dd.getZone()] += dd.getPrice();
         }
-        for (Job jj: Job.getJobArray()) {
-            jobs[jj.getZone()]++;
-        }
+        for (int zone: zones) jobs[zone] = ZoneMembership.getNumberOfJobs(zone);
 
 
         for (int taz: zones) {
@@ -176,7 +173,7 @@ public class summarizeData {
         // summarize population by zone
 
         int[] pp = new int[geoData.getHighestZonalId() + 1];
-        for (Household hh: Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             int zone = Dwelling.getDwellingFromId(hh.getDwellingId()).getZone();
             pp[zone] += hh.getHhSize();
         }
@@ -188,10 +185,7 @@ public class summarizeData {
         // summarize households by zone
 
         int[] householdsByZone = new int[geoData.getHighestZonalId() + 1];
-        for (Household hh: Household.getHouseholdArray()) {
-            int zone = Dwelling.getDwellingFromId(hh.getDwellingId()).getZone();
-            householdsByZone[zone]++;
-        }
+        for (int zone: geoData.getZones()) householdsByZone[zone] = ZoneMembership.getNumberOfHouseholds(zone);
         return householdsByZone;
     }
 
@@ -200,7 +194,7 @@ public class summarizeData {
         // summarize retail employment by zone
 
         int[] retailEmplByZone = new int[geoData.getHighestZonalId() + 1];
-        for (Job jj: Job.getJobArray()) {
+        for (Job jj: Job.getJobs()) {
             if (jj.getType().equals("RET")) retailEmplByZone[geoData.getZoneIndex(jj.getZone())]++;
         }
         return retailEmplByZone;
@@ -211,7 +205,7 @@ public class summarizeData {
         // summarize other employment by zone
 
         int[] otherEmplByZone = new int[geoData.getHighestZonalId() + 1];
-        for (Job jj: Job.getJobArray()) {
+        for (Job jj: Job.getJobs()) {
             if (jj.getType().equals("OTH")) otherEmplByZone[geoData.getZoneIndex(jj.getZone())]++;
         }
         return otherEmplByZone;
@@ -222,9 +216,7 @@ public class summarizeData {
         // summarize retail employment by zone
 
         int[] totalEmplByZone = new int[geoData.getHighestZonalId() + 1];
-        for (Job jj: Job.getJobArray()) {
-            totalEmplByZone[geoData.getZoneIndex(jj.getZone())]++;
-        }
+        for (int zone: geoData.getZones()) totalEmplByZone[geoData.getZoneIndex(zone)] = ZoneMembership.getNumberOfJobs(zone);
         return totalEmplByZone;
     }
 
@@ -244,12 +236,9 @@ public class summarizeData {
 
         // calculate how many households need to be created or deleted in every zone
         int[] changeOfHh = new int[(geoData.getHighestZonalId() + 1)];
-        HashMap<Integer, int[]> hhByZone = householdData.getHouseholdsByZone();
         for (int zone: geoData.getZones()) {
-            int hhs = 0;
-            if (hhByZone.containsKey(zone)) hhs = hhByZone.get(zone).length;
-            changeOfHh[zone] =
-                    (int) scalingControlTotals.getIndexedValueAt(zone, ("HH" + year)) - hhs;
+            changeOfHh[zone] = (int) scalingControlTotals.getIndexedValueAt(zone, ("HH" + year)) -
+                    ZoneMembership.getNumberOfHouseholds(zone);
         }
 
         PrintWriter pwh = SiloUtil.openFileForSequentialWriting(rb.getString(PROPERTIES_SCALED_MICRO_DATA_HH) + year + ".csv", false);
@@ -257,8 +246,8 @@ public class summarizeData {
         PrintWriter pwp = SiloUtil.openFileForSequentialWriting(rb.getString(PROPERTIES_SCALED_MICRO_DATA_PP) + year + ".csv", false);
         pwp.println("id,hhID,age,gender,race,occupation,driversLicense,workplace,income");
         for (int zone: geoData.getZones()) {
-            if (hhByZone.containsKey(zone)) {
-                int[] hhInThisZone = hhByZone.get(zone);
+            if (ZoneMembership.getNumberOfHouseholds(zone) > 0) {
+                int[] hhInThisZone = ZoneMembership.getHouseholdsInZone(zone);
                 int[] selectedHH = new int[hhInThisZone.length];
                 if (changeOfHh[zone] > 0) {          // select households to duplicate (draw with replacement)
                     for (int i = 0; i < changeOfHh[zone]; i++) {
@@ -393,7 +382,7 @@ public class summarizeData {
 
         PrintWriter pw = SiloUtil.openFileForSequentialWriting(fileName, false);
         pw.println("id,zone,type,size,yearBuilt,occupied");
-        for (Dwelling dd: Dwelling.getDwellingArray()){
+        for (Dwelling dd: Dwelling.getDwellings()){
             pw.print(dd.getId());
             pw.print(",");
             pw.print(dd.getZone());
@@ -418,8 +407,7 @@ public class summarizeData {
                 year + ".csv";
         PrintWriter pwh = SiloUtil.openFileForSequentialWriting(filehh, false);
         pwh.println("id,dwelling,zone,hhSize,autos");
-        Household[] hhs = Household.getHouseholdArray();
-        for (Household hh : hhs) {
+        for (Household hh : Household.getHouseholds()) {
             if (hh.getId() == SiloUtil.trackHh) {
                 SiloUtil.trackingFile("Writing hh " + hh.getId() + " to micro data file.");
                 hh.logAttributes(SiloUtil.trackWriter);
@@ -441,8 +429,7 @@ public class summarizeData {
                 year + ".csv";
         PrintWriter pwp = SiloUtil.openFileForSequentialWriting(filepp, false);
         pwp.println("id,hhID,age,gender,relationShip,race,occupation,driversLicense,workplace,income");
-        Person[] pps = Person.getPersonArray();
-        for (Person pp : pps) {
+        for (Person pp : Person.getPersons()) {
             pwp.print(pp.getId());
             pwp.print(",");
             pwp.print(pp.getHhId());
@@ -472,8 +459,7 @@ public class summarizeData {
                 year + ".csv";
         PrintWriter pwd = SiloUtil.openFileForSequentialWriting(filedd, false);
         pwd.println("id,zone,type,hhID,bedrooms,quality,monthlyCost,restriction,yearBuilt");
-        Dwelling[] dds = Dwelling.getDwellingArray();
-        for (Dwelling dd : dds) {
+        for (Dwelling dd : Dwelling.getDwellings()) {
             pwd.print(dd.getId());
             pwd.print(",");
             pwd.print(dd.getZone());
@@ -503,8 +489,7 @@ public class summarizeData {
                 year + ".csv";
         PrintWriter pwj = SiloUtil.openFileForSequentialWriting(filejj, false);
         pwj.println("id,zone,personId,type");
-        Job[] jjs = Job.getJobArray();
-        for (Job jj : jjs) {
+        for (Job jj : Job.getJobs()) {
             pwj.print(jj.getId());
             pwj.print(",");
             pwj.print(jj.getZone());
@@ -535,7 +520,7 @@ public class summarizeData {
         PrintWriter pwa = SiloUtil.openFileForSequentialWriting("autoOwnershipA.csv", false);
         pwa.println("hhSize,workers,income,transit,density,autos");
         int[][] autos = new int[4][60000];
-        for (Household hh: Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             int autoOwnership = hh.getAutos();
             int zone = hh.getHomeZone();
             int county = geoData.getCountyOfZone(zone);
@@ -589,7 +574,7 @@ public class summarizeData {
         pw.println(",averageRent");
         int[][] rentByIncome = new int[10][10];
         int[] rents = new int[10];
-        for (Household hh: Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             if (prestoRegionByTaz[hh.getHomeZone()] > 0) {
                 int hhInc = hh.getHhIncome();
                 int rent = Dwelling.getDwellingFromId(hh.getDwellingId()).getPrice();
@@ -47,7 +47,7 @@ public class summarizeDataCblcm {
         String popFileName = (directory + "/cblcm/" + rb.getString(PROPERTIES_CBLCM_POPULATION_FILE) +
                 SiloUtil.gregorianIterator + ".csv");
         int[][] households = new int[geoData.getZones().length][SiloUtil.incBrackets.length + 1];
-        for (Household hh : Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             int hhIncomeGroup = HouseholdDataManager.getIncomeCategoryForIncome(hh.getHhIncome());
             households[geoData.getZoneIndex(hh.getHomeZone())][hhIncomeGroup - 1]++;
         }
@@ -95,7 +95,7 @@ public class summarizeDataCblcm {
         String emplFileName = (directory + "/cblcm/" + rb.getString(PROPERTIES_CBLCM_EMPLOYMENT_FILE) +
                 SiloUtil.gregorianIterator + ".csv");
         int[][] jobs = new int[geoData.getZones().length][JobType.getNumberOfJobTypes()];
-        for (Job jj : Job.getJobArray()) {
+        for (Job jj: Job.getJobs()) {
             int jobType = JobType.getOrdinal(jj.getType());
             jobs[geoData.getZoneIndex(jj.getZone())][jobType]++;
         }
@@ -135,7 +135,7 @@ public class summarizeDataCblcm {
         String ddFileName = (directory + "/cblcm/" + rb.getString(PROPERTIES_CBLCM_DWELLING_FILE) +
                 SiloUtil.gregorianIterator + ".csv");
         int[][] dwellings = new int[geoData.getZones().length][DwellingType.values().length];
-        for (Dwelling dd : Dwelling.getDwellingArray()) {
+        for (Dwelling dd: Dwelling.getDwellings()) {
             int ddType = dd.getType().ordinal();
             dwellings[geoData.getZoneIndex(dd.getZone())][ddType]++;
         }
@@ -211,11 +211,11 @@ public class summarizeDataCblcm {
 
         int[] hhByCounty = new int[countyOrder.length];
         int[] jobsByCounty = new int[countyOrder.length];
-        for (Household hh: Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             int homeFips = geoData.getCountyOfZone(hh.getHomeZone());
             if (SiloUtil.containsElement(countyOrder, homeFips)) hhByCounty[countyOrderIndex[homeFips]]++;
         }
-        for (Job jj: Job.getJobArray()) {
+        for (Job jj: Job.getJobs()) {
             int jobFips = geoData.getCountyOfZone(jj.getZone());
             if (SiloUtil.containsElement(countyOrder, jobFips)) jobsByCounty[countyOrderIndex[jobFips]]++;
         }
@@ -21,7 +21,7 @@ import java.util.ResourceBundle;
 
 import com.pb.common.calculator.UtilityExpressionCalculator;
 import com.pb.common.util.ResourceUtil;
-import edu.umd.ncsg.SiloModel;
+import edu.umd.ncsg.RandomStreams;
 import edu.umd.ncsg.SiloUtil;
 import edu.umd.ncsg.events.EventTypes;
 import edu.umd.ncsg.events.EventRules;
@@ -85,7 +85,7 @@ public class BirthModel {
         float localScaler = (float) ResourceUtil.getDoubleProperty(rb, PROPERTIES_DEMOGRAPHICS_BIRTH_LOCAL_SCALER);
 
         // initialize UEC
-        UtilityExpressionCalculator birthModel = new UtilityExpressionCalculator(new File(uecFileName),
+        UtilityExpressionCalculator birthModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
         		birthModelSheetNumber,
         		dataSheetNumber,
         		SiloUtil.getRbHashMap(),
@@ -118,7 +118,7 @@ public class BirthModel {
 
         Person per = Person.getPersonFromId(perId);
         if (!EventRules.ruleGiveBirth(per)) return;  // Person has died or moved away
-        double rnum = SiloModel.rand.nextDouble();
+        double rnum = RandomStreams.nextDouble("birth", perId);
         // todo: distinguish birth probability by neighborhood type (such as urban, suburban, rural)
         double birthProb;
         if (per.getRole() == PersonRole.married) birthProb = birthProbability[per.getType().ordinal()] * marriedScaler;
@@ -2,7 +2,7 @@ package edu.umd.ncsg.demography;
 
 import com.pb.common.calculator.UtilityExpressionCalculator;
 import com.pb.common.util.ResourceUtil;
-import edu.umd.ncsg.SiloModel;
+import edu.umd.ncsg.RandomStreams;
 import edu.umd.ncsg.SiloUtil;
 import edu.umd.ncsg.events.EventTypes;
 import edu.umd.ncsg.events.EventRules;
@@ -56,7 +56,7 @@ public class DeathModel {
         boolean logCalculation = ResourceUtil.getBooleanProperty(rb, PROPERTIES_LOG_UTILILITY_CALCULATION_DEATH);
 
 		// initialize UEC
-        UtilityExpressionCalculator deathModel = new UtilityExpressionCalculator(new File(uecFileName),
+        UtilityExpressionCalculator deathModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
         		deathModelSheetNumber,
         		dataSheetNumber, 
         		SiloUtil.getRbHashMap(),
@@ -95,7 +95,7 @@ public class DeathModel {
 
         Person per = Person.getPersonFromId(perId);
         if (!EventRules.ruleDeath(per)) return;  // Person has moved away
-        double rnum = SiloModel.rand.nextDouble();
+        double rnum = RandomStreams.nextDouble("death", perId);
         if (rnum < deathProbability[per.getType().ordinal()]) {
             Household hhOfThisPerson = Household.getHouseholdFromId(per.getHhId());
             hhOfThisPerson.removePerson(per);
@@ -21,7 +21,7 @@ import java.util.ResourceBundle;
 
 import com.pb.common.calculator.UtilityExpressionCalculator;
 import com.pb.common.util.ResourceUtil;
-import edu.umd.ncsg.SiloModel;
+import edu.umd.ncsg.RandomStreams;
 import edu.umd.ncsg.SiloUtil;
 import edu.umd.ncsg.autoOwnership.AutoOwnershipModel;
 import edu.umd.ncsg.events.EventTypes;
@@ -73,7 +73,7 @@ public class LeaveParentHhModel {
 
         // initialize UEC
 
-        UtilityExpressionCalculator lphModel = new UtilityExpressionCalculator(new File(uecFileName),
+        UtilityExpressionCalculator lphModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
                 lphModelSheetNumber,
                 dataSheetNumber,
                 SiloUtil.getRbHashMap(),
@@ -111,7 +111,7 @@ public class LeaveParentHhModel {
 
         Person per = Person.getPersonFromId(perId);
         if (!EventRules.ruleLeaveParHousehold(per)) return;   // Person got married this simulation period
-        double rnum = SiloModel.rand.nextDouble();
+        double rnum = RandomStreams.nextDouble("leaveParentHh", perId);
         if (rnum < lphProbability[per.getType().ordinal()]) {
 
             // search if dwelling is available
@@ -0,0 +1,115 @@
+package edu.umd.ncsg.demography;
+
+import edu.umd.ncsg.SiloUtil;
+import edu.umd.ncsg.data.Person;
+import edu.umd.ncsg.data.Race;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Persons looking for a partner, stored in buckets by gender, age and race. The number of candidates of a gender and
+ * age is kept up to date, so that the age of a partner can be drawn with weights by age without looking at
+ * candidates. Within the chosen age, a partner is drawn by race group and then uniformly within the race. Candidates
+ * are removed in constant time by moving the last member of the bucket into the gap.
+ **/
+
+public class MarriageMarket {
+
+    // weights of a partner of the preferred and of the other race group, as used before buckets were introduced
+    private static final double WEIGHT_OF_PREFERRED_RACE_GROUP = 10000;
+    private static final double WEIGHT_OF_OTHER_RACE_GROUP = 0.001;
+
+    private final int maxAge;
+    private final int races;
+    private final int[][] members;            // person ids by bucket
+    private final int[] size;                 // number of persons by bucket
+    private final int[] countByGenderAndAge;  // number of persons by gender and age, summed over races
+    private final int[] bucketOfPerson;       // bucket by person id, -1 if not in market
+    private final int[] positionOfPerson;     // position in bucket by person id
+
+
+    public MarriageMarket (int maxAge, int highestPersonId) {
+        this.maxAge = maxAge;
+        this.races = Race.values().length;
+        int buckets = 2 * (maxAge + 1) * races;
+        members = new int[buckets][];
+        size = new int[buckets];
+        countByGenderAndAge = new int[2 * (maxAge + 1)];
+        bucketOfPerson = SiloUtil.createArrayWithValue(highestPersonId + 1, -1);
+        positionOfPerson = new int[highestPersonId + 1];
+    }
+
+
+    private int getBucket (int gender, int age, int race) {
+        return ((gender - 1) * (maxAge + 1) + age) * races + race;
+    }
+
+
+    public void add (Person pp) {
+        // put person pp into the marriage market
+        int id = pp.getId();
+        if (bucketOfPerson[id] != -1) return;
+        int bucket = getBucket(pp.getGender(), pp.getAge(), pp.getRace().ordinal());
+        if (members[bucket] == null) {
+            members[bucket] = new int[4];
+        } else if (size[bucket] == members[bucket].length) {
+            members[bucket] = Arrays.copyOf(members[bucket], size[bucket] * 2);
+        }
+        members[bucket][size[bucket]] = id;
+        positionOfPerson[id] = size[bucket];
+        bucketOfPerson[id] = bucket;
+        size[bucket]++;
+        countByGenderAndAge[bucket / races]++;
+    }
+
+
+    public void remove (int personId) {
+        // take person personId out of the marriage market, does nothing if the person is not in the market
+        if (personId < 0 || personId >= bucketOfPerson.length) return;
+        int bucket = bucketOfPerson[personId];
+        if (bucket == -1) return;
+        int position = positionOfPerson[personId];
+        int last = members[bucket][size[bucket] - 1];
+        members[bucket][position] = last;
+        positionOfPerson[last] = position;
+        size[bucket]--;
+        countByGenderAndAge[bucket / races]--;
+        bucketOfPerson[personId] = -1;
+    }
+
+
+    public int getNumberOfCandidates (int gender, int age) {
+        // number of persons of gender and age in the market
+        if (age < 0 || age > maxAge) return 0;
+        return countByGenderAndAge[(gender - 1) * (maxAge + 1) + age];
+    }
+
+
+    public int drawPartner (int gender, int age, Race race, boolean sameRace, Random rand) {
+        // draw a person of gender and age, preferring persons of the same race as race if sameRace is true and of
+        // another race otherwise, and remove the person from the market. Returns -1 if nobody of this age is left.
+        if (getNumberOfCandidates(gender, age) == 0) return -1;
+        double[] weight = new double[races];
+        int firstBucket = getBucket(gender, age, 0);
+        for (int r = 0; r < races; r++) {
+            boolean preferred = (r == race.ordinal()) == sameRace;
+            weight[r] = size[firstBucket + r] *
+                    (preferred ? WEIGHT_OF_PREFERRED_RACE_GROUP : WEIGHT_OF_OTHER_RACE_GROUP);
+        }
+        int selected = SiloUtil.select(weight, rand);
+        int bucket = -1;
+        for (int distance = 0; distance < races && bucket == -1; distance++) {
+            // rounding may have selected an empty race bucket, use the nearest non-empty race of this gender and age
+            if (selected - distance >= 0 && size[firstBucket + selected - distance] > 0) {
+                bucket = firstBucket + selected - distance;
+            } else if (selected + distance < races && size[firstBucket + selected + distance] > 0) {
+                bucket = firstBucket + selected + distance;
+            }
+        }
+        if (bucket == -1) return -1;
+        int partner = members[bucket][rand.nextInt(size[bucket])];
+        remove(partner);
+        return partner;
+    }
+}
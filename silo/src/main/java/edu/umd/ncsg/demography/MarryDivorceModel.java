@@ -18,11 +18,11 @@ package edu.umd.ncsg.demography;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.ResourceBundle;
 
 import com.pb.common.calculator.UtilityExpressionCalculator;
 import com.pb.common.util.ResourceUtil;
+import edu.umd.ncsg.RandomStreams;
 import edu.umd.ncsg.SiloModel;
 import edu.umd.ncsg.SiloUtil;
 import edu.umd.ncsg.autoOwnership.AutoOwnershipModel;
@@ -97,7 +97,7 @@ public class MarryDivorceModel {
         onePersonHhMarriageBias = (float) ResourceUtil.getDoubleProperty(rb, PROPERTIES_DEMOGRAPHICS_MARRIAGE_1PER_HH_BIAS);
 
         // initialize UEC
-        UtilityExpressionCalculator marriageModel = new UtilityExpressionCalculator(new File(uecFileName),
+        UtilityExpressionCalculator marriageModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
                 marriageModelSheetNumber,
                 dataSheetNumber,
                 SiloUtil.getRbHashMap(),
@@ -150,31 +150,23 @@ public class MarryDivorceModel {
         logger.info("  Selecting couples to get married this year");
         couplesToMarryThisYear = new ArrayList<>();
 
-        // create HashMap with men and women by age
-        HashMap<String, ArrayList<Integer>> ppByAgeAndGender = new HashMap<>();
-
-        for (Person pp: Person.getPersonArray()) {
+        // put men and women into marriage market by age and race
+        int highestId = HouseholdDataManager.getHighestPersonIdInUse();
+        MarriageMarket market = new MarriageMarket(99, highestId);
+        for (Person pp: Person.getPersons()) {
             if (EventRules.ruleGetMarried(pp) && pp.getAge() < 100) {
                 int size = Household.getHouseholdFromId(pp.getHhId()).getHhSize();
                 // put only every fifth person into marriage market, emphasize single-person households
                 if (size == 1 && SiloModel.rand.nextFloat() > 0.1 * onePersonHhMarriageBias) continue;
                 if (size != 1 && SiloModel.rand.nextFloat() > 0.1) continue;
-                // Store persons by age and gender
-                String token = pp.getAge() + "_" + pp.getGender();
-                if (ppByAgeAndGender.containsKey(token)) {
-                    ArrayList<Integer> al = ppByAgeAndGender.get(token);
-                    al.add(pp.getId());
-                } else {
-                    ppByAgeAndGender.put(token, new ArrayList<Integer>(pp.getId()));
-                }
+                market.add(pp);
             }
         }
 
         // create couples
-        int highestId = HouseholdDataManager.getHighestPersonIdInUse();
         boolean[] personSelectedForMarriage = SiloUtil.createArrayWithValue(highestId + 1, false);
         float interRacialMarriageShare = (float) ResourceUtil.getDoubleProperty(rb, PROPERTIES_DEMOGRAPHICS_INTERRACIAL_MARRIAGE_SHR);
-        for (Person pp: Person.getPersonArray()) {
+        for (Person pp: Person.getPersons()) {
             if (EventRules.ruleGetMarried(pp) && pp.getAge() < 100 && !personSelectedForMarriage[pp.getId()]) {
                 double marryProb = marriageProbability[pp.getType().ordinal()];   // raw marriage probability for this age/gender group
                 // to keep things simple, emphasize prop to initialize marriage for people from single-person households. Single-person household has no influence on whether someone is selected by the marriage initializer
@@ -182,29 +174,18 @@ public class MarryDivorceModel {
                 if (SiloModel.rand.nextDouble() >= marryProb) continue;
                 // person was selected to find a partner
                 personSelectedForMarriage[pp.getId()] = true;
+                market.remove(pp.getId());
 
                 // First, select interracial or monoracial marriage
                 boolean sameRace = true;
                 if (SiloModel.rand.nextFloat() <= interRacialMarriageShare) sameRace = false;
 
                 // Second, select age of new partner
+                int partnerGender = pp.getGender() == 1 ? 2 : 1;    // man looking for women, woman looking for men
                 double[] ageProb = new double[ageOffset * 2 + 1];
                 for (int ageDiff = -ageOffset; ageDiff <= ageOffset; ageDiff++) {
-                    ageProb[ageDiff + ageOffset] = ageDependentMarryProb[pp.getGender() - 1][ageDiff + ageOffset];
-                    int thisAge = pp.getAge() + ageDiff;
-                    if (pp.getGender() == 1) {
-                        if (ppByAgeAndGender.containsKey(thisAge + "_" + 2)) {    // man looking for women
-                            ageProb[ageDiff + ageOffset] *= ppByAgeAndGender.get(thisAge + "_" + 2).size();
-                        } else {
-                            ageProb[ageDiff + ageOffset] = 0;
-                        }
-                    } else {                                                     // woman looking for men
-                        if (ppByAgeAndGender.containsKey(thisAge + "_" + 1)) {
-                            ageProb[ageDiff + ageOffset] *= ppByAgeAndGender.get(thisAge + "_" + 1).size();
-                        } else {
-                            ageProb[ageDiff + ageOffset] = 0;
-                        }
-                    }
+                    ageProb[ageDiff + ageOffset] = ageDependentMarryProb[pp.getGender() - 1][ageDiff + ageOffset] *
+                            market.getNumberOfCandidates(partnerGender, pp.getAge() + ageDiff);
                 }
                 if (SiloUtil.getSum(ageProb) == 0) {
                     logger.warn("Marriage market ran empty, increase share of persons. Age: "+pp.getAge());
@@ -212,25 +193,13 @@ public class MarryDivorceModel {
                 }
                 int selectedAge = SiloUtil.select(ageProb) - ageOffset + pp.getAge();
 
-                // Third, select partner
-                ArrayList<Integer> possiblePartners;
-                if (pp.getGender() == 1) {   // Look for woman
-                    possiblePartners = ppByAgeAndGender.get(selectedAge + "_" + 2);
-                } else {                     // Look for man
-                    possiblePartners = ppByAgeAndGender.get(selectedAge + "_" + 1);
-                }
-                float[] partnerProb = SiloUtil.createArrayWithValue(possiblePartners.size(), 0f);
-                for (int per = 0; per < possiblePartners.size(); per++) {
-                    int personId = possiblePartners.get(per);
-                    if (personSelectedForMarriage[personId]) continue;  // this person was already selected to get married
-                    Race personRace = Person.getPersonFromId(personId).getRace();
-                    if ((sameRace && pp.getRace() == personRace) || (!sameRace && pp.getRace() != personRace)) {
-                        partnerProb[per] = 10000f;
-                    } else {
-                        partnerProb[per] = 0.001f;  // set probability to small non-zero value to ensure that model works when marriage market runs almost empty
-                    }
+                // Third, select partner (persons of the other race group keep a small probability to ensure that
+                // model works when marriage market runs almost empty)
+                int selectedPartner = market.drawPartner(partnerGender, selectedAge, pp.getRace(), sameRace, SiloModel.rand);
+                if (selectedPartner == -1) {
+                    logger.warn("No partner of age " + selectedAge + " left in marriage market for person " + pp.getId());
+                    continue;
                 }
-                int selectedPartner = possiblePartners.get(SiloUtil.select(partnerProb));
                 personSelectedForMarriage[selectedPartner] = true;
                 couplesToMarryThisYear.add(new Integer[]{pp.getId(),selectedPartner});
                 if (pp.getId() == SiloUtil.trackPp) SiloUtil.trackWriter.println("Person " + pp.getId() + " chose " +
@@ -255,7 +224,7 @@ public class MarryDivorceModel {
         boolean logCalculation = ResourceUtil.getBooleanProperty(rb, PROPERTIES_LOG_UTILILITY_CALCULATION_DIVORCE);
 
         // initialize UEC
-        UtilityExpressionCalculator divorceModel = new UtilityExpressionCalculator(new File(uecFileName),
+        UtilityExpressionCalculator divorceModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
                 divorceModelSheetNumber,
                 dataSheetNumber,
                 SiloUtil.getRbHashMap(),
@@ -417,7 +386,7 @@ public class MarryDivorceModel {
 
         Person per = Person.getPersonFromId(perId);
         if (!EventRules.ruleGetDivorced(per)) return;
-        double rnum = SiloModel.rand.nextDouble();
+        double rnum = RandomStreams.nextDouble("divorce", perId);
 
         if (rnum < divorceProbability[per.getType().ordinal()]) {
             // check if vacant dwelling is available
@@ -1,7 +1,6 @@
 package edu.umd.ncsg.events;
 
-import com.pb.common.util.IndexSort;
-import edu.umd.ncsg.SiloModel;
+import edu.umd.ncsg.RandomStreams;
 import edu.umd.ncsg.SiloUtil;
 import edu.umd.ncsg.demography.MarryDivorceModel;
 import edu.umd.ncsg.realEstate.ConstructionModel;
@@ -9,10 +8,13 @@ import edu.umd.ncsg.relocation.InOutMigration;
 import edu.umd.ncsg.data.*;
 import org.apache.log4j.Logger;
 
+import com.pb.sawdust.util.concurrent.ForkJoinPoolFactory;
+
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Collection;
 import java.util.ResourceBundle;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Generates a series of events in random order
@@ -23,12 +25,11 @@ import java.util.ResourceBundle;
 public class EventManager {
 
     static Logger logger = Logger.getLogger(EventManager.class);
+    private static final int SCAN_CHUNK_SIZE = 50000;
 
     private HouseholdDataManager householdData;
     private RealEstateDataManager realEstateData;
-    private ArrayList<Integer[]> events;
-    private int randomEventOrder[];
-    private int posInArray;
+    private EventQueue events;
     private static HashMap<EventTypes, Integer> eventCounter;
 
     public EventManager (ResourceBundle rb, HouseholdDataManager householdData, RealEstateDataManager realEstateData) {
@@ -42,44 +43,16 @@ public class EventManager {
     public void createListOfEvents (int numberOfPlannedMarriages) {
         // create an array list that contains all land use events
 
-        events = new ArrayList<>();
-        Collection<Person> persons = householdData.getPersons();
+        events = new EventQueue(householdData.getNumberOfPersons() + Dwelling.getDwellingCount());
         int numEvents = 0;
 
         // create person events
-        for (Person per: persons) {
-            int id = per.getId();
-            // Birthday
-            if (EventRules.ruleBirthday(per)) {
-                events.add(new Integer[]{EventTypes.birthday.ordinal(), id});
-                numEvents ++;
-            }
-            // Death
-            if (EventRules.ruleDeath(per)) {
-                events.add(new Integer[]{EventTypes.checkDeath.ordinal(), id});
-                numEvents ++;
-            }
-            // Birth
-            if (EventRules.ruleGiveBirth(per)) {
-                events.add(new Integer[]{EventTypes.checkBirth.ordinal(), id});
-                numEvents ++;
-            }
-            // Leave parental household
-            if (EventRules.ruleLeaveParHousehold(per)) {
-                events.add(new Integer[]{EventTypes.checkLeaveParentHh.ordinal(), id});
-                numEvents ++;
-            }
-            // Divorce
-            if (EventRules.ruleGetDivorced(per)) {
-                events.add(new Integer[]{EventTypes.checkDivorce.ordinal(), id});
-                numEvents++;
-            }
-        }
+        numEvents += scanInParallel(ScanType.persons, Person.getHighestPersonId());
 
 
         // wedding events
         for (int i = 0; i < numberOfPlannedMarriages; i++) {
-            events.add(new Integer[]{EventTypes.checkMarriage.ordinal(), i});
+            events.add(EventTypes.checkMarriage, i);
             numEvents++;
         }
 
@@ -87,32 +60,26 @@ public class EventManager {
         // employment events
         if (EventRules.ruleStartNewJob()) {
             for (int ppId: HouseholdDataManager.getStartNewJobPersonIds()) {
-                events.add(new Integer[]{EventTypes.findNewJob.ordinal(), ppId});
+                events.add(EventTypes.findNewJob, ppId);
                 numEvents++;
             }
         }
 
         if (EventRules.ruleQuitJob()) {
             for (int ppId: HouseholdDataManager.getQuitJobPersonIds()) {
-                events.add(new Integer[]{EventTypes.quitJob.ordinal(), ppId});
+                events.add(EventTypes.quitJob, ppId);
                 numEvents++;
             }
         }
 
 
         // create household events
-        for (Household hh: Household.getHouseholdArray()) {
-            if (EventRules.ruleHouseholdMove(hh)) {
-                int id = hh.getId();
-                events.add(new Integer[]{EventTypes.householdMove.ordinal(), id});
-                numEvents++;
-            }
-        }
+        numEvents += scanInParallel(ScanType.households, Household.getHighestHouseholdId());
 
         if (EventRules.ruleOutmigrate()) {
             for (int hhId: InOutMigration.outMigratingHhId) {
                 if (EventRules.ruleOutmigrate(Household.getHouseholdFromId(hhId))) {
-                    events.add(new Integer[]{EventTypes.outMigration.ordinal(), hhId});
+                    events.add(EventTypes.outMigration, hhId);
                     numEvents++;
                 }
             }
@@ -120,42 +87,24 @@ public class EventManager {
 
         if (EventRules.ruleInmigrate()) {
             for (int hhId: InOutMigration.inmigratingHhId) {
-                events.add(new Integer[]{EventTypes.inmigration.ordinal(), hhId});
+                events.add(EventTypes.inmigration, hhId);
                 numEvents++;
             }
         }
 
         // update dwelling events
-        Collection<Dwelling> dwellings = realEstateData.getDwellings();
-        for (Dwelling dd: dwellings) {
-            int id = dd.getId();
-            // renovate dwelling or deteriorate
-            if (EventRules.ruleChangeDwellingQuality(dd)) {
-                events.add(new Integer[]{EventTypes.ddChangeQual.ordinal(), id});
-                numEvents++;
-            }
-            // demolish
-            if (EventRules.ruleDemolishDwelling(dd)) {
-                events.add(new Integer[]{EventTypes.ddDemolition.ordinal(), id});
-                numEvents++;
-            }
-        }
+        numEvents += scanInParallel(ScanType.dwellings, Dwelling.getHighestDwellingId());
         // build new dwellings
         if (EventRules.ruleBuildDwelling()) {
             for (int constructionCase: ConstructionModel.listOfPlannedConstructions) {
-                events.add(new Integer[]{EventTypes.ddConstruction.ordinal(), constructionCase});
+                events.add(EventTypes.ddConstruction, constructionCase);
                 numEvents++;
             }
         }
 
         logger.info("  Created " + numEvents + " events to simulate");
         logger.info("  Events are randomized");
-        int randomNumArray[] = new int[numEvents];
-        for (int i = 0; i < numEvents; i++) {
-            randomNumArray[i] = (int) (SiloModel.rand.nextDouble() * (float) numEvents * 10f);
-        }
-        randomEventOrder = IndexSort.indexSort(randomNumArray);
-        posInArray = 0;
+        events.shuffle(RandomStreams.getStream("eventOrder", 0));
 
         // initialize event counter
         eventCounter = new HashMap<>();
@@ -163,6 +112,101 @@ public class EventManager {
     }
 
 
+    private int scanInParallel (ScanType type, int highestId) {
+        // evaluate event rules for ids 0 to highestId in chunks of fixed size. Chunks are appended in order of their
+        // ids, therefore the list of events does not depend on the number of threads. Returns number of events added.
+
+        if (highestId < 0) return 0;
+        int numberOfChunks = highestId / SCAN_CHUNK_SIZE + 1;
+        ArrayList<EventScanTask> tasks = new ArrayList<>(numberOfChunks);
+        ForkJoinPool pool = ForkJoinPoolFactory.getForkJoinPool();
+        for (int chunk = 0; chunk < numberOfChunks; chunk++) {
+            int fromId = chunk * SCAN_CHUNK_SIZE;
+            int toId = Math.min(highestId, fromId + SCAN_CHUNK_SIZE - 1);
+            EventScanTask task = new EventScanTask(type, fromId, toId);
+            pool.execute(task);
+            tasks.add(task);
+        }
+        int added = 0;
+        for (EventScanTask task: tasks) {
+            EventQueue buffer = task.join();
+            events.addAll(buffer);
+            added += buffer.size();
+        }
+        return added;
+    }
+
+
+    private static void addPersonEvents (Person per, EventQueue buffer) {
+        int id = per.getId();
+        // Birthday
+        if (EventRules.ruleBirthday(per)) buffer.add(EventTypes.birthday, id);
+        // Death
+        if (EventRules.ruleDeath(per)) buffer.add(EventTypes.checkDeath, id);
+        // Birth
+        if (EventRules.ruleGiveBirth(per)) buffer.add(EventTypes.checkBirth, id);
+        // Leave parental household
+        if (EventRules.ruleLeaveParHousehold(per)) buffer.add(EventTypes.checkLeaveParentHh, id);
+        // Divorce
+        if (EventRules.ruleGetDivorced(per)) buffer.add(EventTypes.checkDivorce, id);
+    }
+
+
+    private static void addHouseholdEvents (Household hh, EventQueue buffer) {
+        if (EventRules.ruleHouseholdMove(hh)) buffer.add(EventTypes.householdMove, hh.getId());
+    }
+
+
+    private static void addDwellingEvents (Dwelling dd, EventQueue buffer) {
+        int id = dd.getId();
+        // renovate dwelling or deteriorate
+        if (EventRules.ruleChangeDwellingQuality(dd)) buffer.add(EventTypes.ddChangeQual, id);
+        // demolish
+        if (EventRules.ruleDemolishDwelling(dd)) buffer.add(EventTypes.ddDemolition, id);
+    }
+
+
+    private enum ScanType {persons, households, dwellings}
+
+
+    private static class EventScanTask extends RecursiveTask<EventQueue> {
+        // evaluates event rules for one chunk of ids into a buffer owned by this task
+
+        private static final long serialVersionUID = 1L;
+        private final ScanType type;
+        private final int fromId;
+        private final int toId;
+
+        EventScanTask (ScanType type, int fromId, int toId) {
+            this.type = type;
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected EventQueue compute() {
+            EventQueue buffer = new EventQueue(toId - fromId + 1);
+            for (int id = fromId; id <= toId; id++) {
+                switch (type) {
+                    case persons:
+                        Person per = Person.getPersonFromId(id);
+                        if (per != null) addPersonEvents(per, buffer);
+                        break;
+                    case households:
+                        Household hh = Household.getHouseholdFromId(id);
+                        if (hh != null) addHouseholdEvents(hh, buffer);
+                        break;
+                    case dwellings:
+                        Dwelling dd = Dwelling.getDwellingFromId(id);
+                        if (dd != null) addDwellingEvents(dd, buffer);
+                        break;
+                }
+            }
+            return buffer;
+        }
+    }
+
+
     public static void countEvent (EventTypes et) {
         // add 1 to counter for EventTypes et
         int counter = eventCounter.get(et) + 1;
@@ -245,16 +289,19 @@ public class EventManager {
     }
 
 
-    public Integer getNumberOfEvents() {
+    public int getNumberOfEvents() {
         // returns size of event array
         return events.size();
     }
 
 
-    public Integer[] selectNextEvent() {
-        // select the next event in order stored in randomEventOrder
-        Integer[] event = events.get(randomEventOrder[posInArray]);
-        posInArray++;
-        return event;
+    public boolean hasNextEvent() {
+        return events.hasNext();
+    }
+
+
+    public long selectNextEvent() {
+        // select the next event in randomized order, decode with EventQueue.getEventType() and EventQueue.getId()
+        return events.next();
     }
 }
@@ -0,0 +1,100 @@
+package edu.umd.ncsg.events;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * List of events packed into a long[], with the event type in the upper and the id of the person, household, dwelling
+ * or construction case in the lower 32 bits. Events are shuffled in place and read through a cursor, therefore no
+ * object is created per event.
+ **/
+
+public class EventQueue {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] events;
+    private int size;
+    private int cursor;
+
+
+    public EventQueue () {
+        this(INITIAL_CAPACITY);
+    }
+
+
+    public EventQueue (int initialCapacity) {
+        events = new long[Math.max(initialCapacity, 16)];
+        size = 0;
+        cursor = 0;
+    }
+
+
+    public static long encode (int eventType, int id) {
+        return ((long) eventType << 32) | (id & 0xFFFFFFFFL);
+    }
+
+
+    public static int getEventType (long event) {
+        return (int) (event >>> 32);
+    }
+
+
+    public static int getId (long event) {
+        return (int) event;
+    }
+
+
+    public void add (EventTypes et, int id) {
+        add(encode(et.ordinal(), id));
+    }
+
+
+    public void add (long event) {
+        ensureCapacity(size + 1);
+        events[size++] = event;
+    }
+
+
+    public void addAll (EventQueue other) {
+        // append all events of other in their current order
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.events, 0, events, size, other.size);
+        size += other.size;
+    }
+
+
+    private void ensureCapacity (int capacity) {
+        if (capacity <= events.length) return;
+        int newCapacity = Math.max(capacity, events.length + (events.length >> 1));
+        events = Arrays.copyOf(events, newCapacity);
+    }
+
+
+    public void shuffle (Random rand) {
+        // randomize order of events in place (Fisher-Yates) and reset the cursor
+        for (int i = size - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            long tmp = events[i];
+            events[i] = events[j];
+            events[j] = tmp;
+        }
+        cursor = 0;
+    }
+
+
+    public int size () {
+        return size;
+    }
+
+
+    public boolean hasNext () {
+        return cursor < size;
+    }
+
+
+    public long next () {
+        // return next packed event and advance the cursor
+        return events[cursor++];
+    }
+}
@@ -1,7 +1,5 @@
 package edu.umd.ncsg.events;
 
-import edu.umd.ncsg.SiloUtil;
-import edu.umd.ncsg.data.geoData;
 import org.apache.log4j.Logger;
 
 /**
@@ -18,8 +16,6 @@ public class IssueCounter {
     private static int lackOfDwellingFailedDivorce;
     private static int lackOfDwellingFailedInmigration;
     private static int forcedOutmigrationByDemolition;
-    private static int[] exceededVacantDwellingStorage;
-    private static int[] exceededVacantJobStorage;
     private static int missingJob;
     private static boolean foundIssues = false;
 
@@ -31,10 +27,6 @@ public class IssueCounter {
         lackOfDwellingFailedDivorce = 0;
         lackOfDwellingFailedInmigration = 0;
         forcedOutmigrationByDemolition = 0;
-        exceededVacantDwellingStorage = new int[SiloUtil.getHighestVal(geoData.getRegionList()) + 1];
-        exceededVacantJobStorage = new int[SiloUtil.getHighestVal(geoData.getRegionList()) + 1];
-        SiloUtil.setArrayToValue(exceededVacantDwellingStorage, 0);
-        SiloUtil.setArrayToValue(exceededVacantJobStorage, 0);
         missingJob = 0;
     }
 
@@ -71,18 +63,6 @@ public class IssueCounter {
     }
 
 
-    public static void countExcessOfVacantDwellings(int region) {
-        exceededVacantDwellingStorage[region]++;
-        foundIssues = true;
-    }
-
-
-    public static void countExcessOfVacantJobs(int region) {
-        exceededVacantJobStorage[region]++;
-        foundIssues = true;
-    }
-
-
     public static boolean didFindIssues() {
         return foundIssues;
     }
@@ -99,16 +79,6 @@ public class IssueCounter {
                 "where a couple wanted to marry (cohabitate) but could not find vacant dwelling.");
         if (forcedOutmigrationByDemolition > 0) logger.warn("  Encountered " + forcedOutmigrationByDemolition + " cases " +
                 "where a household had to outmigrate because its dwelling was demolished and no other vacant dwelling could be found.");
-        if (SiloUtil.getSum(exceededVacantDwellingStorage) > 0) {
-            logger.warn("  Could not store all vacant dwellings in vacDwellingsByRegion[][] for regions:");
-            for (int region: geoData.getRegionList()) if (exceededVacantDwellingStorage[region] > 0)
-                logger.warn("  - Region " + region + ": " + exceededVacantDwellingStorage[region] + " vacant dwellings");
-        }
-        if (SiloUtil.getSum(exceededVacantJobStorage) > 0) {
-            logger.warn("  Could not store all vacant jobs in vacantJobsByRegion[][] for regions:");
-            for (int region: geoData.getRegionList()) if (exceededVacantJobStorage[region] > 0)
-                logger.warn("  - Region " + region + ": " + exceededVacantJobStorage[region] + " vacant jobs");
-        }
         if (missingJob > 0) logger.warn("  Encountered " + missingJob + " cases where a person should have started a " +
                 "new job to keep constant labor participation rates but could not find a job.");
     }
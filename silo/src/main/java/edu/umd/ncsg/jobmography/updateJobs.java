@@ -7,12 +7,10 @@ import edu.umd.ncsg.events.EventRules;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.ResourceBundle;
 import java.util.concurrent.ForkJoinPool;
 import com.pb.sawdust.calculator.Function1;
-import com.pb.sawdust.util.array.ArrayUtil;
 import com.pb.sawdust.util.concurrent.ForkJoinPoolFactory;
 import com.pb.sawdust.util.concurrent.IteratorAction;
 
@@ -28,7 +26,9 @@ public class updateJobs {
     protected transient Logger logger = Logger.getLogger(updateJobs.class);
     protected static final String PROPERTIES_EMPLOYMENT_FORECAST     = "interpol.empl.forecast";
     private ResourceBundle rb;
-    private HashMap<String, int[]> jobsAvailableForRemoval;
+    // jobs of every type and zone that loses jobs this year, indexed by type * (highest zone + 1) + zone
+    private Job[][] vacantJobsByTypeAndZone;
+    private Job[][] occupiedJobsByTypeAndZone;
 
     public updateJobs(ResourceBundle rb) {
         this.rb = rb;
@@ -125,7 +125,7 @@ public class updateJobs {
         if (!EventRules.ruleStartNewJob() && !EventRules.ruleQuitJob()) return;
         logger.info("  Updating job market based on exogenous forecast for " + year + " (multi-threaded step)");
         int[][] jobsByZone = new int[JobType.getNumberOfJobTypes()][geoData.getHighestZonalId()+1];
-        for (Job jj: Job.getJobArray()) {
+        for (Job jj: Job.getJobs()) {
             int jobTypeId = JobType.getOrdinal(jj.getType());
             jobsByZone[jobTypeId][jj.getZone()]++;
         }
@@ -134,124 +134,119 @@ public class updateJobs {
         String forecastFileName = dir + rb.getString(PROPERTIES_EMPLOYMENT_FORECAST) + year + ".csv";
         TableDataSet forecast = SiloUtil.readCSVfile(forecastFileName);
 
-        ArrayList<String> employmentChangeList = new ArrayList<>();
+        ArrayList<JobChange> employmentChanges = new ArrayList<>();
+        boolean[] jobsToBeRemoved = new boolean[jobsByZone.length * jobsByZone[0].length];
         for (int row = 1; row <= forecast.getRowCount(); row++) {
             int zone = (int) forecast.getValueAt(row, "zone");
             for (String jt: JobType.getJobTypes()) {
                 int jobsExogenousForecast = (int) forecast.getValueAt(row, jt);
-                if (jobsExogenousForecast > jobsByZone[JobType.getOrdinal(jt)][zone]) {
-                    int change = jobsExogenousForecast - jobsByZone[JobType.getOrdinal(jt)][zone];
-                    employmentChangeList.add("add:" + jt + "." + zone + "." + change);
-//                    addJobs(jt, zone, change);
-                } else if (jobsExogenousForecast < jobsByZone[JobType.getOrdinal(jt)][zone]) {
-                    int change = jobsByZone[JobType.getOrdinal(jt)][zone] - jobsExogenousForecast;
-//                    removeJobs(jt, zone, change);
-                    employmentChangeList.add("rem:" + jt + "." + zone + "." + change);
+                int jobTypeId = JobType.getOrdinal(jt);
+                if (jobsExogenousForecast > jobsByZone[jobTypeId][zone]) {
+                    int change = jobsExogenousForecast - jobsByZone[jobTypeId][zone];
+                    employmentChanges.add(new JobChange(jt, zone, change, JobDataManager.getNextJobIds(change)));
+                } else if (jobsExogenousForecast < jobsByZone[jobTypeId][zone]) {
+                    int change = jobsByZone[jobTypeId][zone] - jobsExogenousForecast;
+                    employmentChanges.add(new JobChange(jt, zone, -change, -1));
+                    jobsToBeRemoved[jobTypeId * jobsByZone[0].length + zone] = true;
                 }
             }
         }
 
-        jobsAvailableForRemoval = new HashMap<>();
-        for (Job jj: Job.getJobArray()) {
-            String token = jj.getType() + "." + jj.getZone() + "." + (jj.getWorkerId() == -1);
-            if (jobsAvailableForRemoval.containsKey(token)) {
-                int[] jobList = jobsAvailableForRemoval.get(token);
-                jobsAvailableForRemoval.put(token, SiloUtil.expandArrayByOneElement(jobList, jj.getId()));
-            } else {
-                jobsAvailableForRemoval.put(token, new int[]{jj.getId()});
-            }
+        // list vacant and occupied jobs of every type and zone that loses jobs, in the order of their ids
+        int highestZone = jobsByZone[0].length - 1;
+        vacantJobsByTypeAndZone = new Job[jobsToBeRemoved.length][];
+        occupiedJobsByTypeAndZone = new Job[jobsToBeRemoved.length][];
+        int[] vacantJobCount = new int[jobsToBeRemoved.length];
+        int[] occupiedJobCount = new int[jobsToBeRemoved.length];
+        for (Job jj: Job.getJobs()) {
+            int typeAndZone = JobType.getOrdinal(jj.getType()) * (highestZone + 1) + jj.getZone();
+            if (!jobsToBeRemoved[typeAndZone]) continue;
+            Job[][] jobLists = jj.getWorkerId() == -1 ? vacantJobsByTypeAndZone : occupiedJobsByTypeAndZone;
+            int[] jobCount = jj.getWorkerId() == -1 ? vacantJobCount : occupiedJobCount;
+            if (jobLists[typeAndZone] == null)
+                jobLists[typeAndZone] = new Job[jobsByZone[typeAndZone / (highestZone + 1)][jj.getZone()]];
+            jobLists[typeAndZone][jobCount[typeAndZone]++] = jj;
+        }
+        for (int typeAndZone = 0; typeAndZone < jobsToBeRemoved.length; typeAndZone++) {
+            if (vacantJobsByTypeAndZone[typeAndZone] != null) vacantJobsByTypeAndZone[typeAndZone] =
+                    Arrays.copyOf(vacantJobsByTypeAndZone[typeAndZone], vacantJobCount[typeAndZone]);
+            if (occupiedJobsByTypeAndZone[typeAndZone] != null) occupiedJobsByTypeAndZone[typeAndZone] =
+                    Arrays.copyOf(occupiedJobsByTypeAndZone[typeAndZone], occupiedJobCount[typeAndZone]);
         }
 
-
-        // Multi-threading code
-        Function1<String,Void> JobChangeMethod = new Function1<String,Void>() {
-            public Void apply(String employmentChangeDefinition) {
-                String[] change = employmentChangeDefinition.split(":");
-                if (change[0].equalsIgnoreCase("add")) {
-                    addJobs(change[1]);
-                } else {              // token "rem"
-                    removeJobs(change[1]);
+        // Multi-threading code, every change affects other jobs than all other changes
+        Function1<JobChange,Void> JobChangeMethod = new Function1<JobChange,Void>() {
+            public Void apply(JobChange change) {
+                if (change.amount > 0) {
+                    addJobs(change);
+                } else {
+                    removeJobs(change);
                 }
                 return null;
             }
         };
 
-        String[] code = SiloUtil.convertStringArrayListToArray(employmentChangeList);
-        Iterator<String> jobChangeIterator = ArrayUtil.getIterator(code);
-        IteratorAction<String> itTask = new IteratorAction<>(jobChangeIterator, JobChangeMethod);
+        IteratorAction<JobChange> itTask = new IteratorAction<>(employmentChanges.iterator(), JobChangeMethod);
         ForkJoinPool pool = ForkJoinPoolFactory.getForkJoinPool();
         pool.execute(itTask);
         itTask.waitForCompletion();
-
-        // Fix job map, which for some reason keeps getting messed up
-        for (int jobId: Job.getJobMapIDs()) {
-            Job jj = Job.getJobFromId(jobId);
-            if (jj == null) {
-                Job.removeJob(jobId);
-                logger.warn("Had to manually remove Job " + jobId + " from job map.");
-            }
-        }
+        vacantJobsByTypeAndZone = null;
+        occupiedJobsByTypeAndZone = null;
     }
 
 
-    private void addJobs (String addJobsInstruction) {
-        // add new jobs
+    private void addJobs (JobChange change) {
+        // add new jobs with the ids reserved for this change
 
-        String[] definition = addJobsInstruction.split("\\.");
-        String type = definition[0];
-        int zone = Integer.parseInt(definition[1]);
-        int change = Integer.parseInt(definition[2]);
-        for (int i = 1; i <= change; i++) {
-            int id;
-            synchronized (Job.class) {
-                id = JobDataManager.getNextJobId();
-                new Job(id, zone, -1, type);
-            }
-            if (id == SiloUtil.trackJj) SiloUtil.trackWriter.println("Job " + id + " of type " + type +
-                    " was newly created in zone " + zone + " based on exogenous forecast.");
-        }
+        Job.createVacantJobs(change.firstNewId, change.amount, change.zone, change.type);
+        if (SiloUtil.trackJj >= change.firstNewId && SiloUtil.trackJj < change.firstNewId + change.amount)
+            SiloUtil.trackWriter.println("Job " + SiloUtil.trackJj + " of type " + change.type +
+                    " was newly created in zone " + change.zone + " based on exogenous forecast.");
     }
 
 
-    private void removeJobs (String removeJobsInstructions) {
+    private void removeJobs (JobChange change) {
         // remove jobs
 
-        String[] definition = removeJobsInstructions.split("\\.");
-        String type = definition[0];
-        int zone = Integer.parseInt(definition[1]);
-        int change = Integer.parseInt(definition[2]);
+        int typeAndZone = JobType.getOrdinal(change.type) * (geoData.getHighestZonalId() + 1) + change.zone;
+        int amount = -change.amount;
 
         // first, try to eliminate only jobs that are vacant
-        String tokenVacantJobs = type + "." + zone + "." + true;
-        if (jobsAvailableForRemoval.containsKey(tokenVacantJobs)) {
-            int[] vacantJobs = jobsAvailableForRemoval.get(tokenVacantJobs);
-            int counter = 0;
-            while (counter < vacantJobs.length && change > 0) {
-                synchronized (Job.class) {
-                    Job.removeJob(vacantJobs[counter]);
-                }
-                if (vacantJobs[counter] == SiloUtil.trackJj) SiloUtil.trackWriter.println("Vacant job " + vacantJobs[counter] +
-                        " of type " + type + " was removed in zone " + zone + " based on exogenous forecast.");
-                counter++;
-                change = change - 1;
-            }
+        Job[] vacantJobs = vacantJobsByTypeAndZone[typeAndZone];
+        int vacantJobsRemoved = vacantJobs == null ? 0 : Math.min(vacantJobs.length, amount);
+        if (vacantJobsRemoved > 0) Job.removeJobs(vacantJobs, vacantJobsRemoved);
+        for (int i = 0; i < vacantJobsRemoved; i++) {
+            if (vacantJobs[i].getId() == SiloUtil.trackJj) SiloUtil.trackWriter.println("Vacant job " + vacantJobs[i].getId() +
+                    " of type " + change.type + " was removed in zone " + change.zone + " based on exogenous forecast.");
         }
+        amount -= vacantJobsRemoved;
+
+        // if necessary (i.e., amount still > 0) remove jobs that are filled with workers
+        if (amount == 0) return;
+        Job[] occupiedJobs = occupiedJobsByTypeAndZone[typeAndZone];
+        for (int i = 0; i < amount; i++) {
+            Person.getPersonFromId(occupiedJobs[i].getWorkerId()).quitJob(occupiedJobs[i], false);
+            if (occupiedJobs[i].getId() == SiloUtil.trackJj) SiloUtil.trackWriter.println("Previously occupied job " +
+                    occupiedJobs[i].getId() + " of type " + change.type + " was removed in zone " + change.zone +
+                    " based on exogenous forecast.");
+        }
+        Job.removeJobs(occupiedJobs, amount);
+    }
 
-        // if necessary (i.e., change still > 0) remove jobs that are filled with workers
-        String tokenOccupiedJobs = type + "." + zone + "." + false;
-        int[] occupiedJobs = jobsAvailableForRemoval.get(tokenOccupiedJobs);
-        int counter = 0;
-        while (change > 0) {
-            Job jobToBeRemoved = Job.getJobFromId(occupiedJobs[counter]);
-            int personId = jobToBeRemoved.getWorkerId();
-            Person.getPersonFromId(personId).quitJob(false);
-            synchronized (Job.class) {
-                Job.removeJob(occupiedJobs[counter]);
-            }
-            if (occupiedJobs[counter] == SiloUtil.trackJj) SiloUtil.trackWriter.println("Previously occupied job " +
-                    occupiedJobs[counter] + " of type " + type + " was removed in zone " + zone + " based on exogenous forecast.");
-            counter++;
-            change = change - 1;
+
+    private static final class JobChange {
+        // change of the number of jobs of one type in one zone, positive amounts add jobs starting with firstNewId
+
+        final String type;
+        final int zone;
+        final int amount;
+        final int firstNewId;
+
+        JobChange (String type, int zone, int amount, int firstNewId) {
+            this.type = type;
+            this.zone = zone;
+            this.amount = amount;
+            this.firstNewId = firstNewId;
         }
     }
 }
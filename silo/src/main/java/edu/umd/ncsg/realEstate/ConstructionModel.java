@@ -75,7 +75,7 @@ public class ConstructionModel {
 
         // Construction Demand
         int constructionModelSheetNumberA = ResourceUtil.getIntegerProperty(rb, PROPERTIES_RealEstate_UEC_MODEL_SHEET_CONSTDEMAND);
-        UtilityExpressionCalculator constructionModelDemand = new UtilityExpressionCalculator(new File(uecFileName),
+        UtilityExpressionCalculator constructionModelDemand = UtilityExpressionCalculator.newInstance(new File(uecFileName),
                 constructionModelSheetNumberA,
                 dataSheetNumber,
                 SiloUtil.getRbHashMap(),
@@ -108,7 +108,7 @@ public class ConstructionModel {
 
         int zoneUtilityModelSheetNumber = ResourceUtil.getIntegerProperty(rb, PROPERTIES_RealEstate_UEC_MODEL_SHEET_CONSTLOCATION);
         // initialize UEC
-        zoneUtilityModel = new UtilityExpressionCalculator(new File(uecFileName),
+        zoneUtilityModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
                 zoneUtilityModelSheetNumber,
                 dataSheetNumber,
                 SiloUtil.getRbHashMap(),
@@ -217,11 +217,11 @@ public class ConstructionModel {
 
         float[][] avePrice = new float[DwellingType.values().length][geoData.getHighestZonalId() + 1];
         int[][] counter = new int[DwellingType.values().length][geoData.getHighestZonalId() + 1];
-        for (Dwelling dd: Dwelling.getDwellingArray()) {
-            int dt = dd.getType().ordinal();
-            int zone = dd.getZone();
-            counter[dt][zone]++;
-            avePrice[dt][zone] += dd.getPrice();
+        for (DwellingType dt: DwellingType.values()) {
+            for (int zone: geoData.getZones()) {
+                counter[dt.ordinal()][zone] = AggregateRegistry.getNumberOfDwellings(dt, zone);
+                avePrice[dt.ordinal()][zone] = AggregateRegistry.getPriceSum(dt, zone);
+            }
         }
         for (DwellingType dt: DwellingType.values()) {
             int dto = dt.ordinal();
@@ -247,11 +247,11 @@ public class ConstructionModel {
 
         float[][] avePrice = new float[DwellingType.values().length][SiloUtil.getHighestVal(geoData.getRegionList()) + 1];
         int[][] counter = new int[DwellingType.values().length][SiloUtil.getHighestVal(geoData.getRegionList()) + 1];
-        for (Dwelling dd: Dwelling.getDwellingArray()) {
-            int dt = dd.getType().ordinal();
-            int region = geoData.getRegionOfZone(dd.getZone());
-            counter[dt][region]++;
-            avePrice[dt][region] += dd.getPrice();
+        for (DwellingType dt: DwellingType.values()) {
+            for (int region: geoData.getRegionList()) {
+                counter[dt.ordinal()][region] = AggregateRegistry.getNumberOfDwellingsInRegion(dt, region);
+                avePrice[dt.ordinal()][region] = AggregateRegistry.getPriceSumInRegion(dt, region);
+            }
         }
         for (DwellingType dt: DwellingType.values()) {
             int dto = dt.ordinal();
@@ -277,11 +277,11 @@ public class ConstructionModel {
 
         float[][] aveSize = new float[DwellingType.values().length][SiloUtil.getHighestVal(geoData.getRegionList()) + 1];
         int[][] counter = new int[DwellingType.values().length][SiloUtil.getHighestVal(geoData.getRegionList()) + 1];
-        for (Dwelling dd: Dwelling.getDwellingArray()) {
-            int dt = dd.getType().ordinal();
-            int region = geoData.getRegionOfZone(dd.getZone());
-            counter[dt][region]++;
-            aveSize[dt][region] += dd.getBedrooms();
+        for (DwellingType dt: DwellingType.values()) {
+            for (int region: geoData.getRegionList()) {
+                counter[dt.ordinal()][region] = AggregateRegistry.getNumberOfDwellingsInRegion(dt, region);
+                aveSize[dt.ordinal()][region] = AggregateRegistry.getBedroomSumInRegion(dt, region);
+            }
         }
         for (DwellingType dt: DwellingType.values()) {
             int dto = dt.ordinal();
@@ -1,6 +1,6 @@
 package edu.umd.ncsg.realEstate;
 
-import edu.umd.ncsg.SiloModel;
+import edu.umd.ncsg.RandomStreams;
 import edu.umd.ncsg.SiloUtil;
 import edu.umd.ncsg.data.RealEstateDataManager;
 import edu.umd.ncsg.events.EventTypes;
@@ -61,7 +61,7 @@ public class DemolitionModel {
         boolean logCalculation = ResourceUtil.getBooleanProperty(rb, PROPERTIES_LOG_UTILILITY_CALCULATION_DEMOLITION);
 
         // initialize UEC
-        UtilityExpressionCalculator demolitionModel = new UtilityExpressionCalculator(new File(uecFileName),
+        UtilityExpressionCalculator demolitionModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
                 demolitionModelSheetNumber,
                 dataSheetNumber,
                 SiloUtil.getRbHashMap(),
@@ -109,7 +109,7 @@ public class DemolitionModel {
         int occupied;
         if (residentId > 0) occupied = 1;
         else occupied = 0;
-        if (SiloModel.rand.nextDouble() < demolitionProbability[quality - 1][occupied]) {
+        if (RandomStreams.nextDouble("demolition", dwellingId) < demolitionProbability[quality - 1][occupied]) {
             // demolish dwelling
             if (occupied == 1) {
                 // dwelling is currently occupied, force household to move out
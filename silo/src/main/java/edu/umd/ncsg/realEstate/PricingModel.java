@@ -55,7 +55,7 @@ public class PricingModel {
         int pricingModelSheetNumber = ResourceUtil.getIntegerProperty(rb, PROPERTIES_RealEstate_UEC_MODEL_SHEET_PRICING);
 
         // initialize UEC
-        UtilityExpressionCalculator pricingModel = new UtilityExpressionCalculator(new File(uecFileName),
+        UtilityExpressionCalculator pricingModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
                 pricingModelSheetNumber,
                 dataSheetNumber,
                 SiloUtil.getRbHashMap(),
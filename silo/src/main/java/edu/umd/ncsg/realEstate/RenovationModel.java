@@ -54,7 +54,7 @@ public class RenovationModel {
         boolean logCalculation = ResourceUtil.getBooleanProperty(rb, PROPERTIES_LOG_UTILILITY_CALCULATION_RENOVATION);
 
 		// initialize UEC
-        UtilityExpressionCalculator renovationModel = new UtilityExpressionCalculator(new File(uecFileName),
+        UtilityExpressionCalculator renovationModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
         		renovationModelSheetNumber,
         		dataSheetNumber,
         		SiloUtil.getRbHashMap(),
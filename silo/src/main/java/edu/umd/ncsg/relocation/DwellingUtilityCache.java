@@ -0,0 +1,122 @@
+package edu.umd.ncsg.relocation;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers solved dwelling utilities by the values of the DMU variables they were solved for. Many dwellings share
+ * type, quality, size, price category and zone, and therefore the same inputs of the dwelling utility model. The cache
+ * may be used by several threads; keys are spread over SEGMENTS least-recently-used maps with their own lock. When a
+ * segment is full, the utility used least recently is dropped. The cache is cleared at the beginning of every year.
+ **/
+
+public class DwellingUtilityCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private int year = Integer.MIN_VALUE;
+
+
+    public DwellingUtilityCache (int maxSize) {
+        segments = new Segment[SEGMENTS];
+        int maxSizeOfSegment = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(maxSizeOfSegment);
+    }
+
+
+    public static Key createKey (MovesDMU dmu) {
+        // key of the current values of the DMU variables of the dwelling utility model
+        return new Key(dmu.getBlockValues());
+    }
+
+
+    public synchronized void setYear (int year) {
+        // utilities are remembered for one year only
+        if (year != this.year) {
+            for (Segment segment: segments) {
+                synchronized (segment) {
+                    segment.clear();
+                }
+            }
+        }
+        this.year = year;
+    }
+
+
+    private Segment getSegment (Key key) {
+        // spread hash, as similar keys differ in the low bits only
+        int h = key.hash ^ (key.hash >>> 16);
+        return segments[(h ^ (h >>> 8)) & (SEGMENTS - 1)];
+    }
+
+
+    public Double get (Key key) {
+        // return utility solved for key before, or null
+        Segment segment = getSegment(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+
+    public void put (Key key, double utility) {
+        Segment segment = getSegment(key);
+        synchronized (segment) {
+            segment.put(key, utility);
+        }
+    }
+
+
+    public int size () {
+        int size = 0;
+        for (Segment segment: segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+
+    private static final class Segment extends LinkedHashMap<Key, Double> {
+        // utilities in order of last access, the eldest is removed when maxSize is exceeded
+
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        Segment (int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry (Map.Entry<Key, Double> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+
+    public static final class Key {
+        // values of DMU variables, compared bit by bit
+
+        private final double[] values;
+        private final int hash;
+
+        private Key (double[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode () {
+            return hash;
+        }
+
+        @Override
+        public boolean equals (Object obj) {
+            return obj instanceof Key && ((Key) obj).hash == hash && Arrays.equals(((Key) obj).values, values);
+        }
+    }
+}
@@ -5,6 +5,7 @@ package edu.umd.ncsg.relocation;
 import edu.umd.ncsg.data.Race;
 import org.apache.log4j.Logger;
 
+import com.pb.common.calculator.DmuBlock;
 import com.pb.common.calculator.IndexValues;
 import edu.umd.ncsg.data.HouseholdType;
 
@@ -39,6 +40,11 @@ public class MovesDMU {
     private float[] regionalShareBlack;
     private float[] regionalShareHispanic;
     private IndexValues dmuIndex;
+
+    // uec variables that can be solved for a block of dwellings at once, in the order of copyToBlock()
+    public static final String[] BLOCK_VARIABLES = {"householdType", "householdRace", "incomeGroup", "ddPriceUtility",
+            "ddQualityUtility", "ddAreaUtility", "ddAutoAccessibilityUtility", "ddTransitAccessibilityUtility",
+            "ddSchoolQualityUtility", "ddCrimeRateUtility", "ddWorkDistanceUtility", "ddTotalTravelCostsUtility"};
 	
 	public MovesDMU() {
 		dmuIndex = new IndexValues();
@@ -122,6 +128,30 @@ public class MovesDMU {
         return dmuIndex; 
     }
 
+    public void copyToBlock (DmuBlock block, int row) {
+        // copy current values of BLOCK_VARIABLES into row of block
+        block.setValue(0, row, householdType);
+        block.setValue(1, row, householdRace);
+        block.setValue(2, row, incomeGroup);
+        block.setValue(3, row, ddPriceUtility);
+        block.setValue(4, row, ddQualityUtility);
+        block.setValue(5, row, ddAreaUtility);
+        block.setValue(6, row, ddAutoAccessibilityUtility);
+        block.setValue(7, row, ddTransitAccessibilityUtility);
+        block.setValue(8, row, ddSchoolQualityUtility);
+        block.setValue(9, row, ddCrimeRateUtility);
+        block.setValue(10, row, ddWorkDistanceUtility);
+        block.setValue(11, row, ddTotalTravelCostsUtility);
+    }
+
+
+    public double[] getBlockValues () {
+        // return current values of BLOCK_VARIABLES, in the same order as in copyToBlock()
+        return new double[] {householdType, householdRace, incomeGroup, ddPriceUtility, ddQualityUtility, ddAreaUtility,
+                ddAutoAccessibilityUtility, ddTransitAccessibilityUtility, ddSchoolQualityUtility, ddCrimeRateUtility,
+                ddWorkDistanceUtility, ddTotalTravelCostsUtility};
+    }
+
 
     // DMU methods - define one of these for every @var in the control file.
 	public int getHouseholdType() {
@@ -6,8 +6,13 @@ package edu.umd.ncsg.relocation;
 * Revised on Apr 24, 2014 in College Park, MD
 */
 
+import com.pb.common.calculator.DmuBlock;
+import com.pb.common.calculator.UecWorkspace;
 import com.pb.common.calculator.UtilityExpressionCalculator;
 import com.pb.common.util.ResourceUtil;
+import com.pb.sawdust.calculator.Function1;
+import com.pb.sawdust.util.concurrent.ForkJoinPoolFactory;
+import com.pb.sawdust.util.concurrent.IteratorAction;
 import edu.umd.ncsg.SiloModel;
 import edu.umd.ncsg.SiloUtil;
 import edu.umd.ncsg.data.*;
@@ -18,7 +23,12 @@ import org.apache.log4j.Logger;
 
 import java.io.File;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ForkJoinPool;
 
 public class MovesModel {
     Logger logger = Logger.getLogger(MovesModel.class);
@@ -37,6 +47,7 @@ public class MovesModel {
     protected static final String PROPERTIES_SELECT_DWELLING_MN_LOG_MODEL    = "select.dwelling.mn.log.model.parameter";
     protected static final String PROPERTIES_SELECT_DWELLING_RACE_FACTOR     = "relevance.of.race.in.zone.of.dwelling";
     protected static final String PROPERTIES_RUN_SCENARIO_HOUSING_SUBSIDY    = "provide.housing.subsidy.to.low.inc";
+    protected static final String PROPERTIES_STRATIFY_DWELLING_SEARCH_BY_TYPE = "stratify.dwelling.search.by.type";
 
     // properties
     private String uecFileName;
@@ -61,7 +72,20 @@ public class MovesModel {
     private float[][] regionalRacialComposition;
     private double selectDwellingRaceRelevance;
     private boolean provideRentSubsidyToLowIncomeHh;
+    private boolean stratifyDwellingSearchByType;
+    private static final int MAX_NUMBER_OF_DWELLINGS_EVALUATED = 20;
     private int[] householdsByRegion;
+    private static final int DWELLING_BLOCK_SIZE = 4096;
+    private static final int DWELLINGS_PER_TASK = 16384;
+    private static final int MAX_CACHED_DWELLING_UTILITIES = 500000;
+    private DwellingUtilityCache dwellingUtilityCache;
+    // zone and region components of dwelling and region utilities, constant within a year
+    private double[] zonalAutoAccessibilityUtility;
+    private double[] zonalTransitAccessibilityUtility;
+    private double[] zonalSchoolQuality;
+    private double[] zonalCrimeRate;
+    private double[][] priceUtilityByIncomeCategory;
+    private float[][] workDistanceFactorByWorkZone;
 
 
     public MovesModel(ResourceBundle rb) {
@@ -75,6 +99,7 @@ public class MovesModel {
         logCalculationRegion = ResourceUtil.getBooleanProperty(rb, PROPERTIES_LOG_UTILITY_CALCULATION_MOVES_R);
         selectDwellingRaceRelevance = ResourceUtil.getDoubleProperty(rb, PROPERTIES_SELECT_DWELLING_RACE_FACTOR);
         evaluateDwellingDmu = new MovesDMU();
+        dwellingUtilityCache = new DwellingUtilityCache(MAX_CACHED_DWELLING_UTILITIES);
 
         setupEvaluateDwellings();
         setupMoveOrNotMove();
@@ -82,6 +107,7 @@ public class MovesModel {
         setupSelectDwellingModel();
         provideRentSubsidyToLowIncomeHh = ResourceUtil.getBooleanProperty(rb, PROPERTIES_RUN_SCENARIO_HOUSING_SUBSIDY, false);
         if (provideRentSubsidyToLowIncomeHh) RealEstateDataManager.calculateMedianRentByMSA();
+        stratifyDwellingSearchByType = ResourceUtil.getBooleanProperty(rb, PROPERTIES_STRATIFY_DWELLING_SEARCH_BY_TYPE, false);
     }
 
 
@@ -90,7 +116,7 @@ public class MovesModel {
 
         int ddUtilityModelSheetNumber = ResourceUtil.getIntegerProperty(rb, PROPERTIES_MOVES_UEC_MODEL_SHEET_DD_UTIL);
         // initialize UEC
-        ddUtilityModel = new UtilityExpressionCalculator(new File(uecFileName),
+        ddUtilityModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
                 ddUtilityModelSheetNumber,
                 dataSheetNumber,
                 SiloUtil.getRbHashMap(),
@@ -104,7 +130,7 @@ public class MovesModel {
         evaluateAllDwellingUtilities();
         averageHousingSatisfaction = new double[HouseholdType.values().length];
         int[] hhCountyByType = new int[HouseholdType.values().length];
-        for (Household hh: Household.getHouseholdArray()) {
+        for (Household hh: Household.getHouseholds()) {
             double util = Dwelling.getDwellingFromId(hh.getDwellingId()).getUtilOfResident();
             int count = hh.getHouseholdType().ordinal();
             averageHousingSatisfaction[count] += util;
@@ -120,11 +146,13 @@ public class MovesModel {
 
         zonalRacialComposition = new float[geoData.getZones().length][4];
         regionalRacialComposition = new float[geoData.getRegionList().length][4];
-        SiloUtil.setArrayToValue(zonalRacialComposition, 0f);
-        for (Household hh: Household.getHouseholdArray()) {
-            zonalRacialComposition[geoData.getZoneIndex(hh.getHomeZone())][hh.getRace().ordinal()]++;
-            int region = geoData.getRegionOfZone(hh.getHomeZone());
-            regionalRacialComposition[geoData.getRegionIndex(region)][hh.getRace().ordinal()]++;
+        for (Race race: Race.values()) {
+            for (int zone: geoData.getZones())
+                zonalRacialComposition[geoData.getZoneIndex(zone)][race.ordinal()] =
+                        AggregateRegistry.getNumberOfHouseholds(zone, race);
+            for (int region: geoData.getRegionList())
+                regionalRacialComposition[geoData.getRegionIndex(region)][race.ordinal()] =
+                        AggregateRegistry.getNumberOfHouseholdsInRegion(region, race);
         }
         for (int zone: geoData.getZones()) {
             int zonalSum = 0;
@@ -151,6 +179,43 @@ public class MovesModel {
     }
 
 
+    private void calculateZonalUtilityComponents() {
+        // calculate utility components that depend on zone, region or price category only. They are read for every
+        // dwelling that is evaluated, but change at most once a year
+
+        int[] zones = geoData.getZones();
+        int[] regions = geoData.getRegionList();
+        zonalAutoAccessibilityUtility = new double[zones.length];
+        zonalTransitAccessibilityUtility = new double[zones.length];
+        zonalSchoolQuality = new double[zones.length];
+        zonalCrimeRate = new double[zones.length];
+        workDistanceFactorByWorkZone = new float[zones.length][regions.length];
+        for (int zone: zones) {
+            int zoneIndex = geoData.getZoneIndex(zone);
+            zonalAutoAccessibilityUtility[zoneIndex] = convertAccessToUtility(Accessibility.getAutoAccessibility(zone));
+            zonalTransitAccessibilityUtility[zoneIndex] = convertAccessToUtility(Accessibility.getTransitAccessibility(zone));
+            zonalSchoolQuality[zoneIndex] = geoData.getZonalSchoolQuality(zone);
+            zonalCrimeRate[zoneIndex] = geoData.getCountyCrimeRate(geoData.getCountyOfZone(zone));
+            for (int i = 0; i < regions.length; i++) {
+                int smallestDistInMin = (int) Accessibility.getMinDistanceFromZoneToRegion(zone, regions[i]);
+                workDistanceFactorByWorkZone[zoneIndex][i] = Accessibility.getWorkTLFD(smallestDistInMin);
+            }
+        }
+
+        // price utility is 1 minus the share of households of an income category paying up to this price category
+        int incomeCategories = SiloUtil.incBrackets.length + 1;
+        priceUtilityByIncomeCategory = new double[incomeCategories][RealEstateDataManager.rentCategories + 1];
+        for (int incCategory = 1; incCategory <= incomeCategories; incCategory++) {
+            float[] shares = RealEstateDataManager.getRentPaymentsForIncomeGroup(incCategory);
+            double util = 0;
+            for (int priceCategory = 0; priceCategory <= RealEstateDataManager.rentCategories; priceCategory++) {
+                util += shares[priceCategory];
+                priceUtilityByIncomeCategory[incCategory - 1][priceCategory] = 1f - util;
+            }
+        }
+    }
+
+
     public float getZonalRacialShare(int zone, Race race) {
         return zonalRacialComposition[geoData.getZoneIndex(zone)][race.ordinal()];
     }
@@ -166,7 +231,11 @@ public class MovesModel {
         numAltsEvalDwelling = ddUtilityModel.getNumberOfAlternatives();
         evalDwellingAvail = new int[numAltsEvalDwelling + 1];
         for (int i = 1; i < evalDwellingAvail.length; i++) evalDwellingAvail[i] = 1;
-        for (Dwelling dd: Dwelling.getDwellingArray()) {
+        if (!logCalculationDwelling) {
+            evaluateAllDwellingUtilitiesInParallel();
+            return;
+        }
+        for (Dwelling dd: Dwelling.getDwellings()) {
             if (dd.getResidentId() == -1) {
                 // dwelling is vacant, evaluate for all household types
                 double utils[] = updateUtilitiesOfVacantDwelling(dd);
@@ -184,16 +253,135 @@ public class MovesModel {
     }
 
 
+    private void evaluateAllDwellingUtilitiesInParallel () {
+        // split dwelling stock into chunks that are evaluated in parallel. Every chunk uses its own DMU, DMU block and UEC
+        // workspace and writes into its own range of dwellingUtilities, therefore results do not depend on the number of
+        // threads. Vacant dwellings need one utility per household type, occupied dwellings one for the resident.
+
+        final Dwelling[] dwellings = Dwelling.getDwellingArray();
+        final int[] firstEvaluation = new int[dwellings.length + 1];
+        for (int i = 0; i < dwellings.length; i++) {
+            int evaluations = dwellings[i].getResidentId() == -1 ? HouseholdType.values().length : 1;
+            firstEvaluation[i + 1] = firstEvaluation[i] + evaluations;
+        }
+        final double[] dwellingUtilities = new double[firstEvaluation[dwellings.length]];
+
+        ArrayList<Integer> chunkStarts = new ArrayList<>();
+        for (int start = 0; start < dwellings.length; start += DWELLINGS_PER_TASK) chunkStarts.add(start);
+        Function1<Integer, Void> chunkFunction = new Function1<Integer, Void>() {
+            public Void apply(Integer start) {
+                int end = Math.min(start + DWELLINGS_PER_TASK, dwellings.length);
+                evaluateDwellingUtilities(dwellings, start, end, firstEvaluation, dwellingUtilities);
+                return null;
+            }
+        };
+        IteratorAction<Integer> itTask = new IteratorAction<>(chunkStarts.iterator(), chunkFunction);
+        ForkJoinPool pool = ForkJoinPoolFactory.getForkJoinPool();
+        pool.execute(itTask);
+        itTask.waitForCompletion();
+
+        for (int i = 0; i < dwellings.length; i++) {
+            if (dwellings[i].getResidentId() == -1) {
+                dwellings[i].setUtilitiesOfVacantDwelling(Arrays.copyOfRange(dwellingUtilities, firstEvaluation[i],
+                        firstEvaluation[i + 1]));
+            } else {
+                dwellings[i].setUtilOfResident(dwellingUtilities[firstEvaluation[i]]);
+            }
+        }
+    }
+
+
+    private void evaluateDwellingUtilities (Dwelling[] dwellings, int from, int to, int[] firstEvaluation,
+                                            double[] utilities) {
+        // solve utilities of dwellings[from] to dwellings[to - 1] for blocks of dwellings at once. Utilities found in
+        // dwellingUtilityCache are not solved again, and every set of DMU values is solved only once per block
+
+        HouseholdType[] householdTypes = HouseholdType.values();
+        MovesDMU dmu = new MovesDMU();
+        UecWorkspace workspace = ddUtilityModel.createWorkspace();
+        DmuBlock dmuBlock = new DmuBlock(MovesDMU.BLOCK_VARIABLES, DWELLING_BLOCK_SIZE);
+        HashMap<DwellingUtilityCache.Key, Integer> rowByKey = new HashMap<>();
+        int[] rowOfEvaluation = new int[DWELLING_BLOCK_SIZE];   // row of dmuBlock, or -1 if utility was cached
+        int blockStart = from;
+        for (int i = from; i < to; i++) {
+            if (firstEvaluation[i + 1] - firstEvaluation[blockStart] > DWELLING_BLOCK_SIZE) {
+                solveDwellingBlock(dmu, workspace, dmuBlock, rowByKey, rowOfEvaluation, firstEvaluation[blockStart],
+                        firstEvaluation[i], utilities);
+                blockStart = i;
+            }
+            Dwelling dd = dwellings[i];
+            int evaluation = firstEvaluation[i];
+            if (dd.getResidentId() == -1) {
+                for (HouseholdType ht: householdTypes) {
+                    setDwellingDmu(dmu, ht, -1, dd);
+                    addEvaluationToBlock(dmu, dmuBlock, rowByKey, rowOfEvaluation,
+                            evaluation - firstEvaluation[blockStart], utilities, evaluation);
+                    evaluation++;
+                }
+            } else {
+                Household hh = Household.getHouseholdFromId(dd.getResidentId());
+                setDwellingDmu(dmu, hh.getHouseholdType(), hh.getHhIncome(), dd);
+                addEvaluationToBlock(dmu, dmuBlock, rowByKey, rowOfEvaluation,
+                        evaluation - firstEvaluation[blockStart], utilities, evaluation);
+            }
+        }
+        solveDwellingBlock(dmu, workspace, dmuBlock, rowByKey, rowOfEvaluation, firstEvaluation[blockStart],
+                firstEvaluation[to], utilities);
+    }
+
+
+    private void addEvaluationToBlock (MovesDMU dmu, DmuBlock dmuBlock, HashMap<DwellingUtilityCache.Key, Integer> rowByKey,
+                                       int[] rowOfEvaluation, int evaluationInBlock, double[] utilities, int evaluation) {
+        // take utility of current values of dmu from cache, or add them to dmuBlock unless they are in dmuBlock already
+
+        DwellingUtilityCache.Key key = DwellingUtilityCache.createKey(dmu);
+        Double util = dwellingUtilityCache.get(key);
+        if (util != null) {
+            utilities[evaluation] = util;
+            rowOfEvaluation[evaluationInBlock] = -1;
+            return;
+        }
+        Integer row = rowByKey.get(key);
+        if (row == null) {
+            row = rowByKey.size();
+            dmuBlock.setSize(row + 1);
+            dmu.copyToBlock(dmuBlock, row);
+            rowByKey.put(key, row);
+        }
+        rowOfEvaluation[evaluationInBlock] = row;
+    }
+
+
+    private void solveDwellingBlock (MovesDMU dmu, UecWorkspace workspace, DmuBlock dmuBlock,
+                                     HashMap<DwellingUtilityCache.Key, Integer> rowByKey, int[] rowOfEvaluation,
+                                     int firstEvaluation, int endEvaluation, double[] utilities) {
+        // solve rows of dmuBlock, remember their utilities and store utilities of evaluations firstEvaluation to
+        // endEvaluation - 1 that were not cached
+
+        if (rowByKey.size() > 0) {
+            dmuBlock.setSize(rowByKey.size());
+            double[][] blockUtilities = ddUtilityModel.solveBatch(dmu.getDmuIndexValues(), dmuBlock,
+                    evalDwellingAvail, workspace);
+            for (Map.Entry<DwellingUtilityCache.Key, Integer> entry: rowByKey.entrySet())
+                dwellingUtilityCache.put(entry.getKey(), blockUtilities[entry.getValue()][0]);
+            for (int evaluation = firstEvaluation; evaluation < endEvaluation; evaluation++) {
+                int row = rowOfEvaluation[evaluation - firstEvaluation];
+                if (row >= 0) utilities[evaluation] = blockUtilities[row][0];
+            }
+        }
+        rowByKey.clear();
+        dmuBlock.setSize(0);
+    }
+
+
     private double convertPriceToUtility (int price, HouseholdType ht) {
         // convert price into utility
 
         int incCategory = HouseholdType.convertHouseholdTypeToIncomeCategory(ht);
-        float[] shares = RealEstateDataManager.getRentPaymentsForIncomeGroup(incCategory);
         int priceCategory = (int) (price / 200f + 0.5);   // 25 rent categories are defined as <rent/200>, see RealEstateDataManager
         priceCategory = Math.min(priceCategory, RealEstateDataManager.rentCategories);
-        double util = 0;
-        for (int i = 0; i <= priceCategory; i++) util += shares[i];
-        return (1f - util);   // invert utility, as lower price has higher utility
+        if (priceCategory < 0) return 1f;
+        return priceUtilityByIncomeCategory[incCategory - 1][priceCategory];   // inverted, as lower price has higher utility
     }
 
 
@@ -281,7 +469,7 @@ public class MovesModel {
 
         int moveOrNotModelSheetNumber = ResourceUtil.getIntegerProperty(rb, PROPERTIES_MOVES_UEC_MODEL_SHEET_MOVEORNOT);
         // initialize UEC
-        UtilityExpressionCalculator moveOrNotModel = new UtilityExpressionCalculator(new File(uecFileName),
+        UtilityExpressionCalculator moveOrNotModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
                 moveOrNotModelSheetNumber,
                 dataSheetNumber,
                 SiloUtil.getRbHashMap(),
@@ -308,7 +496,7 @@ public class MovesModel {
 
         int selRegModelSheetNumber = ResourceUtil.getIntegerProperty(rb, PROPERTIES_MOVES_UEC_MODEL_SHEET_REGION);
         // initialize UEC
-        selectRegionModel = new UtilityExpressionCalculator(new File(uecFileName),
+        selectRegionModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
                 selRegModelSheetNumber,
                 dataSheetNumber,
                 SiloUtil.getRbHashMap(),
@@ -321,6 +509,8 @@ public class MovesModel {
     public void calculateRegionalUtilities(int year) {
         // everything is available
 
+        dwellingUtilityCache.setYear(year);
+        calculateZonalUtilityComponents();
         calculateRacialCompositionByZoneAndRegion();
         int[] selRegAvail = new int[numAltsSelReg + 1];
         for (int i = 1; i < selRegAvail.length; i++) selRegAvail[i] = 1;
@@ -390,15 +580,8 @@ public class MovesModel {
     private int calculateRegPrice(int region) {
         // calculate the average price across all dwelling types
 
-        int priceSum = 0;
-        int counter = 0;
-        for (Dwelling d: Dwelling.getDwellingArray()) {
-            int zone = d.getZone();
-            if (geoData.getRegionOfZone(zone) == region) {
-                priceSum += d.getPrice();
-                counter++;
-            }
-        }
+        long priceSum = AggregateRegistry.getPriceSumInRegion(region);
+        int counter = AggregateRegistry.getNumberOfDwellingsInRegion(region);
         return (int) ((priceSum * 1f) / (counter * 1f) + 0.5f);
     }
 
@@ -408,7 +591,7 @@ public class MovesModel {
 
         int selectDwellingSheetNumber = ResourceUtil.getIntegerProperty(rb, PROPERTIES_MOVES_UEC_MODEL_SHEET_DWELLING);
         // initialize UEC
-        UtilityExpressionCalculator selectDwellingModel = new UtilityExpressionCalculator(new File(uecFileName),
+        UtilityExpressionCalculator selectDwellingModel = UtilityExpressionCalculator.newInstance(new File(uecFileName),
                 selectDwellingSheetNumber,
                 dataSheetNumber,
                 SiloUtil.getRbHashMap(),
@@ -432,16 +615,14 @@ public class MovesModel {
     public double[] getRegionUtilities (HouseholdType ht, Race race, int[] workZones) {
         // return utility of regions based on household type and based on work location of workers in household
 
-        int[] regions = geoData.getRegionList();
         double[] util = new double[numAltsSelReg];
         double[] workDistanceFactor = new double[numAltsSelReg];
         for (int i = 0; i < numAltsSelReg; i++) {
             workDistanceFactor[i] = 1;
             if (workZones != null) {  // for inmigrating household, work places are selected after household found a home
-                for (int workZone : workZones) {
-                    int smallestDistInMin = (int) Accessibility.getMinDistanceFromZoneToRegion(workZone, regions[i]);
-                    workDistanceFactor[i] = workDistanceFactor[i] * Accessibility.getWorkTLFD(smallestDistInMin);
-                }
+                for (int workZone : workZones)
+                    workDistanceFactor[i] = workDistanceFactor[i] *
+                            workDistanceFactorByWorkZone[geoData.getZoneIndex(workZone)][i];
             }
         }
         int incomeCat = HouseholdType.convertHouseholdTypeToIncomeCategory(ht);
@@ -548,13 +729,18 @@ public class MovesModel {
         if (SiloUtil.getSum(regionUtilities) == 0) return -1;
         int selectedRegion = SiloUtil.select(regionUtilities);
 
-        // Step 2: select vacant dwelling in selected region
-        int[] vacantDwellings = RealEstateDataManager.getListOfVacantDwellingsInRegion(regions[selectedRegion]);
+        // Step 2: select vacant dwelling in selected region. No household will evaluate more than about 20 dwellings, which
+        // are drawn from the vacant dwellings of this region without looking at the other vacant dwellings
+        int[] vacantDwellings;
+        if (stratifyDwellingSearchByType) {
+            vacantDwellings = RealEstateDataManager.sampleVacantDwellingsInRegionByType(regions[selectedRegion],
+                    MAX_NUMBER_OF_DWELLINGS_EVALUATED, SiloModel.rand);
+        } else {
+            vacantDwellings = RealEstateDataManager.sampleVacantDwellingsInRegion(regions[selectedRegion],
+                    MAX_NUMBER_OF_DWELLINGS_EVALUATED, SiloModel.rand);
+        }
         double[] expProbs = SiloUtil.createArrayWithValue(vacantDwellings.length, 0d);
-        int maxNumberOfDwellings = Math.min(20, vacantDwellings.length);  // No household will evaluate more than 20 dwellings
-        float factor = ((float) maxNumberOfDwellings / (float) vacantDwellings.length);
         for (int i = 0; i < vacantDwellings.length; i++) {
-            if (SiloModel.rand.nextFloat() > factor) continue;
             Dwelling dd = Dwelling.getDwellingFromId(vacantDwellings[i]);
             int msa = geoData.getMSAOfZone(dd.getZone());
             if (dd.getRestriction() > 0 &&    // dwelling is restricted to households with certain income
@@ -601,12 +787,33 @@ public class MovesModel {
     private double calculateUtility (HouseholdType ht, int income, Dwelling dd) {
         // calculate utility for household hh in dwelling dd
 
-        evaluateDwellingDmu.setUtilityDwellingQuality(convertQualityToUtility(dd.getQuality()));
-        evaluateDwellingDmu.setUtilityDwellingSize(convertAreaToUtility(dd.getBedrooms()));
-        evaluateDwellingDmu.setUtilityDwellingAutoAccessibility(convertAccessToUtility(Accessibility.getAutoAccessibility(dd.getZone())));
-        evaluateDwellingDmu.setUtilityDwellingTransitAccessibility(convertAccessToUtility(Accessibility.getTransitAccessibility(dd.getZone())));
-        evaluateDwellingDmu.setUtilityDwellingSchoolQuality(geoData.getZonalSchoolQuality(dd.getZone()));
-        evaluateDwellingDmu.setUtilityDwellingCrimeRate(geoData.getCountyCrimeRate(geoData.getCountyOfZone(dd.getZone())));
+        setDwellingDmu(evaluateDwellingDmu, ht, income, dd);
+        DwellingUtilityCache.Key key = null;
+        if (!logCalculationDwelling) {
+            key = DwellingUtilityCache.createKey(evaluateDwellingDmu);
+            Double cachedUtil = dwellingUtilityCache.get(key);
+            if (cachedUtil != null) return cachedUtil;
+        }
+        double util[] = ddUtilityModel.solve(evaluateDwellingDmu.getDmuIndexValues(), evaluateDwellingDmu, evalDwellingAvail);
+        // log UEC values for each household type
+        if (logCalculationDwelling)
+            ddUtilityModel.logAnswersArray(traceLogger, "Quality of dwelling " + dd.getId());
+        else
+            dwellingUtilityCache.put(key, util[0]);
+        return util[0];
+    }
+
+
+    private void setDwellingDmu (MovesDMU dmu, HouseholdType ht, int income, Dwelling dd) {
+        // set attributes of dwelling dd as evaluated by household type ht with income (-1 for vacant dwellings)
+
+        int zoneIndex = geoData.getZoneIndex(dd.getZone());
+        dmu.setUtilityDwellingQuality(convertQualityToUtility(dd.getQuality()));
+        dmu.setUtilityDwellingSize(convertAreaToUtility(dd.getBedrooms()));
+        dmu.setUtilityDwellingAutoAccessibility(zonalAutoAccessibilityUtility[zoneIndex]);
+        dmu.setUtilityDwellingTransitAccessibility(zonalTransitAccessibilityUtility[zoneIndex]);
+        dmu.setUtilityDwellingSchoolQuality(zonalSchoolQuality[zoneIndex]);
+        dmu.setUtilityDwellingCrimeRate(zonalCrimeRate[zoneIndex]);
 
         int price = dd.getPrice();
         if (provideRentSubsidyToLowIncomeHh && income > 0) {     // income equals -1 if dwelling is vacant right now
@@ -619,13 +826,8 @@ public class MovesModel {
             }
         }
 
-        evaluateDwellingDmu.setUtilityDwellingPrice(convertPriceToUtility(price, ht));
-        evaluateDwellingDmu.setType(ht);
-        double util[] = ddUtilityModel.solve(evaluateDwellingDmu.getDmuIndexValues(), evaluateDwellingDmu, evalDwellingAvail);
-        // log UEC values for each household type
-        if (logCalculationDwelling)
-            ddUtilityModel.logAnswersArray(traceLogger, "Quality of dwelling " + dd.getId());
-        return util[0];
+        dmu.setUtilityDwellingPrice(convertPriceToUtility(price, ht));
+        dmu.setType(ht);
     }
 
 
@@ -2,8 +2,10 @@ package edu.umd.ncsg.transportModel.tripGeneration;
 
 import com.pb.common.datafile.TableDataSet;
 import com.pb.common.util.ResourceUtil;
+import edu.umd.ncsg.SiloModel;
 import edu.umd.ncsg.SiloUtil;
 import edu.umd.ncsg.data.*;
+import edu.umd.ncsg.utils.AliasSampler;
 import org.apache.log4j.Logger;
 
 import java.io.PrintWriter;
@@ -120,8 +122,9 @@ public class TripGeneration {
             TableDataSet hhTypeDef = createHHTypeDefinition(strPurp);
             int[] hhTypeArray = tgData.defineHouseholdTypeOfEachSurveyRecords(selectAutoMode(strPurp), hhTypeDef);
             HashMap<String, Integer[]> tripsByHhTypeAndPurpose = tgData.collectTripFrequencyDistribution(hhTypeArray);
+            HashMap<String, AliasSampler> tripSamplersByHhTypeAndPurpose = new HashMap<>();
             // Generate trips for each household
-            for (Household hh: Household.getHouseholdArray()) {
+            for (Household hh: Household.getHouseholds()) {
                 int region = (int) regionDefinition.getIndexedValueAt(hh.getHomeZone(), "Regions");
                 int incCategory = translateIncomeIntoCategory (hh.getHhIncome());
                 int hhType = tgData.getHhType(selectAutoMode(strPurp), hhTypeDef, hh.getHhSize(), hh.getNumberOfWorkers(),
@@ -132,7 +135,12 @@ public class TripGeneration {
                     logger.error("Could not find trip frequencies for this hhType/Purpose: " + token);
                 }
                 if (SiloUtil.getSum(tripFrequencies) == 0) continue;
-                int numTrips = selectNumberOfTrips(tripFrequencies);
+                AliasSampler tripSampler = tripSamplersByHhTypeAndPurpose.get(token);
+                if (tripSampler == null) {
+                    tripSampler = createTripSampler(tripFrequencies);
+                    tripSamplersByHhTypeAndPurpose.put(token, tripSampler);
+                }
+                int numTrips = tripSampler.select(SiloModel.rand);
                 int mstmIncCat = defineMstmIncomeCategory(hh.getHhIncome());
                 tripProd[hh.getHomeZone()][purp][mstmIncCat] += numTrips;
             }
@@ -174,11 +182,11 @@ public class TripGeneration {
     }
 
 
-    private int selectNumberOfTrips (Integer[] tripFrequencies) {
-        // select number of trips
+    private AliasSampler createTripSampler (Integer[] tripFrequencies) {
+        // create sampler for number of trips, built once per household type and purpose
         double[] probabilities = new double[tripFrequencies.length];
         for (int i = 0; i < tripFrequencies.length; i++) probabilities[i] = (double) tripFrequencies[i];
-        return SiloUtil.select(probabilities);
+        return new AliasSampler(probabilities);
     }
 
 
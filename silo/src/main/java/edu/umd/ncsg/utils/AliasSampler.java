@@ -0,0 +1,81 @@
+package edu.umd.ncsg.utils;
+
+import java.util.Random;
+
+/**
+ * Samples from a static discrete distribution in O(1) per draw with the alias method (Vose's variant of Walker's
+ * method). Building the table takes O(n), therefore this sampler pays off for distributions that are used for many
+ * draws.
+ **/
+
+public class AliasSampler implements DiscreteSampler {
+
+    private final double[] probability;
+    private final int[] alias;
+
+
+    public AliasSampler (double[] weights) {
+        int n = weights.length;
+        if (n == 0) throw new IllegalArgumentException("Cannot sample from empty distribution.");
+        double sum = 0;
+        for (double w: weights) {
+            if (w < 0) throw new IllegalArgumentException("Negative weight " + w + " in distribution.");
+            sum += w;
+        }
+        if (sum <= 0) throw new IllegalArgumentException("Weights of distribution add up to " + sum + ".");
+
+        probability = new double[n];
+        alias = new int[n];
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1) small[smallCount++] = i;
+            else large[largeCount++] = i;
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) small[smallCount++] = more;
+            else large[largeCount++] = more;
+        }
+        // remaining entries are 1 up to rounding errors
+        while (largeCount > 0) {
+            int i = large[--largeCount];
+            probability[i] = 1;
+            alias[i] = i;
+        }
+        while (smallCount > 0) {
+            int i = small[--smallCount];
+            probability[i] = 1;
+            alias[i] = i;
+        }
+    }
+
+
+    public AliasSampler (float[] weights) {
+        this(CdfSampler.toDouble(weights));
+    }
+
+
+    @Override
+    public int select (Random rand) {
+        // one uniform number selects the column (integer part) and decides between item and alias (fractional part)
+        double u = rand.nextDouble() * probability.length;
+        int column = (int) u;
+        if (column >= probability.length) column = probability.length - 1;
+        return (u - column < probability[column]) ? column : alias[column];
+    }
+
+
+    @Override
+    public int size () {
+        return probability.length;
+    }
+}
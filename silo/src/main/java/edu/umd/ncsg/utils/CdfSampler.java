@@ -0,0 +1,62 @@
+package edu.umd.ncsg.utils;
+
+import java.util.Random;
+
+/**
+ * Samples from a discrete distribution by binary search in the cumulative distribution, which takes O(log n) per draw.
+ * For the same random number, select() returns the same item as SiloUtil.select() does for the underlying weights.
+ **/
+
+public class CdfSampler implements DiscreteSampler {
+
+    private final double[] cumulative;
+
+
+    public CdfSampler (double[] weights) {
+        if (weights.length == 0) throw new IllegalArgumentException("Cannot sample from empty distribution.");
+        cumulative = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulative[i] = sum;
+        }
+    }
+
+
+    public CdfSampler (float[] weights) {
+        this(toDouble(weights));
+    }
+
+
+    static double[] toDouble (float[] weights) {
+        double[] values = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) values[i] = weights[i];
+        return values;
+    }
+
+
+    public double getSum () {
+        return cumulative[cumulative.length - 1];
+    }
+
+
+    @Override
+    public int select (Random rand) {
+        // first item with a cumulative weight larger than the drawn position
+        double selPos = getSum() * rand.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] > selPos) high = mid;
+            else low = mid + 1;
+        }
+        return low;
+    }
+
+
+    @Override
+    public int size () {
+        return cumulative.length;
+    }
+}
@@ -0,0 +1,15 @@
+package edu.umd.ncsg.utils;
+
+import java.util.Random;
+
+/**
+ * Sampler for a discrete distribution over the indices 0 to size() - 1. Samplers are built once from a distribution
+ * that does not change (for example once per simulation year) and are then used for many draws.
+ **/
+
+public interface DiscreteSampler {
+
+    int select (Random rand);
+
+    int size ();
+}
@@ -0,0 +1,815 @@
+package com.pb.common.calculator;
+
+import com.pb.common.math.MathUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+
+/**
+ * Tree of specialized nodes compiled from the postfix stack of a parsed
+ * Expression. Evaluating the tree replaces the token dispatch of
+ * Expression.solve1() by direct calls. Operations on constants only are
+ * folded at compile time, and IF() does not evaluate the branch that is
+ * not taken unless that branch uses PUT() or GET(). Operands are evaluated
+ * from right to left, as in the interpreter, and every operation is
+ * calculated the same way, so results are identical.
+ *
+ * Nodes without PUT(), GET() and array lookups can also be evaluated for a
+ * whole batch of decision makers at once. Every node then fills an array
+ * with one value per decision maker in a plain loop, and variables are read
+ * from the columns of the batch. Both branches of IF() are evaluated in a
+ * batch and the result is selected per decision maker. Nodes with PUT(),
+ * GET() or array lookups are evaluated one decision maker after another
+ * when they are part of a batch; isBatchable() is false for them, as the
+ * order of PUT() and GET() would differ from the order of the interpreter.
+ *
+ * Variables of the user (DMU) object are bound to the method handle of
+ * their getter when the expression is compiled, and the getter is called
+ * directly on the user object of the context. Variables are only looked up
+ * in the variable table if the context has no user object.
+ */
+final class CompiledExpression implements Constants {
+
+    private final Expression owner;
+    private final int[] tokenType;
+    private final double[] expStack;
+    private int index;
+
+
+    private CompiledExpression(Expression owner, int[] tokenType, double[] expStack) {
+        this.owner = owner;
+        this.tokenType = tokenType;
+        this.expStack = expStack;
+    }
+
+
+    /**
+     * Compile the postfix stack of a parsed expression, where expIndex is the
+     * position of the last token.
+     */
+    static Node compile(Expression owner, int[] tokenType, double[] expStack, int expIndex) {
+        CompiledExpression compiler = new CompiledExpression(owner, tokenType, expStack);
+        compiler.index = expIndex;
+        return compiler.compileOperation();
+    }
+
+
+    // mirrors Expression.solve1()
+    private Node compileOperation() {
+
+        if (index == 0) {
+            if (tokenType[index] == NUMBER)
+                return new Constant(expStack[index]);
+            if (tokenType[index] == VARIABLE)
+                return createVariable((int) expStack[index]);
+        }
+
+        int op = (int) expStack[index];
+
+        if (op > THREE_ARGS) {
+            if (op == ARRAY_LOOKUP) {
+                Node arrayIndex = compileOperand();
+                int matrix = (int) expStack[--index];
+                return new ArrayLookup(matrix, arrayIndex);
+            }
+            Node n3 = compileOperand();
+            Node n2 = compileOperand();
+            Node n1 = compileOperand();
+            return createThreeArgs(op, n1, n2, n3);
+        }
+        else if (op > TWO_ARGS) {
+            Node n2 = compileOperand();
+            Node n1 = compileOperand();
+            return createTwoArgs(op, n1, n2);
+        }
+        else {
+            Node n1 = compileOperand();
+            return createOneArg(op, n1);
+        }
+    }
+
+
+    // mirrors Expression.get_oprand()
+    private Node compileOperand() {
+
+        if (tokenType[--index] == VARIABLE)
+            return createVariable((int) expStack[index]);
+        else if (tokenType[index] == NUMBER)
+            return new Constant(expStack[index]);
+        else
+            return compileOperation();
+    }
+
+
+    private Node createVariable(int variableIndex) {
+
+        MethodHandle getter = owner.getObjectMethodHandle(variableIndex);
+        if (getter != null)
+            return new ObjectVariable(variableIndex, getter);
+        return new Variable(variableIndex);
+    }
+
+
+    private Node createOneArg(int op, Node n1) {
+
+        if (op == PUT)
+            return new Put(owner, n1);
+        if (op == GET)
+            return new Get(owner, n1);
+        if (op < LN || op > SQRT)
+            throw new RuntimeException("calculate1, function = " + op + " not found ");
+        return fold(new OneArg(op, n1));
+    }
+
+
+    private Node createTwoArgs(int op, Node n1, Node n2) {
+
+        Node node;
+        switch (op) {
+        case ADDITION:
+            node = new Add(n1, n2);
+            break;
+        case SUBTRACTION:
+            node = new Subtract(n1, n2);
+            break;
+        case MULTIPLICATION:
+            node = new Multiply(n1, n2);
+            break;
+        case DIVISION:
+            node = new Divide(n1, n2);
+            break;
+        default:
+            if (op < ADDITION || op > LESS_EQUAL)
+                throw new RuntimeException("calculate2, function = " + op + " not found ");
+            node = new TwoArgs(op, n1, n2);
+        }
+        return fold(node);
+    }
+
+
+    private Node createThreeArgs(int op, Node n1, Node n2, Node n3) {
+
+        if (op != IF)
+            throw new RuntimeException("calculate3, function = " + op + " not found ");
+        if (n2.usesValueStack() || n3.usesValueStack())
+            return fold(new IfAll(n1, n2, n3));
+        return fold(new If(n1, n2, n3));
+    }
+
+
+    /**
+     * Replace node by its value if all its operands are constants.
+     */
+    private static Node fold(Node node) {
+        if (node.isConstant())
+            return new Constant(node.evaluate(null));
+        return node;
+    }
+
+
+    static double calculate1(int op, double d1) {
+
+        switch (op) {
+        case LN:
+            return MathUtil.log(d1);       //natural log
+        case EXP:
+            return Math.pow(Math.E, d1);   //e^x, as in Expression.calculate1()
+        case ABS:
+            return Math.abs(d1);
+        case SIGN:
+            if (d1 < 0)
+                return -1;
+            else if (d1 == 0)
+                return 0;
+            else
+                return 1;
+        case INT:
+            return Math.floor(d1);
+        case SQRT:
+            return Math.sqrt(d1);
+        default:
+            throw new RuntimeException("calculate1, function = " + op + " not found ");
+        }
+    }
+
+
+    static double calculate2(int op, double d1, double d2) {
+
+        switch (op) {
+        case ADDITION:       return d1 + d2;
+        case SUBTRACTION:    return d1 - d2;
+        case MULTIPLICATION: return d1 * d2;
+        case DIVISION:       return d1 / d2;
+        case MODULUS:        return d1 % d2;
+        case GREATER:        return (d1 > d2) ? 1 : 0;
+        case LESS:           return (d1 < d2) ? 1 : 0;
+        case EQUAL:          return (d1 == d2) ? 1 : 0;
+        case NOT_EQUAL:      return (d1 != d2) ? 1 : 0;
+        case POWER:          return Math.pow(d1, d2);
+        case MAX:            return Math.max(d1, d2);
+        case MIN:            return Math.min(d1, d2);
+        case GREATER_EQUAL:  return (d1 >= d2) ? 1 : 0;
+        case LESS_EQUAL:     return (d1 <= d2) ? 1 : 0;
+        default:
+            throw new RuntimeException("calculate2, function = " + op + " not found ");
+        }
+    }
+
+
+    //------------------------ Context ------------------------
+
+    /**
+     * Source of variable values and target of assignments and PUT() while a
+     * tree is evaluated. Every thread that evaluates the same tree at the same
+     * time needs its own context.
+     */
+    abstract static class Context {
+
+        abstract double getValueForIndex(int variableIndex);
+
+        abstract double getValueForIndex(int variableIndex, int arrayIndex);
+
+        abstract void setValue(int variableIndex, double value);
+
+        abstract double putValue(Expression owner, double value);
+
+        abstract double getValue(Expression owner, double index);
+
+        /**
+         * User object whose getters are called by ObjectVariable, or null if
+         * variables of the user object are read by getValueForIndex().
+         */
+        Object getDmuObject() {
+            return null;
+        }
+
+        /**
+         * Alternative number passed to getters of the user object.
+         */
+        int getAlternative() {
+            return 0;
+        }
+    }
+
+
+    //------------------------ Batch ------------------------
+
+    /**
+     * Values of a batch of decision makers. columnByVariable holds one column
+     * per variable index of the variable table, or null for variables that
+     * are the same for all decision makers of the batch and are read from
+     * context.
+     */
+    static final class Batch {
+        final Context context;
+        final double[][] columnByVariable;
+        final int size;
+        private double[][] buffers = new double[8][];
+        private BatchRow row;
+
+        Batch(Context context, double[][] columnByVariable, int size) {
+            this.context = context;
+            this.columnByVariable = columnByVariable;
+            this.size = size;
+        }
+
+        /**
+         * Buffer for intermediate results at the given depth of the tree.
+         */
+        double[] buffer(int depth) {
+            if (depth >= buffers.length)
+                buffers = Arrays.copyOf(buffers, depth + 8);
+            if (buffers[depth] == null)
+                buffers[depth] = new double[size];
+            return buffers[depth];
+        }
+
+        /**
+         * Context that reads the variables of a single decision maker of
+         * this batch.
+         */
+        BatchRow row() {
+            if (row == null)
+                row = new BatchRow(this);
+            return row;
+        }
+    }
+
+
+    /**
+     * Context of the decision maker at position index of a batch. Variables
+     * with a column are read from and assigned to the column, everything else
+     * is passed on to the context of the batch.
+     */
+    static final class BatchRow extends Context {
+        private final Batch batch;
+        int index;
+
+        BatchRow(Batch batch) {
+            this.batch = batch;
+        }
+
+        double getValueForIndex(int variableIndex) {
+            double[] column = batch.columnByVariable[variableIndex];
+            if (column != null)
+                return column[index];
+            return batch.context.getValueForIndex(variableIndex);
+        }
+
+        double getValueForIndex(int variableIndex, int arrayIndex) {
+            return batch.context.getValueForIndex(variableIndex, arrayIndex);
+        }
+
+        void setValue(int variableIndex, double value) {
+            double[] column = batch.columnByVariable[variableIndex];
+            if (column != null)
+                column[index] = value;
+            else
+                batch.context.setValue(variableIndex, value);
+        }
+
+        double putValue(Expression owner, double value) {
+            return batch.context.putValue(owner, value);
+        }
+
+        double getValue(Expression owner, double index) {
+            return batch.context.getValue(owner, index);
+        }
+    }
+
+
+    //------------------------ Nodes ------------------------
+
+    abstract static class Node {
+
+        abstract double evaluate(Context c);
+
+        /**
+         * Evaluate the node for all decision makers of batch and write the
+         * results into out. Buffers of batch from depth on may be used for
+         * intermediate results.
+         */
+        abstract void evaluate(Batch batch, double[] out, int depth);
+
+        /**
+         * Evaluate the node for one decision maker of batch after another.
+         */
+        final void evaluateByRow(Batch batch, double[] out) {
+            BatchRow row = batch.row();
+            for (int i = 0; i < batch.size; i++) {
+                row.index = i;
+                out[i] = evaluate(row);
+            }
+        }
+
+        boolean isBatchable() {
+            return true;
+        }
+
+        boolean isConstant() {
+            return false;
+        }
+
+        /**
+         * True if the node or one of its operands calls PUT() or GET(), which
+         * depend on the order of evaluation.
+         */
+        boolean usesValueStack() {
+            return false;
+        }
+    }
+
+
+    static final class Constant extends Node {
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        double evaluate(Context c) {
+            return value;
+        }
+
+        void evaluate(Batch batch, double[] out, int depth) {
+            Arrays.fill(out, 0, batch.size, value);
+        }
+
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+
+    static final class Variable extends Node {
+        private final int variableIndex;
+
+        Variable(int variableIndex) {
+            this.variableIndex = variableIndex;
+        }
+
+        double evaluate(Context c) {
+            return c.getValueForIndex(variableIndex);
+        }
+
+        void evaluate(Batch batch, double[] out, int depth) {
+            double[] column = batch.columnByVariable[variableIndex];
+            if (column != null)
+                System.arraycopy(column, 0, out, 0, batch.size);
+            else
+                Arrays.fill(out, 0, batch.size, batch.context.getValueForIndex(variableIndex));
+        }
+    }
+
+
+    /**
+     * Variable of the user object, read by calling the bound getter on the
+     * user object of the context. In a batch the variable is read from its
+     * column like any other variable.
+     */
+    static final class ObjectVariable extends Node {
+        private final int variableIndex;
+        private final MethodHandle getter;
+
+        ObjectVariable(int variableIndex, MethodHandle getter) {
+            this.variableIndex = variableIndex;
+            this.getter = getter;
+        }
+
+        double evaluate(Context c) {
+            Object dmuObject = c.getDmuObject();
+            if (dmuObject == null)
+                return c.getValueForIndex(variableIndex);
+            try {
+                return (double) getter.invokeExact(dmuObject, c.getAlternative());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException("Exception in user class, variable index " + variableIndex, t);
+            }
+        }
+
+        void evaluate(Batch batch, double[] out, int depth) {
+            double[] column = batch.columnByVariable[variableIndex];
+            if (column != null)
+                System.arraycopy(column, 0, out, 0, batch.size);
+            else
+                Arrays.fill(out, 0, batch.size, batch.context.getValueForIndex(variableIndex));
+        }
+    }
+
+
+    static final class ArrayLookup extends Node {
+        private final int matrix;
+        private final Node arrayIndex;
+
+        ArrayLookup(int matrix, Node arrayIndex) {
+            this.matrix = matrix;
+            this.arrayIndex = arrayIndex;
+        }
+
+        double evaluate(Context c) {
+            return c.getValueForIndex(matrix, (int) arrayIndex.evaluate(c));
+        }
+
+        void evaluate(Batch batch, double[] out, int depth) {
+            evaluateByRow(batch, out);
+        }
+
+        boolean isBatchable() {
+            return false;
+        }
+
+        boolean usesValueStack() {
+            return arrayIndex.usesValueStack();
+        }
+    }
+
+
+    static final class Put extends Node {
+        private final Expression owner;
+        private final Node n1;
+
+        Put(Expression owner, Node n1) {
+            this.owner = owner;
+            this.n1 = n1;
+        }
+
+        double evaluate(Context c) {
+            return c.putValue(owner, n1.evaluate(c));
+        }
+
+        void evaluate(Batch batch, double[] out, int depth) {
+            evaluateByRow(batch, out);
+        }
+
+        boolean isBatchable() {
+            return false;
+        }
+
+        boolean usesValueStack() {
+            return true;
+        }
+    }
+
+
+    static final class Get extends Node {
+        private final Expression owner;
+        private final Node n1;
+
+        Get(Expression owner, Node n1) {
+            this.owner = owner;
+            this.n1 = n1;
+        }
+
+        double evaluate(Context c) {
+            return c.getValue(owner, n1.evaluate(c));
+        }
+
+        void evaluate(Batch batch, double[] out, int depth) {
+            evaluateByRow(batch, out);
+        }
+
+        boolean isBatchable() {
+            return false;
+        }
+
+        boolean usesValueStack() {
+            return true;
+        }
+    }
+
+
+    static final class OneArg extends Node {
+        private final int op;
+        private final Node n1;
+
+        OneArg(int op, Node n1) {
+            this.op = op;
+            this.n1 = n1;
+        }
+
+        double evaluate(Context c) {
+            return calculate1(op, n1.evaluate(c));
+        }
+
+        void evaluate(Batch batch, double[] out, int depth) {
+            n1.evaluate(batch, out, depth);
+            int n = batch.size;
+            switch (op) {
+            case ABS:
+                for (int i = 0; i < n; i++)
+                    out[i] = Math.abs(out[i]);
+                break;
+            case INT:
+                for (int i = 0; i < n; i++)
+                    out[i] = Math.floor(out[i]);
+                break;
+            case SQRT:
+                for (int i = 0; i < n; i++)
+                    out[i] = Math.sqrt(out[i]);
+                break;
+            default:
+                for (int i = 0; i < n; i++)
+                    out[i] = calculate1(op, out[i]);
+            }
+        }
+
+        boolean isConstant() {
+            return n1.isConstant();
+        }
+
+        boolean isBatchable() {
+            return n1.isBatchable();
+        }
+
+        boolean usesValueStack() {
+            return n1.usesValueStack();
+        }
+    }
+
+
+    abstract static class Binary extends Node {
+        final Node n1;
+        final Node n2;
+
+        Binary(Node n1, Node n2) {
+            this.n1 = n1;
+            this.n2 = n2;
+        }
+
+        /**
+         * Combine the values of both operands into d1.
+         */
+        abstract void combine(double[] d1, double[] d2, int n);
+
+        void evaluate(Batch batch, double[] out, int depth) {
+            double[] d2 = batch.buffer(depth);
+            n2.evaluate(batch, d2, depth + 1);
+            n1.evaluate(batch, out, depth + 1);
+            combine(out, d2, batch.size);
+        }
+
+        boolean isConstant() {
+            return n1.isConstant() && n2.isConstant();
+        }
+
+        boolean usesValueStack() {
+            return n1.usesValueStack() || n2.usesValueStack();
+        }
+
+        boolean isBatchable() {
+            return n1.isBatchable() && n2.isBatchable();
+        }
+    }
+
+
+    static final class Add extends Binary {
+        Add(Node n1, Node n2) {
+            super(n1, n2);
+        }
+
+        double evaluate(Context c) {
+            double d2 = n2.evaluate(c);
+            return n1.evaluate(c) + d2;
+        }
+
+        void combine(double[] d1, double[] d2, int n) {
+            for (int i = 0; i < n; i++)
+                d1[i] = d1[i] + d2[i];
+        }
+    }
+
+
+    static final class Subtract extends Binary {
+        Subtract(Node n1, Node n2) {
+            super(n1, n2);
+        }
+
+        double evaluate(Context c) {
+            double d2 = n2.evaluate(c);
+            return n1.evaluate(c) - d2;
+        }
+
+        void combine(double[] d1, double[] d2, int n) {
+            for (int i = 0; i < n; i++)
+                d1[i] = d1[i] - d2[i];
+        }
+    }
+
+
+    static final class Multiply extends Binary {
+        Multiply(Node n1, Node n2) {
+            super(n1, n2);
+        }
+
+        double evaluate(Context c) {
+            double d2 = n2.evaluate(c);
+            return n1.evaluate(c) * d2;
+        }
+
+        void combine(double[] d1, double[] d2, int n) {
+            for (int i = 0; i < n; i++)
+                d1[i] = d1[i] * d2[i];
+        }
+    }
+
+
+    static final class Divide extends Binary {
+        Divide(Node n1, Node n2) {
+            super(n1, n2);
+        }
+
+        double evaluate(Context c) {
+            double d2 = n2.evaluate(c);
+            return n1.evaluate(c) / d2;
+        }
+
+        void combine(double[] d1, double[] d2, int n) {
+            for (int i = 0; i < n; i++)
+                d1[i] = d1[i] / d2[i];
+        }
+    }
+
+
+    static final class TwoArgs extends Binary {
+        private final int op;
+
+        TwoArgs(int op, Node n1, Node n2) {
+            super(n1, n2);
+            this.op = op;
+        }
+
+        double evaluate(Context c) {
+            double d2 = n2.evaluate(c);
+            return calculate2(op, n1.evaluate(c), d2);
+        }
+
+        void combine(double[] d1, double[] d2, int n) {
+            switch (op) {
+            case MAX:
+                for (int i = 0; i < n; i++)
+                    d1[i] = Math.max(d1[i], d2[i]);
+                break;
+            case MIN:
+                for (int i = 0; i < n; i++)
+                    d1[i] = Math.min(d1[i], d2[i]);
+                break;
+            case GREATER:
+                for (int i = 0; i < n; i++)
+                    d1[i] = (d1[i] > d2[i]) ? 1 : 0;
+                break;
+            case LESS:
+                for (int i = 0; i < n; i++)
+                    d1[i] = (d1[i] < d2[i]) ? 1 : 0;
+                break;
+            case EQUAL:
+                for (int i = 0; i < n; i++)
+                    d1[i] = (d1[i] == d2[i]) ? 1 : 0;
+                break;
+            default:
+                for (int i = 0; i < n; i++)
+                    d1[i] = calculate2(op, d1[i], d2[i]);
+            }
+        }
+    }
+
+
+    static final class If extends Node {
+        private final Node n1;
+        private final Node n2;
+        private final Node n3;
+
+        If(Node n1, Node n2, Node n3) {
+            this.n1 = n1;
+            this.n2 = n2;
+            this.n3 = n3;
+        }
+
+        double evaluate(Context c) {
+            return (n1.evaluate(c) > 0) ? n2.evaluate(c) : n3.evaluate(c);
+        }
+
+        void evaluate(Batch batch, double[] out, int depth) {
+            double[] condition = batch.buffer(depth);
+            double[] d2 = batch.buffer(depth + 1);
+            n3.evaluate(batch, out, depth + 2);
+            n2.evaluate(batch, d2, depth + 2);
+            n1.evaluate(batch, condition, depth + 2);
+            int n = batch.size;
+            for (int i = 0; i < n; i++) {
+                if (condition[i] > 0)
+                    out[i] = d2[i];
+            }
+        }
+
+        boolean isConstant() {
+            return n1.isConstant() && n2.isConstant() && n3.isConstant();
+        }
+
+        boolean isBatchable() {
+            return n1.isBatchable() && n2.isBatchable() && n3.isBatchable();
+        }
+
+        boolean usesValueStack() {
+            return n1.usesValueStack();
+        }
+    }
+
+
+    /**
+     * IF() with PUT() or GET() in a branch evaluates all operands from right
+     * to left, as the interpreter does.
+     */
+    static final class IfAll extends Node {
+        private final Node n1;
+        private final Node n2;
+        private final Node n3;
+
+        IfAll(Node n1, Node n2, Node n3) {
+            this.n1 = n1;
+            this.n2 = n2;
+            this.n3 = n3;
+        }
+
+        double evaluate(Context c) {
+            double d3 = n3.evaluate(c);
+            double d2 = n2.evaluate(c);
+            return (n1.evaluate(c) > 0) ? d2 : d3;
+        }
+
+        void evaluate(Batch batch, double[] out, int depth) {
+            evaluateByRow(batch, out);
+        }
+
+        boolean usesValueStack() {
+            return true;
+        }
+
+        boolean isBatchable() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.pb.common.calculator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Stores parsed UtilityExpressionCalculator objects in cache files, so that
+ * later model runs skip reading the Excel control file and parsing the
+ * expressions. A cache file is named after the workbook and a key, which is
+ * the SHA-256 hash of the workbook content, the model and data sheet, the
+ * environment used to resolve file names in the data sheet, the name of the
+ * user class and FORMAT_VERSION. Any change of these creates a new cache file.
+ *
+ * The cache is off unless a directory is set with setDirectory() or the
+ * system property uec.cache.directory. It is used by
+ * UtilityExpressionCalculator.newInstance().
+ */
+public final class CompiledModelCache {
+
+    private static Logger logger = Logger.getLogger(CompiledModelCache.class);
+
+    /** Increase whenever the serialized form of the UEC or its parts changes. */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC_NUMBER = 0x55454343;   // "UECC"
+
+    private static volatile File directory = initialDirectory();
+
+
+    private CompiledModelCache() {
+    }
+
+
+    private static File initialDirectory() {
+        String dir = System.getProperty("uec.cache.directory");
+        return (dir == null || dir.trim().length() == 0) ? null : new File(dir.trim());
+    }
+
+
+    /**
+     * Set the directory of the cache files. The directory is created if it
+     * does not exist. Pass null to switch the cache off.
+     */
+    public static void setDirectory(File dir) {
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+            throw new RuntimeException("Could not create UEC cache directory " + dir.getAbsolutePath());
+        directory = dir;
+    }
+
+
+    public static File getDirectory() {
+        return directory;
+    }
+
+
+    /**
+     * Return the cache file of a control file, or null if the cache is off.
+     */
+    static File getCacheFile(File file, String key) {
+        File dir = directory;
+        if (dir == null)
+            return null;
+        return new File(dir, file.getName() + "_" + key.substring(0, 16) + ".uec");
+    }
+
+
+    static String computeKey(File file, int modelSheet, int dataSheet,
+            HashMap<String, String> env, Class<?> userClass) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        digest.update(Files.readAllBytes(file.toPath()));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("version=").append(FORMAT_VERSION);
+        sb.append(";modelSheet=").append(modelSheet);
+        sb.append(";dataSheet=").append(dataSheet);
+        sb.append(";userClass=").append(userClass == null ? "" : userClass.getName());
+        if (env != null) {
+            for (Map.Entry<String, String> e : new TreeMap<String, String>(env).entrySet())
+                sb.append(';').append(e.getKey()).append('=').append(e.getValue());
+        }
+        digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest())
+            key.append(String.format("%02x", b));
+        return key.toString();
+    }
+
+
+    /**
+     * Read a UEC from a cache file. Returns null if the file does not exist,
+     * was written for another key or format version, or cannot be read.
+     */
+    static UtilityExpressionCalculator read(File cacheFile, String key) {
+        if (!cacheFile.exists())
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC_NUMBER || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(key)) {
+                logger.info("Ignoring outdated UEC cache file " + cacheFile.getName());
+                return null;
+            }
+            ObjectInputStream ois = new CacheInputStream(new GZIPInputStream(in));
+            return (UtilityExpressionCalculator) ois.readObject();
+        }
+        catch (Exception e) {
+            logger.warn("Could not read UEC cache file " + cacheFile.getName() + ": " + e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Write a UEC into a cache file. The file is written under a temporary
+     * name first, so that other runs never see an incomplete file. Failures
+     * are logged but do not stop the model.
+     */
+    static void write(File cacheFile, String key, UtilityExpressionCalculator uec) {
+        File tempFile = new File(cacheFile.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC_NUMBER);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(key);
+                GZIPOutputStream gzip = new GZIPOutputStream(out);
+                ObjectOutputStream oos = new CacheOutputStream(gzip);
+                oos.writeObject(uec);
+                oos.flush();
+                gzip.finish();
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            logger.warn("Could not write UEC cache file " + cacheFile.getName() + ": " + e);
+            tempFile.delete();
+        }
+    }
+
+
+    /**
+     * Placeholders for the data managers. Their data is read again from the
+     * data sheet entries when a cached UEC is restored and must not end up in
+     * the cache file.
+     */
+    private enum SharedData { MATRIX_DATA, TABLE_DATA }
+
+
+    private static final class CacheOutputStream extends ObjectOutputStream {
+
+        CacheOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj == MatrixDataManager.getInstance())
+                return SharedData.MATRIX_DATA;
+            if (obj == TableDataSetManager.getInstance())
+                return SharedData.TABLE_DATA;
+            return obj;
+        }
+    }
+
+
+    private static final class CacheInputStream extends ObjectInputStream {
+
+        CacheInputStream(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj == SharedData.MATRIX_DATA)
+                return MatrixDataManager.getInstance();
+            if (obj == SharedData.TABLE_DATA)
+                return TableDataSetManager.getInstance();
+            return obj;
+        }
+    }
+}
@@ -25,6 +25,8 @@ import jxl.WorkbookSettings;
 import org.apache.log4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -134,6 +136,16 @@ public class ControlFileReader implements Serializable {
     }
 
 
+    /**
+     * The logger and the workbook are not serialized. The workbook is only
+     * needed while the control file is read.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        logger = Logger.getLogger(ControlFileReader.class);
+    }
+
+
     private void printEnvironmentVariables() {
 
         if (env == null)
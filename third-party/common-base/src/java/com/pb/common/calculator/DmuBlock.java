@@ -0,0 +1,89 @@
+package com.pb.common.calculator;
+
+import java.util.Arrays;
+
+/**
+ * Holds the DMU variables of many decision makers as one column per variable
+ * (struct of arrays). A block replaces the user object in
+ * UtilityExpressionCalculator.solveBatch(). Variable names are the names used
+ * in the control file without the leading @, e.g. "hhSize" for @hhSize, and
+ * are matched ignoring case.
+ */
+public class DmuBlock {
+
+    private String[] variableNames;
+    private double[][] values;   //[variable][row]
+    private int size;
+
+
+    public DmuBlock(String[] variableNames, int capacity) {
+        this.variableNames = variableNames.clone();
+        this.values = new double[variableNames.length][capacity];
+        this.size = 0;
+    }
+
+
+    public String[] getVariableNames() {
+        return variableNames.clone();
+    }
+
+
+    public int getNumberOfVariables() {
+        return variableNames.length;
+    }
+
+
+    /**
+     * Return the column of variableName, or -1 if the block does not hold it.
+     */
+    public int getVariableIndex(String variableName) {
+        for (int i = 0; i < variableNames.length; i++) {
+            if (variableNames[i].equalsIgnoreCase(variableName))
+                return i;
+        }
+        return -1;
+    }
+
+
+    public int getCapacity() {
+        return values.length == 0 ? 0 : values[0].length;
+    }
+
+
+    /**
+     * Set the number of decision makers in the block. Columns grow if size
+     * exceeds the capacity, values of rows beyond the old size are kept.
+     */
+    public void setSize(int size) {
+        if (size > getCapacity()) {
+            int capacity = Math.max(size, getCapacity() + (getCapacity() >> 1));
+            for (int v = 0; v < values.length; v++)
+                values[v] = Arrays.copyOf(values[v], capacity);
+        }
+        this.size = size;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public void setValue(int variable, int row, double value) {
+        values[variable][row] = value;
+    }
+
+
+    public double getValue(int variable, int row) {
+        return values[variable][row];
+    }
+
+
+    /**
+     * Return the column of a variable, which is shared with the block. Only
+     * the first size() values are used.
+     */
+    public double[] getColumn(int variable) {
+        return values[variable];
+    }
+}
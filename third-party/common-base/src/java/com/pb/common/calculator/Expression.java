@@ -16,7 +16,10 @@
  */
 package com.pb.common.calculator;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
 import java.util.HashMap;
 
 import org.apache.log4j.Logger;
@@ -65,6 +68,12 @@ public class Expression implements Constants, Serializable {
     private boolean error = false;
     private static final int PARENTHESIS = 1;
 
+    //tree of nodes compiled from the postfix stack, evaluated instead of solve1()
+    private boolean parsed = false;
+    private transient boolean interpretOnly = false;
+    private transient CompiledExpression.Node compiledExpression;
+    private transient CompiledExpression.Context context;
+
     String[] errors = {"Syntax error",
             "Unbalanced Parenthesis",
     "No Expression Present"};
@@ -116,12 +125,26 @@ public class Expression implements Constants, Serializable {
         expStack = new double[1000];
         valueStack = new double[20];
         sp = 1;
+        parsed = false;
+        interpretOnly = false;
+        compiledExpression = null;
     }
 
     public String getExpression() {
         return prog;
     }
 
+    /**
+     * Loggers are not serialized, get them again when an expression is read
+     * from a stream, e.g. from the compiled-model cache.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        logger = Logger.getLogger("com.pb.common.calculator");
+        debugLogger = Logger.getLogger("debug");
+        traceLogger = Logger.getLogger("trace");
+    }
+
     public HashMap<Integer, String> getVariableMap() {
         return variableMap;
     }
@@ -301,6 +324,26 @@ public class Expression implements Constants, Serializable {
 
         logVariableTable();
         logStackContents();
+
+        parsed = true;
+        compile();
+    }
+
+    /**
+     * Compile the postfix stack into a tree of nodes. If an operation cannot
+     * be compiled, the expression is solved by the interpreter.
+     */
+    private void compile() {
+        if (error || !parsed || interpretOnly)
+            return;
+        try {
+            compiledExpression = CompiledExpression.compile(this, tokenType, expStack, expindex);
+        }
+        catch (RuntimeException e) {
+            logger.warn("could not compile expression " + prog + ", using interpreter: " + e.getMessage());
+            compiledExpression = null;
+            interpretOnly = true;
+        }
     }
 
     //Maps two character operators to one character
@@ -437,8 +480,15 @@ public class Expression implements Constants, Serializable {
     public double solve() {
 
         if (!error) {
-            tindex = expindex;
-            answer = solve1();
+            if (isCompiled()) {
+                if (context == null)
+                    context = new ExpressionContext();
+                answer = compiledExpression.evaluate(context);
+            }
+            else {
+                tindex = expindex;
+                answer = solve1();
+            }
             if (result_index >= 0) {
                 vtable.setValue(result_index, answer);
             }
@@ -450,6 +500,58 @@ public class Expression implements Constants, Serializable {
         return answer;
     }
 
+    /**
+     * True if the expression has been compiled into a tree of nodes.
+     */
+    boolean isCompiled() {
+        if (error)
+            return false;
+        //compiled tree is not serialized, compile again after deserialization
+        if (compiledExpression == null && parsed && !interpretOnly)
+            compile();
+        return compiledExpression != null;
+    }
+
+    /**
+     * Solve the compiled expression with the variables of context. Results of
+     * assignments and PUT() are stored in context, not in this expression, so
+     * several threads can solve the same expression with their own context.
+     */
+    double solve(CompiledExpression.Context context) {
+        if (!isCompiled()) {
+            throw new RuntimeException("cannot solve expression with a workspace, " + prog);
+        }
+        double value = compiledExpression.evaluate(context);
+        if (result_index >= 0) {
+            context.setValue(result_index, value);
+        }
+        return value;
+    }
+
+    /**
+     * True if the expression can be solved for a batch of decision makers,
+     * i.e. it is compiled and uses neither PUT(), GET() nor array lookups.
+     */
+    boolean isBatchable() {
+        return isCompiled() && compiledExpression.isBatchable();
+    }
+
+    /**
+     * Index of the variable that the result is assigned to, or -1.
+     */
+    int getResultIndex() {
+        return result_index;
+    }
+
+    /**
+     * Solve the expression for all decision makers of batch and write one
+     * answer per decision maker into answers. Assignments are left to the
+     * caller, see getResultIndex().
+     */
+    void solveBatch(CompiledExpression.Batch batch, double[] answers) {
+        compiledExpression.evaluate(batch, answers, 0);
+    }
+
     public double solveWithDebug() {
 
         if ( logDebug ) {
@@ -932,6 +1034,55 @@ public class Expression implements Constants, Serializable {
         return result;
     }
 
+    /** put() function, called by compiled expressions
+     */
+    final double putValue(double d1) {
+        valueStack[sp] = d1;
+        sp++;
+        return d1;
+    }
+
+    /** get() function, called by compiled expressions
+     */
+    final double getValue(double d1) {
+        return valueStack[(int)d1];
+    }
+
+    /** Return the bound getter of a variable of the user object, or null if
+     *  the variable is not read from a user object.
+     */
+    final MethodHandle getObjectMethodHandle(int variableIndex) {
+        if (vtable instanceof UtilityExpressionCalculator)
+            return ((UtilityExpressionCalculator) vtable).getObjectMethodHandle(variableIndex);
+        return null;
+    }
+
+    /** Context of compiled expressions solved by solve(), which reads the
+     *  variable table and the value stack of this expression.
+     */
+    private final class ExpressionContext extends CompiledExpression.Context {
+
+        double getValueForIndex(int variableIndex) {
+            return vtable.getValueForIndex(variableIndex);
+        }
+
+        double getValueForIndex(int variableIndex, int arrayIndex) {
+            return vtable.getValueForIndex(variableIndex, arrayIndex);
+        }
+
+        void setValue(int variableIndex, double value) {
+            vtable.setValue(variableIndex, value);
+        }
+
+        double putValue(Expression owner, double value) {
+            return owner.putValue(value);
+        }
+
+        double getValue(Expression owner, double index) {
+            return owner.getValue(index);
+        }
+    }
+
     /** Return the value of a variable.
      */
     protected final double find_varValue(double i) {
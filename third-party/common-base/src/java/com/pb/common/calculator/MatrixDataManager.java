@@ -24,6 +24,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.log4j.Logger;
 
@@ -51,38 +52,40 @@ public class MatrixDataManager implements Serializable {
     private MatrixDataServerIf mDataServer;
     private static MatrixDataManager instance = new MatrixDataManager();
 
+    //Matrices are added under the lock of this object and published by replacing
+    //the volatile arrays and updating concurrent maps. Lookups and values are read
+    //without locking, so that UECs can be solved concurrently.
+
     //Holds references to each matrix object (excluding matrices in a matrix collection)
-    private Matrix[] mValues = new Matrix[0];
+    private volatile Matrix[] mValues = new Matrix[0];
 
     //Holds list of matrix entries read into memory
     private ArrayList<DataEntry> mEntryList = new ArrayList<DataEntry>();
 
     //Holds references to each matrix collection
-    private MatrixCollection[] mGroupValues = new MatrixCollection[0];
+    private volatile MatrixCollection[] mGroupValues = new MatrixCollection[0];
 
     //Maps a matrix name to a matrix collection index value. Built when matrices
     //are read but accessed at parse time
-    private HashMap<String, Integer> mMatrixNameToCollectionIndex = new HashMap<String, Integer>(
-            100);
-//    private volatile Map<String, Integer> mMatrixNameToCollectionIndex = new ConcurrentHashMap<String, Integer>(100);
+    private Map<String, Integer> mMatrixNameToCollectionIndex = new ConcurrentHashMap<String, Integer>(100);
 
     //Holds a matrix name. The position in the array is used as a reverse lookup to get
     //the name at solve time.
-    private ArrayList<String> mMatrixNames = new ArrayList<String>(100); 
+    private CopyOnWriteArrayList<String> mMatrixNames = new CopyOnWriteArrayList<String>();
 
     // ----- Subscripted matrix array handling e.g. IVT[TIMEPERIOD] :
     // Allows matrix references with an array-like syntax, while enabling fast lookups
     // instead of string concatenation during model application.
 
     // Holds mapping of matrix-array name to index value
-    private HashMap<String, Integer> mArrayNameLookup = new HashMap<String, Integer>();
+    private Map<String, Integer> mArrayNameLookup = new ConcurrentHashMap<String, Integer>();
     // Holds reverse mapping of matrix-array index value to another map of array-subscript:index-value.
-    private HashMap<Integer, HashMap<Integer, Integer>> mArrayMappingToIndex = new HashMap<Integer, HashMap<Integer, Integer>>();
+    private Map<Integer, Map<Integer, Integer>> mArrayMappingToIndex = new ConcurrentHashMap<Integer, Map<Integer, Integer>>();
 
     // Holds mapping of matrix-collection-array name to index value
-    private HashMap<String, Integer> mArrayGroupNameLookup = new HashMap<String, Integer>();
+    private Map<String, Integer> mArrayGroupNameLookup = new ConcurrentHashMap<String, Integer>();
     // Holds reverse mapping of matrix-collection-array index value to another map of array-subscript:index-value.
-    private HashMap<Integer, HashMap<Integer, String>> mArrayGroupToIndex = new HashMap<Integer, HashMap<Integer, String>>();
+    private Map<Integer, Map<Integer, String>> mArrayGroupToIndex = new ConcurrentHashMap<Integer, Map<Integer, String>>();
 
     private MatrixDataManager() {
     }
@@ -296,7 +299,7 @@ public class MatrixDataManager implements Serializable {
         }
 
         // find or create lookup table for this matrix name
-        HashMap<Integer, Integer> lookups = null;
+        Map<Integer, Integer> lookups = null;
 
         if (mArrayNameLookup.containsKey(matrixName)) {
             lookups = mArrayMappingToIndex.get(mArrayNameLookup.get(matrixName));
@@ -304,7 +307,7 @@ public class MatrixDataManager implements Serializable {
 
         if (lookups == null) {
             // create new hashtable for this matrix/collection name
-            lookups = new HashMap<Integer, Integer>();
+            lookups = new ConcurrentHashMap<Integer, Integer>();
             int index = mArrayMappingToIndex.size();
 
             mArrayMappingToIndex.put(index, lookups);
@@ -354,7 +357,7 @@ public class MatrixDataManager implements Serializable {
         }
 
         // find or create lookup table for this matrix name
-        HashMap<Integer, Integer> arraySubscriptLookups = null;
+        Map<Integer, Integer> arraySubscriptLookups = null;
 
         if (mArrayGroupNameLookup.containsKey(matrixName)) {
             arraySubscriptLookups = mArrayMappingToIndex.get(mArrayGroupNameLookup.get(matrixName));
@@ -362,7 +365,7 @@ public class MatrixDataManager implements Serializable {
 
         if (arraySubscriptLookups == null) {
             // create new hashtable for this matrix/collection name
-            arraySubscriptLookups = new HashMap<Integer, Integer>();
+            arraySubscriptLookups = new ConcurrentHashMap<Integer, Integer>();
             int index = mArrayMappingToIndex.size();
 
             mArrayMappingToIndex.put(index, arraySubscriptLookups);
@@ -381,11 +384,11 @@ public class MatrixDataManager implements Serializable {
 
         // Add reverse-lookup to get matrix name from group and index
         int idx = mArrayGroupNameLookup.get(matrixName);
-        HashMap<Integer, String> reverseTable = null;
+        Map<Integer, String> reverseTable = null;
         if (mArrayGroupToIndex.containsKey(idx)) {
             reverseTable = mArrayGroupToIndex.get(idx);
         } else {
-            reverseTable = new HashMap<Integer, String>();
+            reverseTable = new ConcurrentHashMap<Integer, String>();
             mArrayGroupToIndex.put(idx, reverseTable);
         }
         reverseTable.put(subscript, entry.name);
@@ -686,7 +689,7 @@ public class MatrixDataManager implements Serializable {
      *            Matrix name
      * @return index, or -1 if not found
      */
-    synchronized public int findMatrixIndex(String variableName) {
+    public int findMatrixIndex(String variableName) {
         int index = -1;
 
         for (int i = 0; i < mValues.length; i++) {
@@ -704,7 +707,7 @@ public class MatrixDataManager implements Serializable {
     /**
      * Returns an index value for a matrix collection that contains a specified matrix.
      */
-    synchronized public int findMatrixCollectionIndex(String variableName) {
+    public int findMatrixCollectionIndex(String variableName) {
         int collectionIndex = -1;
 
         Integer mcIndex = mMatrixNameToCollectionIndex.get(variableName);
@@ -716,7 +719,7 @@ public class MatrixDataManager implements Serializable {
         return collectionIndex;
     }
 
-    synchronized public int findArrayMatrixIndex(String variableName) {
+    public int findArrayMatrixIndex(String variableName) {
 
         if (this.mArrayNameLookup.containsKey(variableName)) {
             return mArrayNameLookup.get(variableName);
@@ -725,7 +728,7 @@ public class MatrixDataManager implements Serializable {
         return -1;
     }
 
-    synchronized public int findArrayMatrixCollectionIndex(String variableName) {
+    public int findArrayMatrixCollectionIndex(String variableName) {
 
         if (mArrayGroupNameLookup.containsKey(variableName)) {
             return mArrayGroupNameLookup.get(variableName);
@@ -737,7 +740,7 @@ public class MatrixDataManager implements Serializable {
     /**
      * Returns an index value for the name of a matrix inside a matrix collection.
      */
-    synchronized public int findMatrixCollectionNameIndex(String variableName) {
+    public int findMatrixCollectionNameIndex(String variableName) {
         int index = -1;
 
         for (int i = 0; i < mMatrixNames.size(); i++) {
@@ -778,7 +781,7 @@ public class MatrixDataManager implements Serializable {
             int destIndex, int arrayIndex) {
         // Need to convert the variableIndex to a 'resolved' index which
         // accounts for the array argument.
-        HashMap<Integer, Integer> arrayMap = mArrayMappingToIndex.get(variableIndex);
+        Map<Integer, Integer> arrayMap = mArrayMappingToIndex.get(variableIndex);
 
         // Trap typos in a UEC spreadsheet that can result in failed lookups.
         try {
@@ -827,7 +830,7 @@ public class MatrixDataManager implements Serializable {
 
         // Need to convert the variableIndex to a 'resolved' index which
         // accounts for the array argument.
-        HashMap<Integer, Integer> arrayMap = mArrayMappingToIndex.get(variableIndex);
+        Map<Integer, Integer> arrayMap = mArrayMappingToIndex.get(variableIndex);
 
         // Trap typos in a UEC spreadsheet that can result in failed lookups.
         try {
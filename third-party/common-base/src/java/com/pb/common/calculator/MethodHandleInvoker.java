@@ -0,0 +1,135 @@
+package com.pb.common.calculator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Calls the getXXX() methods of a user (DMU) class through method handles.
+ * Every method is bound once when it is added, and adapted to take the user
+ * object and the alternative number and to return a double. Unlike the
+ * MethodInvoker generated by MethodInvokerTemplate, no source code is
+ * written or compiled at run time.
+ */
+public final class MethodHandleInvoker implements MethodInvoker {
+
+    private static Logger logger = Logger.getLogger("com.pb.common.calculator");
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(double.class, Object.class, int.class);
+
+    private final Class<?> clazz;
+
+    private MethodHandle[] handles = new MethodHandle[0];
+    private boolean[] takesAlternative = new boolean[0];
+    private ArrayList<String> methodNames = new ArrayList<String>();
+
+
+    public MethodHandleInvoker(Class<?> clazz) {
+        this.clazz = clazz;
+    }
+
+
+    /**
+     * Bind a public method of the user class that takes no argument or the
+     * alternative number as int argument, and return the method number used
+     * by invoke().
+     */
+    public synchronized int addMethod(String methodName, boolean intArgument) throws NoSuchMethodException {
+        //No user class was supplied
+        if (clazz == null) {
+            return 0;
+        }
+
+        Method method = intArgument ? clazz.getMethod(methodName, int.class) : clazz.getMethod(methodName);
+
+        MethodHandle handle;
+        try {
+            //user classes are not always public, even though their getters are
+            method.setAccessible(true);
+        } catch (SecurityException e) {
+            logger.debug("could not make " + methodName + "() accessible: " + e.getMessage());
+        }
+        try {
+            handle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Could not access method in user class, " + methodName + "()", e);
+        }
+
+        if (!intArgument)
+            handle = MethodHandles.dropArguments(handle, 1, int.class);
+        try {
+            handle = MethodHandles.explicitCastArguments(handle, INVOKER_TYPE);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Method in user class does not return a number, " + methodName + "()", e);
+        }
+
+        handles = Arrays.copyOf(handles, handles.length + 1);
+        handles[handles.length - 1] = handle;
+        takesAlternative = Arrays.copyOf(takesAlternative, takesAlternative.length + 1);
+        takesAlternative[takesAlternative.length - 1] = intArgument;
+        methodNames.add(methodName);
+
+        return handles.length - 1;
+    }
+
+
+    public double invoke(Object obj, int methodNumber, int alternativeNumber) {
+        if (methodNumber < 0 || methodNumber >= handles.length) {
+            logger.error("method number = " + methodNumber + " not found");
+            throw new RuntimeException("method number = " + methodNumber + " not found");
+        }
+        try {
+            return (double) handles[methodNumber].invokeExact(obj, alternativeNumber);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException("Exception in user class, " + methodNames.get(methodNumber) + "()", t);
+        }
+    }
+
+
+    /**
+     * Return the handle of a method, of type (Object, int)double, or null if
+     * there is no such method.
+     */
+    MethodHandle getHandle(int methodNumber) {
+        if (methodNumber < 0 || methodNumber >= handles.length)
+            return null;
+        return handles[methodNumber];
+    }
+
+
+    /**
+     * True if a method takes the alternative number as argument, so that its
+     * value may differ by alternative.
+     */
+    public boolean takesAlternative(int methodNumber) {
+        return methodNumber >= 0 && methodNumber < takesAlternative.length && takesAlternative[methodNumber];
+    }
+
+
+    public Class<?> getUserClass() {
+        return clazz;
+    }
+
+
+    /**
+     * Return a listing of the bound methods by method number.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(clazz == null ? "no user class" : clazz.getName());
+        for (int i = 0; i < methodNames.size(); i++)
+            sb.append(System.getProperty("line.separator")).append("    ").append(i).append(": ")
+                    .append(methodNames.get(i)).append("()");
+        return sb.toString();
+    }
+}
@@ -37,7 +37,10 @@ import org.apache.log4j.Logger;
  *
  * @author    Tim Heier
  * @version   1.0, 9/03/2003
+ * @deprecated UtilityExpressionCalculator binds user class methods with
+ * MethodHandleInvoker, which needs no compiler at run time.
  */
+@Deprecated
 public class MethodInvokerTemplate implements Serializable {
 
     private static Logger logger = Logger.getLogger("com.pb.common.calculator");
@@ -0,0 +1,96 @@
+package com.pb.common.calculator;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Holds everything that changes while a UtilityExpressionCalculator solves
+ * its expressions: answers, results, availability, scalar and internal
+ * variables, the DMU object and the values of PUT(). Expressions and
+ * coefficients are shared. A thread that owns a workspace can therefore
+ * solve a UEC while other threads solve the same UEC with their own
+ * workspaces. Workspaces are created by
+ * UtilityExpressionCalculator.createWorkspace() and must not be shared
+ * between threads.
+ */
+public final class UecWorkspace extends CompiledExpression.Context {
+
+    final UtilityExpressionCalculator calculator;
+    final double[] answers;
+    final double[] results;
+    final int[] available;
+    final double[] scalarValue;
+    final int[] internalVariable;
+    Object dmuObject;
+
+    //Columns of a DMU block and current row while a block is solved row by row
+    double[][] batchObjectColumns;
+    int batchRow;
+
+    //Values of PUT() by expression
+    private IdentityHashMap<Expression, double[]> valueStacks;
+    private IdentityHashMap<Expression, int[]> stackPointers;
+
+
+    UecWorkspace(UtilityExpressionCalculator calculator, double[] answers, double[] results, int[] available,
+            double[] scalarValue, int[] internalVariable) {
+        this.calculator = calculator;
+        this.answers = answers;
+        this.results = results;
+        this.available = available;
+        this.scalarValue = scalarValue;
+        this.internalVariable = internalVariable;
+    }
+
+
+    double getValueForIndex(int variableIndex) {
+        return calculator.getValueForIndex(this, variableIndex);
+    }
+
+
+    double getValueForIndex(int variableIndex, int arrayIndex) {
+        return calculator.getValueForIndex(this, variableIndex, arrayIndex);
+    }
+
+
+    void setValue(int variableIndex, double value) {
+        calculator.setValue(this, variableIndex, value);
+    }
+
+
+    double putValue(Expression owner, double value) {
+        if (valueStacks == null) {
+            valueStacks = new IdentityHashMap<Expression, double[]>();
+            stackPointers = new IdentityHashMap<Expression, int[]>();
+        }
+        double[] stack = valueStacks.get(owner);
+        int[] sp = stackPointers.get(owner);
+        if (stack == null) {
+            stack = new double[20];   //same size as in Expression
+            sp = new int[] {1};
+            valueStacks.put(owner, stack);
+            stackPointers.put(owner, sp);
+        }
+        stack[sp[0]] = value;
+        sp[0]++;
+        return value;
+    }
+
+
+    double getValue(Expression owner, double index) {
+        double[] stack = valueStacks == null ? null : valueStacks.get(owner);
+        if (stack == null)
+            return 0;
+        return stack[(int) index];
+    }
+
+
+    Object getDmuObject() {
+        //While a DMU block is solved row by row, @ variables come from the block
+        return batchObjectColumns == null ? dmuObject : null;
+    }
+
+
+    int getAlternative() {
+        return calculator.getAlternative(this);
+    }
+}
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -113,10 +114,17 @@ public class UtilityExpressionCalculator implements VariableTable, Serializable
     private ArrayList<String> scalarIndex = new ArrayList<String>();
     private double[] scalarValue;
 
-    //User object
-    private transient Object dmuObject;
-    private transient MethodInvokerTemplate invokerTemplate;
-    private transient MethodInvoker methodInvoker;
+    //User object, getXXX() methods are bound while expressions are parsed
+    private transient MethodHandleInvoker methodInvoker;
+
+    //Object variables in the order their methods were added to the invoker,
+    //used to build the invoker again when the UEC is read from the compiled-model cache
+    private ArrayList<String> objectVariableNames = new ArrayList<String>();
+
+    //Holds the answers, results, availability, scalar and internal variables and
+    //the user object of the solve methods without workspace parameter
+    private transient UecWorkspace defaultWorkspace;
+    private transient Boolean batchable;
 
 
     //Determines if alterantives are to be found in a file
@@ -245,21 +253,144 @@ public class UtilityExpressionCalculator implements VariableTable, Serializable
 
             //User class with getXXX() methods
             this.userClass = userClass;
-            this.invokerTemplate = new MethodInvokerTemplate(userClass);
+            this.methodInvoker = new MethodHandleInvoker(userClass);
 
             readData();
 
             parseExpressions();
 
-            methodInvoker = invokerTemplate.generateAndLoadClass();
-
             if (loggerDebug)
-                logger.debug ("MethodInvoker source file: "+invokerTemplate.getGeneratedSourceCodePrefix());
+                logger.debug ("Methods of user class: "+methodInvoker);
         }
 
         if (loggerDebug)
             logger.debug("Left critical section for: " + file.getName());
 
+        allocateResultArrays();
+    }
+
+
+    /**
+     * Returns a UEC for a control file. If a directory is set in
+     * CompiledModelCache and the cache holds a model for the same workbook
+     * content, sheets, environment and user class, the model is read from the
+     * cache and only the data entries are read again. Otherwise the control
+     * file is parsed as by the constructor and the model is written to the
+     * cache for later runs.
+     *
+     * @param file a File object which represents the Excel file
+     * location.
+     * @param modelSheet the sheet with the model definition (zero based)
+     * @param dataSheet the sheet with the data entries (zero based)
+     */
+    public static UtilityExpressionCalculator newInstance(File file, int modelSheet,
+            int dataSheet, HashMap<String, String> env, Class<?> userClass) {
+
+        if (CompiledModelCache.getDirectory() == null)
+            return new UtilityExpressionCalculator(file, modelSheet, dataSheet, env, userClass);
+
+        String key;
+        try {
+            key = CompiledModelCache.computeKey(file, modelSheet, dataSheet, env, userClass);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read control file " + file.getAbsolutePath(), e);
+        }
+        File cacheFile = CompiledModelCache.getCacheFile(file, key);
+        if (cacheFile == null)
+            return new UtilityExpressionCalculator(file, modelSheet, dataSheet, env, userClass);
+
+        UtilityExpressionCalculator uec = CompiledModelCache.read(cacheFile, key);
+        if (uec != null && uec.restoreCachedModel(file, userClass)) {
+            if (logger.isDebugEnabled())
+                logger.debug("Read model of " + file.getName() + " from " + cacheFile.getName());
+            return uec;
+        }
+
+        uec = new UtilityExpressionCalculator(file, modelSheet, dataSheet, env, userClass);
+        CompiledModelCache.write(cacheFile, key, uec);
+        return uec;
+    }
+
+
+    /**
+     * Prepare a UEC read from the compiled-model cache: read the data entries
+     * again, check that every data variable refers to the same table column or
+     * matrix as when the model was parsed and build the invoker of the user
+     * class. Returns false if the cached model cannot be used.
+     */
+    private boolean restoreCachedModel(File file, Class<?> userClass) {
+        this.file = file;
+        this.userClass = userClass;
+        loggerDebug = logger.isDebugEnabled();
+        debugLoggerDebug = debugLogger.isDebugEnabled();
+
+        synchronized (objLock) {
+            readData();
+
+            for (int i=0; i < varInfo.length; i++) {
+                if (!isResolvedAsParsed(varInfo[i])) {
+                    logger.info("Data of " + file.getName() + " changed for variable " + varInfo[i].getName() +
+                            ", parsing control file again");
+                    return false;
+                }
+            }
+
+            ArrayList<String> names = objectVariableNames;
+            objectVariableNames = new ArrayList<String>();
+            this.methodInvoker = new MethodHandleInvoker(userClass);
+            try {
+                for (String name : names)
+                    getObjectMethodIndex(name);
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+
+        allocateResultArrays();
+        return true;
+    }
+
+
+    /**
+     * Returns true if a variable is found in the same table column or matrix
+     * of the data read by readData() as when its expression was parsed. The
+     * order of the checks is the same as in getVariableIndex().
+     */
+    private boolean isResolvedAsParsed(VariableInfo info) {
+        int type = info.getType();
+        String name = info.getName();
+        if (type == VariableType.SCALAR || type == VariableType.OBJECT || type == VariableType.INTERNAL)
+            return true;
+
+        int zoneIndex = tableDataManager.findZoneIndex(name);
+        if (zoneIndex >= 0)
+            return type == VariableType.ZONE && zoneIndex == info.getValueIndex();
+
+        int hhIndex = tableDataManager.findHouseholdIndex(name);
+        if (hhIndex >= 0)
+            return type == VariableType.HOUSEHOLD && hhIndex == info.getValueIndex();
+
+        for (int i = 0; i < altColumnName.length; i++) {
+            if (altColumnName[i].equalsIgnoreCase(name))
+                return type == VariableType.ALTERNATIVE && i+1 == info.getValueIndex();
+        }
+
+        int matrixIndex = matrixDataManager.findMatrixIndex(name);
+        if (matrixIndex >= 0)
+            return type == VariableType.MATRIX && matrixIndex == info.getValueIndex();
+
+        return type == VariableType.MATRIX_COLLECTION &&
+                matrixDataManager.findMatrixCollectionIndex(name) == info.getValueIndex() &&
+                matrixDataManager.findMatrixCollectionNameIndex(name) == info.getNameIndex();
+    }
+
+
+    /**
+     * Allocate answers, results and availability after the control file and
+     * the alternatives data have been read.
+     */
+    private void allocateResultArrays() {
+
         //Set number of alternatives based on alternatives in file
         if (controlFile.header.isAlternativesInFile) {
             isAlternativesInFile = true;
@@ -283,6 +414,7 @@ public class UtilityExpressionCalculator implements VariableTable, Serializable
             altNames[i]=alternativeNames[i].name;
         }
 
+        defaultWorkspace = null;
     }
 
 
@@ -655,7 +787,7 @@ public class UtilityExpressionCalculator implements VariableTable, Serializable
      * @param dmuObject
      */
     public double[] solve(int orig, int dest, int zoneIndex, int hhIndex, Object dmuObject) {
-        this.dmuObject = dmuObject;
+        getDefaultWorkspace().dmuObject = dmuObject;
 
         // if debug logging, only log values when indexDebug has been set to true
         boolean oldDebugLoggerDebug = debugLoggerDebug;
@@ -737,6 +869,336 @@ public class UtilityExpressionCalculator implements VariableTable, Serializable
     }
 
 
+    /**
+     * Create a workspace for solve(IndexValues, Object, int[], UecWorkspace).
+     * Every thread that solves this UEC needs its own workspace, while the
+     * parsed expressions and coefficients are shared.
+     */
+    public synchronized UecWorkspace createWorkspace() {
+
+        //Compile expressions now, so that solving never changes shared state
+        for (int e=0; e < nModelEntries; e++) {
+            if (!modelExpressions[e].isCompiled() ||
+                    (expressionFlags[e].hasFilter && !filterExpressions[e].isCompiled()))
+                throw new RuntimeException("expression " + (e+1) + " cannot be solved with a workspace");
+        }
+        isBatchable();
+
+        int[] availableByDefault = new int[nAlternatives+1];
+        Arrays.fill(availableByDefault, 1);
+        return new UecWorkspace(this, new double[nModelEntries], new double[nAlternatives], availableByDefault,
+                new double[scalarValue.length], new int[internalVariable.length]);
+    }
+
+
+    /**
+     * Re-entrant solve method. All values that change while solving are kept
+     * in workspace, therefore several threads may call this method of the
+     * same object at the same time, each with its own workspace. Debug and
+     * trace logging and logAnswersArray() are not supported.
+     *
+     * @param indexValues
+     * @param dmuObject
+     * @param availFlag
+     * @param workspace  workspace created by createWorkspace() of this object
+     * @return  solution of the utility expression
+     */
+    public double[] solve(IndexValues indexValues, Object dmuObject, int[] availFlag, UecWorkspace workspace) {
+
+        if (workspace.calculator != this)
+            throw new IllegalArgumentException("workspace was created by another UtilityExpressionCalculator");
+
+        if (availFlag != null) {
+            System.arraycopy(availFlag, 1, workspace.available, 1, nAlternatives);
+        }
+        setInternalVariables(workspace, indexValues);
+        workspace.dmuObject = dmuObject;
+
+        double[] answers = workspace.answers;
+        double[] results = workspace.results;
+        Arrays.fill(answers, 0.0);
+        Arrays.fill(results, 0.0);
+        Arrays.fill(workspace.scalarValue, 0.0);
+
+        int alternativeNumber, coeffIndex;
+        boolean firstAlternative = true;
+
+        for (int a=0; a < nAlternatives; a++) {
+
+            if (isAlternativesInFile) {
+                alternativeNumber = (int) altTableData.getIndexedValueAt(a+1, 1);
+                coeffIndex = 0;
+            } else {
+                alternativeNumber = a+1;
+                coeffIndex = a;
+            }
+
+            workspace.internalVariable[ALT_INDEX]  = alternativeNumber;
+
+            if (workspace.available[alternativeNumber] <= 0)
+                continue;
+
+            for (int e=0; e < nModelEntries; e++) {
+
+                if ( (firstAlternative) || (expressionFlags[e].hasAlternativeVariable) ) {
+                    try {
+                        if (expressionFlags[e].hasFilter && filterExpressions[e].solve(workspace) <= 0)
+                            answers[e] = 0;
+                        else
+                            answers[e] = modelExpressions[e].solve(workspace);
+                    }
+                    catch ( Exception ex ) {
+                        logger.error( String.format( "Exception thrown evaluating expression for: alt=%d, e=%d, expression=%s.",
+                                a+1, e+1, modelExpressions[e].getExpression() ), ex );
+                        throw new RuntimeException(ex);
+                    }
+                }
+
+                if (expressionFlags[e].isModelEntry) {
+                    results[a] += answers[e] * coefficients[e][coeffIndex];
+                }
+            }
+            firstAlternative = false;
+        }
+
+        workspace.dmuObject = null;
+
+        //Make a copy of results array as the workspace is reused
+        double[] returnResults = new double[results.length];
+        System.arraycopy(results, 0, returnResults, 0, results.length);
+        return returnResults;
+    }
+
+
+    private void setInternalVariables(UecWorkspace ws, IndexValues indexValues) {
+        ws.internalVariable[OZ_INDEX] = indexValues.getOriginZone();
+        ws.internalVariable[DZ_INDEX] = indexValues.getDestZone();
+        ws.internalVariable[SZ_INDEX] = indexValues.getStopZone();
+        ws.internalVariable[ZONE_INDEX] = indexValues.getZoneIndex();
+        ws.internalVariable[HH_INDEX] = indexValues.getHHIndex();
+    }
+
+
+    /**
+     * Solves the expressions for all decision makers of a DMU block at once.
+     * The @ variables of the control file are read from the columns of the
+     * block. @@ variables, whose getters take the alternative number, cannot
+     * be held by a block and cause a RuntimeException. All other variables (zone data, matrices, alternatives, ...) are
+     * indexed by indexValues and are the same for all decision makers of the
+     * block. Every expression is solved for the whole block in one loop
+     * before the next expression is solved, so the cost of traversing an
+     * expression is shared by all decision makers.
+     *
+     * If an expression uses PUT(), GET() or an array lookup, assigns a value
+     * to an internal variable, or if debugging is requested, the decision
+     * makers are solved one after the other with the same results. Answers
+     * of single expressions are not kept, logAnswersArray() does not refer to
+     * the block.
+     *
+     * @param indexValues
+     * @param block  DMU variables of all decision makers
+     * @param availFlag
+     * @return  utilities as [decision maker][alternative]
+     */
+    public double[][] solveBatch(IndexValues indexValues, DmuBlock block, int[] availFlag) {
+
+        UecWorkspace ws = getDefaultWorkspace();
+        if (indexValues.getDebug() || debugLoggerDebug || !isBatchable()) {
+            //Solve row by row with debug logging, @ variables are read from the block
+            int n = block.size();
+            double[][] returnResults = new double[n][];
+            ws.batchObjectColumns = getBlockColumns(block);
+            try {
+                for (int i = 0; i < n; i++) {
+                    ws.batchRow = i;
+                    returnResults[i] = solve(indexValues, null, availFlag);
+                }
+            }
+            finally {
+                ws.batchObjectColumns = null;
+            }
+            return returnResults;
+        }
+
+        indexDebug = false;
+        return solveBatch(indexValues, block, availFlag, ws);
+    }
+
+
+    /**
+     * Re-entrant version of solveBatch(IndexValues, DmuBlock, int[]). Several
+     * threads may solve blocks with the same object at the same time, each
+     * with its own workspace created by createWorkspace().
+     *
+     * @param indexValues
+     * @param block  DMU variables of all decision makers
+     * @param availFlag
+     * @param workspace  workspace created by createWorkspace() of this object
+     * @return  utilities as [decision maker][alternative]
+     */
+    public double[][] solveBatch(IndexValues indexValues, DmuBlock block, int[] availFlag, UecWorkspace workspace) {
+
+        if (workspace.calculator != this)
+            throw new IllegalArgumentException("workspace was created by another UtilityExpressionCalculator");
+
+        int n = block.size();
+        double[][] returnResults = new double[n][nAlternatives];
+        if (n == 0)
+            return returnResults;
+
+        double[][] objectColumns = getBlockColumns(block);
+
+        if (!isBatchable()) {
+            //Solve row by row, @ variables are read from the block
+            workspace.batchObjectColumns = objectColumns;
+            try {
+                for (int i = 0; i < n; i++) {
+                    workspace.batchRow = i;
+                    returnResults[i] = solve(indexValues, null, availFlag, workspace);
+                }
+            }
+            finally {
+                workspace.batchObjectColumns = null;
+            }
+            return returnResults;
+        }
+
+        if (availFlag != null) {
+            System.arraycopy(availFlag, 1, workspace.available, 1, nAlternatives);
+        }
+
+        workspace.dmuObject = null;
+        setInternalVariables(workspace, indexValues);
+        Arrays.fill(workspace.scalarValue, 0.0);
+
+        //Scalar variables hold one value per decision maker
+        double[][] scalarColumns = new double[workspace.scalarValue.length][n];
+        double[][] columnByVariable = objectColumns;
+        for (int v=0; v < varInfo.length; v++) {
+            if (varInfo[v].getType() == VariableType.SCALAR)
+                columnByVariable[v] = scalarColumns[ varInfo[v].getValueIndex() ];
+        }
+        CompiledExpression.Batch batch = new CompiledExpression.Batch(workspace, columnByVariable, n);
+
+        double[][] blockAnswers = new double[nModelEntries][n];
+        double[] filterResults = new double[n];
+        double[][] utilities = new double[nAlternatives][n];
+
+        int alternativeNumber, coeffIndex;
+        boolean firstAlternative = true;
+
+        for (int a=0; a < nAlternatives; a++) {
+
+            if (isAlternativesInFile) {
+                alternativeNumber = (int) altTableData.getIndexedValueAt(a+1, 1);
+                coeffIndex = 0;
+            } else {
+                alternativeNumber = a+1;
+                coeffIndex = a;
+            }
+
+            workspace.internalVariable[ALT_INDEX]  = alternativeNumber;
+
+            if (workspace.available[alternativeNumber] <= 0)
+                continue;
+
+            for (int e=0; e < nModelEntries; e++) {
+                double[] answers = blockAnswers[e];
+
+                if ( (firstAlternative) || (expressionFlags[e].hasAlternativeVariable) ) {
+                    modelExpressions[e].solveBatch(batch, answers);
+
+                    //Expressions are only assigned for decision makers that pass the filter
+                    int resultIndex = modelExpressions[e].getResultIndex();
+                    if (expressionFlags[e].hasFilter) {
+                        filterExpressions[e].solveBatch(batch, filterResults);
+                        double[] result = resultIndex >= 0 ? columnByVariable[resultIndex] : null;
+                        for (int i=0; i < n; i++) {
+                            if (filterResults[i] > 0) {
+                                if (result != null)
+                                    result[i] = answers[i];
+                            }
+                            else {
+                                answers[i] = 0;
+                            }
+                        }
+                    }
+                    else if (resultIndex >= 0) {
+                        System.arraycopy(answers, 0, columnByVariable[resultIndex], 0, n);
+                    }
+                }
+
+                //Multiply answers by coefficient and accumulate results for alternative
+                if (expressionFlags[e].isModelEntry) {
+                    double coefficient = coefficients[e][coeffIndex];
+                    double[] utility = utilities[a];
+                    for (int i=0; i < n; i++)
+                        utility[i] += answers[i] * coefficient;
+                }
+            }
+            firstAlternative = false;
+        }
+
+        for (int i=0; i < n; i++) {
+            for (int a=0; a < nAlternatives; a++)
+                returnResults[i][a] = utilities[a][i];
+        }
+
+        return returnResults;
+    }
+
+
+    /**
+     * Return the column of the DMU block for every @ variable, indexed by
+     * variable index. A block holds one value per decision maker, so
+     * variables whose getter takes the alternative number are rejected.
+     */
+    private double[][] getBlockColumns(DmuBlock block) {
+
+        double[][] columns = new double[varInfo.length][];
+        for (int v=0; v < varInfo.length; v++) {
+            if (varInfo[v].getType() != VariableType.OBJECT)
+                continue;
+
+            String name = varInfo[v].getName();
+            if (methodInvoker.takesAlternative( varInfo[v].getValueIndex() ))
+                throw new RuntimeException("variable " + name + " depends on the alternative and cannot be read from a DMU block");
+
+            int column = block.getVariableIndex(name.substring(1));
+            if (column < 0)
+                throw new RuntimeException("DMU block has no column for variable " + name);
+            columns[v] = block.getColumn(column);
+        }
+        return columns;
+    }
+
+
+    /**
+     * True if all expressions can be solved for a block of decision makers at once.
+     */
+    private boolean isBatchable() {
+
+        if (batchable == null) {
+            boolean result = true;
+            for (int e=0; e < nModelEntries && result; e++) {
+                result = isBatchable(modelExpressions[e]);
+                if (result && expressionFlags[e].hasFilter)
+                    result = isBatchable(filterExpressions[e]);
+            }
+            batchable = result;
+        }
+        return batchable;
+    }
+
+
+    private boolean isBatchable(Expression expression) {
+        if (!expression.isBatchable())
+            return false;
+        int resultIndex = expression.getResultIndex();
+        return resultIndex < 0 || varInfo[resultIndex].getType() == VariableType.SCALAR;
+    }
+
+
     /**
      *
      * @param firstAlternative  flag to indicate that the first alternative is being processed
@@ -1117,86 +1579,101 @@ public class UtilityExpressionCalculator implements VariableTable, Serializable
 
     //------------------------ Value Methods ------------------------
 
-    private double getScalarValue(int variableIndex) {
-        return scalarValue[varInfo[ variableIndex].getValueIndex() ];
+    private double getScalarValue(UecWorkspace ws, int variableIndex) {
+        return ws.scalarValue[varInfo[ variableIndex].getValueIndex() ];
     }
 
 
-    private double getZoneValue(int variableIndex) {
+    private double getZoneValue(UecWorkspace ws, int variableIndex) {
 
         //returns a value from the zoneDataTable indexed by zone or stop
-        return tableDataManager.getZoneValueForIndex( internalVariable[ varInfo[variableIndex].getInternalIndex() ],
+        return tableDataManager.getZoneValueForIndex( ws.internalVariable[ varInfo[variableIndex].getInternalIndex() ],
                 varInfo[variableIndex].getValueIndex() );
 
         //return tableDataManager.getZoneValueForIndex( internalVariable[ZONE_INDEX], varInfo[variableIndex].getValueIndex() );
     }
 
 
-    private double getHouseHoldValue(int variableIndex) {
-        return tableDataManager.getHouseholdValueForIndex( internalVariable[HH_INDEX], varInfo[variableIndex].getValueIndex() );
+    private double getHouseHoldValue(UecWorkspace ws, int variableIndex) {
+        return tableDataManager.getHouseholdValueForIndex( ws.internalVariable[HH_INDEX], varInfo[variableIndex].getValueIndex() );
     }
 
 
-    private double getAlternativeValue(int variableIndex) {
-        return altTableData.getIndexedValueAt( internalVariable[ALT_INDEX], varInfo[variableIndex].getValueIndex() );
+    private double getAlternativeValue(UecWorkspace ws, int variableIndex) {
+        return altTableData.getIndexedValueAt( ws.internalVariable[ALT_INDEX], varInfo[variableIndex].getValueIndex() );
     }
 
 
-    private double getMatrixValue(int variableIndex) {
+    private double getMatrixValue(UecWorkspace ws, int variableIndex) {
 
         return  matrixDataManager.getValueForIndex( varInfo[variableIndex].getValueIndex(),
-                varInfo[variableIndex].getOrigIndex(),
-                varInfo[variableIndex].getDestIndex() );
+                ws.internalVariable[ varInfo[variableIndex].getOrigIndexValue() ],
+                ws.internalVariable[ varInfo[variableIndex].getDestIndexValue() ] );
     }
 
 
-    private double getMatrixCollectionValue(int variableIndex) {
+    private double getMatrixCollectionValue(UecWorkspace ws, int variableIndex) {
 
         return  matrixDataManager.getValueForIndex( varInfo[variableIndex].getValueIndex(),
-                varInfo[variableIndex].getOrigIndex(),
-                varInfo[variableIndex].getDestIndex(),
+                ws.internalVariable[ varInfo[variableIndex].getOrigIndexValue() ],
+                ws.internalVariable[ varInfo[variableIndex].getDestIndexValue() ],
                 varInfo[variableIndex].getNameIndex());
     }
 
-    private double getMatrixArrayValue(int variableIndex, int arrayIndex) {
+    private double getMatrixArrayValue(UecWorkspace ws, int variableIndex, int arrayIndex) {
 
         return matrixDataManager.getArrayValueForIndex(
                 varInfo[variableIndex].getValueIndex(),
-                varInfo[variableIndex].getOrigIndex(),
-                varInfo[variableIndex].getDestIndex(), arrayIndex);
+                ws.internalVariable[ varInfo[variableIndex].getOrigIndexValue() ],
+                ws.internalVariable[ varInfo[variableIndex].getDestIndexValue() ], arrayIndex);
     }
 
-    private double getMatrixCollectionArrayValue(int variableIndex,
+    private double getMatrixCollectionArrayValue(UecWorkspace ws, int variableIndex,
             int arrayIndex) {
 
         return matrixDataManager.getArrayValueForIndex(
                 varInfo[variableIndex].getValueIndex(),
-                varInfo[variableIndex].getOrigIndex(),
-                varInfo[variableIndex].getDestIndex(),
+                ws.internalVariable[ varInfo[variableIndex].getOrigIndexValue() ],
+                ws.internalVariable[ varInfo[variableIndex].getDestIndexValue() ],
                 varInfo[variableIndex].getNameIndex(), arrayIndex);
     }
 
-    private double getObjectMethodValue(int variableIndex) {
+    private double getObjectMethodValue(UecWorkspace ws, int variableIndex) {
         double value = 0;
 
+        //Read value of current decision maker from DMU block
+        if (ws.batchObjectColumns != null)
+            return ws.batchObjectColumns[variableIndex][ws.batchRow];
+
         int index = varInfo[variableIndex].getValueIndex();
 
         //Invoke method on user defined object
-        value = methodInvoker.invoke( dmuObject, index, internalVariable[ALT_INDEX]);
+        value = methodInvoker.invoke( ws.dmuObject, index, ws.internalVariable[ALT_INDEX]);
 
         return value;
     }
 
 
-    private double getInternalValue(int variableIndex) {
+    private double getInternalValue(UecWorkspace ws, int variableIndex) {
 
-        return internalVariable[ varInfo[variableIndex].getValueIndex() ];
+        return ws.internalVariable[ varInfo[variableIndex].getValueIndex() ];
     }
 
 
-    private void setInternalValue(int variableIndex, double value) {
+    private void setInternalValue(UecWorkspace ws, int variableIndex, double value) {
+
+        ws.internalVariable[ varInfo[variableIndex].getValueIndex() ] = (int)value;
+    }
+
 
-        internalVariable[ varInfo[variableIndex].getValueIndex() ] = (int)value;
+    /**
+     * Workspace that holds the arrays of this object, used by the solve
+     * methods without workspace parameter.
+     */
+    private UecWorkspace getDefaultWorkspace() {
+        if (defaultWorkspace == null)
+            defaultWorkspace = new UecWorkspace(this, answers, results, available, scalarValue, internalVariable);
+        return defaultWorkspace;
     }
 
     //------------------------ Indexing Methods ------------------------
@@ -1275,7 +1752,8 @@ public class UtilityExpressionCalculator implements VariableTable, Serializable
                 modifiedName.substring( 1 );
 
         try {
-            index = invokerTemplate.addMethod( getterName, arrayInd );
+            index = methodInvoker.addMethod( getterName, arrayInd );
+            objectVariableNames.add( variableName );
         }
         catch (NoSuchMethodException e) {
             String msg = "Could not find method in user class, " + getterName + "()";
@@ -1553,8 +2031,14 @@ public class UtilityExpressionCalculator implements VariableTable, Serializable
         return altTableData;
     }
 
+    /**
+     * @deprecated methods of the user class are bound through method handles
+     * and no source code is generated any more. Returns a listing of the bound
+     * methods instead.
+     */
+    @Deprecated
     public String getMethodInvokerSourceCode() {
-        return invokerTemplate.getGeneratedSourceCode();
+        return methodInvoker.toString();
     }
 
     public String getVariableTable() {
@@ -1622,23 +2106,51 @@ public class UtilityExpressionCalculator implements VariableTable, Serializable
         return index;
     }
 
+    /**
+     *  Return the bound getter of an @ variable, or null for other variables.
+     *  Compiled expressions call the getter directly on the user object.
+     *  Expressions are compiled while they are parsed, before varInfo is
+     *  created, so the variable is taken from varInfoList.
+     */
+    final MethodHandle getObjectMethodHandle(int variableIndex) {
+
+        VariableInfo info = varInfoList.get(variableIndex);
+        if (methodInvoker == null || info.getType() != VariableType.OBJECT)
+            return null;
+        return methodInvoker.getHandle( info.getValueIndex() );
+    }
+
+    /**
+     *  Return the alternative number of a workspace, passed to getters of the user object
+     */
+    final int getAlternative(UecWorkspace ws) {
+        return ws.internalVariable[ALT_INDEX];
+    }
+
     /**
      *  Called to get a value for an indexed variable
      */
     @Override
     public final double getValueForIndex(int variableIndex) {
+        return getValueForIndex(getDefaultWorkspace(), variableIndex);
+    }
+
+    /**
+     *  Called to get a value for an indexed variable from a workspace
+     */
+    final double getValueForIndex(UecWorkspace ws, int variableIndex) {
 
         int type = varInfo[variableIndex].getType();
 
         switch (type) {
-        case VariableType.SCALAR:            return getScalarValue(variableIndex);
-        case VariableType.ZONE:              return getZoneValue(variableIndex);
-        case VariableType.HOUSEHOLD:         return getHouseHoldValue(variableIndex);
-        case VariableType.ALTERNATIVE:       return getAlternativeValue(variableIndex);
-        case VariableType.MATRIX:            return getMatrixValue(variableIndex);
-        case VariableType.MATRIX_COLLECTION: return getMatrixCollectionValue(variableIndex);
-        case VariableType.OBJECT:            return getObjectMethodValue(variableIndex);
-        case VariableType.INTERNAL:          return getInternalValue(variableIndex);
+        case VariableType.SCALAR:            return getScalarValue(ws, variableIndex);
+        case VariableType.ZONE:              return getZoneValue(ws, variableIndex);
+        case VariableType.HOUSEHOLD:         return getHouseHoldValue(ws, variableIndex);
+        case VariableType.ALTERNATIVE:       return getAlternativeValue(ws, variableIndex);
+        case VariableType.MATRIX:            return getMatrixValue(ws, variableIndex);
+        case VariableType.MATRIX_COLLECTION: return getMatrixCollectionValue(ws, variableIndex);
+        case VariableType.OBJECT:            return getObjectMethodValue(ws, variableIndex);
+        case VariableType.INTERNAL:          return getInternalValue(ws, variableIndex);
         default:
             throw new RuntimeException("getValueForIndex, unknown variableIndex: "+variableIndex);
         }
@@ -1658,15 +2170,22 @@ public class UtilityExpressionCalculator implements VariableTable, Serializable
      */
     @Override
     public final void setValue(int variableIndex, double variableValue) {
+        setValue(getDefaultWorkspace(), variableIndex, variableValue);
+    }
+
+    /**
+     * Called to set a value for a given variable index in a workspace
+     */
+    final void setValue(UecWorkspace ws, int variableIndex, double variableValue) {
 
         int type = varInfo[variableIndex].getType();
 
         switch (type) {
         case VariableType.SCALAR:
-            scalarValue[ varInfo[variableIndex].getValueIndex() ] = variableValue;
+            ws.scalarValue[ varInfo[variableIndex].getValueIndex() ] = variableValue;
             break;
         case VariableType.INTERNAL:
-            setInternalValue(variableIndex, variableValue);
+            setInternalValue(ws, variableIndex, variableValue);
             break;
         default:
             throw new RuntimeException("settValue(int, double) unknown variableIndex: "+variableIndex);
@@ -1815,13 +2334,20 @@ public class UtilityExpressionCalculator implements VariableTable, Serializable
      */
     @Override
     public final double getValueForIndex(int variableIndex, int arrayIndex) {
+        return getValueForIndex(getDefaultWorkspace(), variableIndex, arrayIndex);
+    }
+
+    /**
+     * Called to get an value for an indexed, arrayed variable from a workspace
+     */
+    final double getValueForIndex(UecWorkspace ws, int variableIndex, int arrayIndex) {
         int type = varInfo[variableIndex].getType();
 
         switch (type) {
         case VariableType.MATRIX:
-            return getMatrixArrayValue(variableIndex, arrayIndex);
+            return getMatrixArrayValue(ws, variableIndex, arrayIndex);
         case VariableType.MATRIX_COLLECTION:
-            return getMatrixCollectionArrayValue(variableIndex, arrayIndex);
+            return getMatrixCollectionArrayValue(ws, variableIndex, arrayIndex);
         default:
             throw new RuntimeException(
                     "getValueForIndex, array subscript only works on MATRIX types: "
@@ -0,0 +1,103 @@
+package com.pb.common.calculator.tests;
+
+import com.pb.common.calculator.Expression;
+import com.pb.common.calculator.VariableTable;
+
+/**
+ * Compares compiled expressions (solve) with the interpreter (solveWithDebug)
+ * and measures the time of both.
+ */
+
+public class CompiledExpressionTest implements VariableTable {
+
+    private double[] values = {-0.25, 12.5, 3.0, 0};
+    private String[] names = {"utility", "distance", "time", "zero"};
+
+    private static final String[] expressions = {
+        "10+(-10+30)+10",
+        "2*ln(exp(2.5))+1",
+        "-0.25*distance + -0.50*time",
+        "min( max(1,2), 3)",
+        "if( 5 == 6, 1, 2)",
+        "if( min(0,1), 1, 2)",
+        "int(-8.9) * 2",
+        "1<2 * 4+1^2+3",
+        "4+1^2+3",
+        "abs(1-2)",
+        "ln(2)*.2",
+        "(6<2) * 5",
+        "5<=5 * 5",
+        "distance / zero",
+        "if(distance > 10, exp(utility * time), sqrt(distance) % 3)",
+        "sign(utility) + sign(zero) + sign(time) + max(distance, time) ^ 0.5",
+        "(distance >= 12.5) + (time != 3) + (time == 3) - (utility <= -1)",
+        "put(1+1) + get(1)",
+    };
+
+
+    public static void main(String[] args) {
+        CompiledExpressionTest test = new CompiledExpressionTest();
+        test.compareResults();
+        test.compareTime(1000000);
+    }
+
+
+    public void compareResults() {
+        int failed = 0;
+        for (String exp: expressions) {
+            Expression compiled = new Expression(exp, this);
+            compiled.parse();
+            Expression interpreted = new Expression(exp, this);
+            interpreted.parse();
+            double c = compiled.solve();
+            double i = interpreted.solveWithDebug();
+            boolean same = Double.doubleToLongBits(c) == Double.doubleToLongBits(i);
+            if (!same) failed++;
+            System.out.println((same ? "ok     " : "FAILED ") + exp + " = " + c + " (interpreter: " + i + ")");
+        }
+        System.out.println(failed + " of " + expressions.length + " expressions differ.");
+    }
+
+
+    public void compareTime(int iterations) {
+        Expression e = new Expression("if(distance > 10, exp(-0.25 * 2 * utility * time), sqrt(distance) % 3) + -0.5 * time", this);
+        e.parse();
+        double sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sum += e.solve();
+        long compiledTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) sum -= e.solveWithDebug();
+        long interpretedTime = System.nanoTime() - start;
+        System.out.println("Compiled: " + compiledTime / 1000000 + " ms, interpreted: " + interpretedTime / 1000000 +
+                " ms for " + iterations + " solves (difference " + sum + ")");
+    }
+
+
+    //------------------------ Variable Table Methods ------------------------
+
+    public final int getIndexValue(String s) {
+        for (int i = 0; i < names.length; i++) if (names[i].equals(s)) return i;
+        return -1;
+    }
+
+    public final int getAssignmentIndexValue(String s) {
+        return getIndexValue(s);
+    }
+
+    public final double getValueForIndex(int i) {
+        return values[i];
+    }
+
+    public final double getValueForIndex(int variableIndex, int arrayIndex) {
+        throw new UnsupportedOperationException();
+    }
+
+    public final void setValue(String name, double value) {
+        values[getIndexValue(name)] = value;
+    }
+
+    public final void setValue(int variableIndex, double variableValue) {
+        values[variableIndex] = variableValue;
+    }
+}
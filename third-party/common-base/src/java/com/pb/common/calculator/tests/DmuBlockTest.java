@@ -0,0 +1,119 @@
+package com.pb.common.calculator.tests;
+
+import com.pb.common.calculator.DmuBlock;
+import com.pb.common.calculator.IndexValues;
+import com.pb.common.calculator.UtilityExpressionCalculator;
+
+import java.io.File;
+
+import jxl.Workbook;
+import jxl.write.Label;
+import jxl.write.WritableSheet;
+import jxl.write.WritableWorkbook;
+
+/**
+ * Compares UtilityExpressionCalculator.solveBatch() with solve() for every
+ * decision maker of a DmuBlock, and checks that solveBatch() rejects @@
+ * variables, whose getters depend on the alternative. The control files are
+ * written to temporary files and use DMU as user class.
+ */
+
+public class DmuBlockTest {
+
+    private static final int ALTERNATIVES = 3;
+
+    private static final String[] expressions = {
+        "@schoolDrive * 2",
+        "exp(@schoolDrive / 10) / (1 + @schoolDrive)",
+        "if(@schoolDrive > 3, 1, -1)",
+    };
+
+    private static final String[] alternativeExpressions = {
+        "@schoolDrive * 2",
+        "@@arrayData + @schoolDrive",
+    };
+
+
+    public static void main(String[] args) throws Exception {
+        DmuBlockTest test = new DmuBlockTest();
+        test.compareResults();
+        test.rejectAlternativeVariables();
+    }
+
+
+    public void compareResults() throws Exception {
+        UtilityExpressionCalculator uec = new UtilityExpressionCalculator(writeControlFile(expressions), 0, 1, DMU.class);
+        IndexValues index = new IndexValues();
+        int[] avail = {1, 1, 1, 1};
+
+        DmuBlock block = new DmuBlock(new String[] {"schoolDrive"}, 4);
+        block.setSize(8);
+        for (int i = 0; i < block.size(); i++)
+            block.setValue(0, i, i);
+        double[][] batch = uec.solveBatch(index, block, avail);
+
+        int failed = 0;
+        DMU dmu = new DMU();
+        for (int i = 0; i < block.size(); i++) {
+            dmu.schooldriv = i;
+            double[] single = uec.solve(index, dmu, avail);
+            for (int a = 0; a < ALTERNATIVES; a++) {
+                boolean same = Double.doubleToLongBits(single[a]) == Double.doubleToLongBits(batch[i][a]);
+                if (!same) failed++;
+                System.out.println((same ? "ok     " : "FAILED ") + "schoolDrive " + i + ", alternative " + (a + 1) +
+                        " = " + batch[i][a] + " (solve: " + single[a] + ")");
+            }
+        }
+        System.out.println(failed + " of " + block.size() * ALTERNATIVES + " utilities differ.");
+    }
+
+
+    public void rejectAlternativeVariables() throws Exception {
+        UtilityExpressionCalculator uec = new UtilityExpressionCalculator(writeControlFile(alternativeExpressions), 0, 1,
+                DMU.class);
+        DmuBlock block = new DmuBlock(new String[] {"schoolDrive", "arrayData"}, 1);
+        block.setSize(1);
+        try {
+            uec.solveBatch(new IndexValues(), block, new int[] {1, 1, 1, 1});
+            System.out.println("FAILED solveBatch() accepted @@arrayData");
+        }
+        catch (RuntimeException e) {
+            System.out.println("ok     solveBatch() rejected @@arrayData: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Write a control file with one model entry per expression and a
+     * coefficient of 1 for every alternative. The data sheet is empty.
+     */
+    private File writeControlFile(String[] entries) throws Exception {
+        File file = File.createTempFile("DmuBlockTest", ".xls");
+        file.deleteOnExit();
+
+        WritableWorkbook workbook = Workbook.createWorkbook(file);
+        WritableSheet sheet = workbook.createSheet("model", 0);
+        workbook.createSheet("data", 1);
+
+        sheet.addCell(new Label(0, 0, "Model"));
+        sheet.addCell(new Label(1, 0, "1"));
+        sheet.addCell(new Label(2, 0, "DmuBlockTest"));
+        sheet.addCell(new Label(5, 0, "DMU"));
+        sheet.addCell(new Label(7, 0, String.valueOf(ALTERNATIVES)));
+        sheet.addCell(new Label(0, 1, "No"));
+        for (int a = 0; a < ALTERNATIVES; a++)
+            sheet.addCell(new Label(6 + a, 2, "alternative" + (a + 1)));
+
+        for (int e = 0; e < entries.length; e++) {
+            int row = 3 + e;
+            sheet.addCell(new Label(0, row, String.valueOf(e + 1)));
+            sheet.addCell(new Label(4, row, entries[e]));
+            for (int a = 0; a < ALTERNATIVES; a++)
+                sheet.addCell(new Label(6 + a, row, "1"));
+        }
+
+        workbook.write();
+        workbook.close();
+        return file;
+    }
+}